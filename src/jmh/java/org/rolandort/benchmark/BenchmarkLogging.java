@@ -0,0 +1,20 @@
+package org.rolandort.benchmark;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.rolandort.metrics.MessageTrace;
+
+/**
+ * Keeps logging out of the measurements: only warnings and errors are logged and no message is traced.
+ */
+final class BenchmarkLogging {
+
+  private BenchmarkLogging() {
+  }
+
+  static void quiet() {
+    Configurator.setRootLevel(Level.WARN);
+    Configurator.setLevel("org.rolandort", Level.WARN);
+    MessageTrace.configure(false, 0, 0);
+  }
+}
@@ -0,0 +1,72 @@
+package org.rolandort.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rolandort.formatter.DefaultGelfFormatter;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.model.GelfSerializer;
+import org.rolandort.model.LogMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting parsed log messages into GELF messages and serializing them to JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatterBenchmark {
+
+  private final DefaultGelfFormatter formatter = new DefaultGelfFormatter();
+  private LogMessage[] logMessages;
+  private GelfMessage[] gelfMessages;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    BenchmarkLogging.quiet();
+    logMessages = ParserBenchmark.parseJsonSample().toArray(new LogMessage[0]);
+    gelfMessages = new GelfMessage[logMessages.length];
+    for (int i = 0; i < logMessages.length; i++) {
+      gelfMessages[i] = formatter.formatMessage(logMessages[i]);
+    }
+  }
+
+  @Benchmark
+  public GelfMessage formatMessage() {
+    return formatter.formatMessage(logMessages[next()]);
+  }
+
+  /**
+   * Serializes a message without the cache of {@link GelfMessage#toJsonBytes()}.
+   */
+  @Benchmark
+  public byte[] serialize() {
+    return GelfSerializer.serialize(gelfMessages[next()]);
+  }
+
+  /**
+   * Formats a fresh message and converts it with {@link GelfMessage#toString()}, as done when the sampled trace logs it.
+   * The senders use the cached {@link GelfMessage#toJsonBytes()} instead.
+   */
+  @Benchmark
+  public String formatAndToString() {
+    return formatter.formatMessage(logMessages[next()]).toString();
+  }
+
+  private int next() {
+    index = index + 1 < logMessages.length ? index + 1 : 0;
+    return index;
+  }
+}
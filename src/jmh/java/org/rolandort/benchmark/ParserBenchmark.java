@@ -0,0 +1,64 @@
+package org.rolandort.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rolandort.model.LogMessage;
+import org.rolandort.parser.CsvLogParser;
+import org.rolandort.parser.JsonLogParser;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing single lines of the sample files, cycling through all lines so the branch predictor cannot learn one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+  private final JsonLogParser jsonLogParser = new JsonLogParser();
+  private final CsvLogParser csvLogParser = new CsvLogParser();
+  private String[] jsonLines;
+  private String[] csvLines;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    BenchmarkLogging.quiet();
+    jsonLines = SampleData.lines(SampleData.JSON_FILE).toArray(new String[0]);
+    csvLines = SampleData.lines(SampleData.CSV_FILE).toArray(new String[0]);
+  }
+
+  @Benchmark
+  public Optional<LogMessage> jsonParseLine() {
+    return jsonLogParser.parseLine(jsonLines[next(jsonLines.length)]);
+  }
+
+  @Benchmark
+  public Optional<LogMessage> csvParseLine() {
+    return csvLogParser.parseLine(csvLines[next(csvLines.length)]);
+  }
+
+  private int next(final int length) {
+    index = index + 1 < length ? index + 1 : 0;
+    return index;
+  }
+
+  static List<LogMessage> parseJsonSample() {
+    final JsonLogParser parser = new JsonLogParser();
+    return SampleData.lines(SampleData.JSON_FILE).stream().map(parser::parseLine).flatMap(Optional::stream).toList();
+  }
+}
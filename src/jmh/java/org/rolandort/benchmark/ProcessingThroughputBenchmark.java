@@ -0,0 +1,127 @@
+package org.rolandort.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rolandort.di.AppConfig;
+import org.rolandort.formatter.DefaultGelfFormatter;
+import org.rolandort.parser.CsvLogParser;
+import org.rolandort.parser.JsonLogParser;
+import org.rolandort.parser.LogParser;
+import org.rolandort.sender.CompressionType;
+import org.rolandort.sender.HttpGelfSender;
+import org.rolandort.service.LogProcessingService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput of {@link LogProcessingService}: reading a log file scaled up from the samples, parsing,
+ * formatting and sending every record over HTTP to an in-process GELF stub on the loopback interface.
+ * <p>
+ * One operation processes the whole file; the {@code records} counter reports the records per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessingThroughputBenchmark {
+
+  @Param({"JSON", "CSV"})
+  public String format;
+
+  @Param({"100"})
+  public int scale;
+
+  @Param({"false", "true"})
+  public boolean streaming;
+
+  @Param({"8"})
+  public int concurrency;
+
+  private HttpServer stub;
+  private ExecutorService stubExecutor;
+  private Path directory;
+  private Path logFile;
+  private int recordCount;
+  private LogProcessingService service;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    BenchmarkLogging.quiet();
+
+    stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    stub.createContext("/gelf", exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        body.transferTo(OutputStream.nullOutputStream());
+      }
+      exchange.sendResponseHeaders(202, -1);
+      exchange.close();
+    });
+    stubExecutor = Executors.newFixedThreadPool(concurrency);
+    stub.setExecutor(stubExecutor);
+    stub.start();
+
+    directory = Files.createTempDirectory("log2graylog-benchmark");
+    final boolean csv = "CSV".equals(format);
+    logFile = directory.resolve(csv ? "messages.csv" : "messages.txt");
+    recordCount = SampleData.writeScaled(csv ? SampleData.CSV_FILE : SampleData.JSON_FILE, scale, logFile);
+
+    final LogParser logParser = csv ? new CsvLogParser() : new JsonLogParser();
+    final String url = "http://127.0.0.1:" + stub.getAddress().getPort() + "/gelf";
+    final HttpGelfSender sender = new HttpGelfSender(url, 10, concurrency, CompressionType.NONE, 0);
+    service = new LogProcessingService(logParser, new DefaultGelfFormatter(), sender, new AppConfig());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    stub.stop(0);
+    stubExecutor.shutdownNow();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * Records processed, reported as a rate next to the files per second.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Records {
+    public long records;
+  }
+
+  @Benchmark
+  public int processLogFile(final Records records) {
+    final int sentCount = streaming ? service.processLogFileStreaming(logFile, 100) : service.processLogFile(logFile);
+    if (sentCount != recordCount) {
+      throw new IllegalStateException("Sent " + sentCount + " of " + recordCount + " records");
+    }
+    records.records += sentCount;
+    return sentCount;
+  }
+}
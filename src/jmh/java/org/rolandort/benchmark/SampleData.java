@@ -0,0 +1,57 @@
+package org.rolandort.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The sample log files of the project, read from the working directory (the project root when run with Maven).
+ */
+final class SampleData {
+  static final Path JSON_FILE = Paths.get("sample-messages.txt");
+  static final Path CSV_FILE = Paths.get("sample-messages.csv");
+
+  private SampleData() {
+  }
+
+  /**
+   * @return The lines of a sample file, without the header line of the CSV file
+   */
+  static List<String> lines(final Path sampleFile) {
+    try {
+      final List<String> lines = Files.readAllLines(sampleFile);
+      return sampleFile.equals(CSV_FILE) ? lines.subList(1, lines.size()) : lines;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Run the benchmarks from the project root, sample file missing: " + sampleFile, e);
+    }
+  }
+
+  /**
+   * Writes a log file repeating the records of a sample file, keeping a single CSV header.
+   *
+   * @param sampleFile The sample file
+   * @param scale      Number of repetitions of the sample records
+   * @param target     The file to write
+   * @return The number of records written
+   */
+  static int writeScaled(final Path sampleFile, final int scale, final Path target) throws IOException {
+    final List<String> lines = lines(sampleFile);
+    try (BufferedWriter writer = Files.newBufferedWriter(target)) {
+      if (sampleFile.equals(CSV_FILE)) {
+        writer.write(Files.readAllLines(sampleFile).get(0));
+        writer.newLine();
+      }
+      for (int i = 0; i < scale; i++) {
+        for (String line : lines) {
+          writer.write(line);
+          writer.newLine();
+        }
+      }
+    }
+    return lines.size() * scale;
+  }
+}
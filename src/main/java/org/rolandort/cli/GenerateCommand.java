@@ -0,0 +1,247 @@
+package org.rolandort.cli;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.di.AppConfig;
+import org.rolandort.di.AppInjector;
+import org.rolandort.generator.LogMessageGenerator;
+import org.rolandort.generator.LogMessageModel;
+import org.rolandort.generator.LogMessageWriter;
+import org.rolandort.generator.RateLimiter;
+import org.rolandort.model.LogMessage;
+import org.rolandort.parser.CsvLogParser;
+import org.rolandort.parser.JsonLogParser;
+import org.rolandort.parser.LogParser;
+import org.rolandort.parser.ParserType;
+import org.rolandort.sender.CompressionType;
+import org.rolandort.sender.GelfSender;
+import org.rolandort.sender.SenderType;
+import org.rolandort.service.LogProcessingService;
+import picocli.CommandLine;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic log messages for soak and capacity tests, learned from a seed log file.
+ * The messages are written to a log file or sent to Graylog directly without touching the disk.
+ */
+@CommandLine.Command(
+    name = "generate",
+    mixinStandardHelpOptions = true,
+    description = "Generates log messages with the value distributions of a seed log file, written to a file or sent to Graylog."
+)
+public class GenerateCommand implements Callable<Integer> {
+  private static final Logger logger = LogManager.getLogger(GenerateCommand.class);
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+  @CommandLine.Option(
+      names = {"--seed-file"},
+      description = "Log file to learn the value distributions from, e.g. sample-messages.txt",
+      required = true
+  )
+  private File seedFile;
+
+  @CommandLine.Option(
+      names = {"-p", "--parser"},
+      description = "Parser type of the seed file (JSON|CSV, default: ${DEFAULT-VALUE})",
+      defaultValue = "JSON"
+  )
+  private ParserType seedType;
+
+  @CommandLine.Option(
+      names = {"-n", "--count"},
+      description = "Number of messages to generate (default: ${DEFAULT-VALUE})",
+      defaultValue = "1000000"
+  )
+  private long count;
+
+  @CommandLine.Option(
+      names = {"-o", "--output"},
+      description = "File to write the messages to"
+  )
+  private File output;
+
+  @CommandLine.Option(
+      names = {"-f", "--format"},
+      description = "Format of the output file (JSON for NDJSON|CSV, default: ${DEFAULT-VALUE})",
+      defaultValue = "JSON"
+  )
+  private ParserType outputFormat;
+
+  @CommandLine.Option(
+      names = {"--send"},
+      description = "Send the messages to Graylog instead of writing them to a file"
+  )
+  private boolean send;
+
+  @CommandLine.Option(
+      names = {"-r", "--rate"},
+      description = "Messages per second, 0 for as fast as possible (default: ${DEFAULT-VALUE})",
+      defaultValue = "0"
+  )
+  private double rate;
+
+  @CommandLine.Option(
+      names = {"--threads"},
+      description = "Number of generating threads (default: number of processors)"
+  )
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @CommandLine.Option(
+      names = {"--random-seed"},
+      description = "Seed of the random generators, the same seed generates the same messages (default: random)"
+  )
+  private Long randomSeed;
+
+  @CommandLine.Option(
+      names = {"-s", "--sender"},
+      description = "Sender type with --send (SIMULATE|HTTP|UDP|TCP, default: ${DEFAULT-VALUE})",
+      defaultValue = "HTTP"
+  )
+  private SenderType senderType;
+
+  @CommandLine.Option(
+      names = {"-u", "--url"},
+      description = "Output URL of the Graylog GELF input with --send (default: ${DEFAULT-VALUE})",
+      defaultValue = "http://localhost:12202/gelf"
+  )
+  private String graylogUrl;
+
+  @CommandLine.Option(
+      names = {"-t", "--timeout"},
+      description = "Timeout of HTTP requests and of TCP connects and writes in seconds. (default: ${DEFAULT-VALUE} sec)",
+      defaultValue = "10"
+  )
+  private int timeout;
+
+  @CommandLine.Option(
+      names = {"-c", "--concurrency"},
+      description = "Maximum number of concurrent in-flight HTTP requests or TCP connections (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int concurrency;
+
+  @CommandLine.Option(
+      names = {"-z", "--compression"},
+      description = "Compression of the GELF payloads (NONE|GZIP|DEFLATE, default: ${DEFAULT-VALUE})",
+      defaultValue = "NONE"
+  )
+  private CompressionType compression;
+
+  @CommandLine.Option(
+      names = {"-b", "--batch-size"},
+      description = "Number of messages sent per batch with --send (default: ${DEFAULT-VALUE})",
+      defaultValue = "100"
+  )
+  private int batchSize;
+
+  @Override
+  public Integer call() {
+    // Log4j's own shutdown hook is disabled in log4j2.xml
+    Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "log2graylog-shutdown"));
+    if (!seedFile.isFile()) {
+      System.err.println("Error: Seed file not found: " + seedFile);
+      return 1;
+    }
+
+    if (send == (output != null)) {
+      System.err.println("Error: Either an output file (-o) or --send is required");
+      return 1;
+    }
+
+    if (count < 0 || rate < 0) {
+      System.err.println("Error: Count and rate must not be negative: count " + count + ", rate " + rate);
+      return 1;
+    }
+
+    if (threads < 1 || concurrency < 1 || batchSize < 1) {
+      System.err.println("Error: Threads, concurrency and batch size must be at least 1");
+      return 1;
+    }
+
+    try {
+      final LogParser seedParser = seedType == ParserType.CSV ? new CsvLogParser() : new JsonLogParser();
+      final List<LogMessage> seed = seedParser.parseLogFile(seedFile.toPath());
+      final LogMessageModel model = LogMessageModel.learn(seed);
+      final long seedValue = randomSeed != null ? randomSeed : System.nanoTime();
+      final LogMessageGenerator generator = new LogMessageGenerator(model, threads, seedValue);
+      logger.info("Learned message model from {} seed messages of {}, generating {} messages (random seed: {})",
+          seed.size(), seedFile, count, seedValue);
+
+      final long start = System.nanoTime();
+      final long generatedCount = send ? sendMessages(generator) : writeMessages(generator);
+      final double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%s %d messages in %.1f sec (%.0f messages/sec)%n",
+          send ? "Sent" : "Generated", generatedCount, seconds, generatedCount / Math.max(seconds, 1e-9));
+      return 0;
+
+    } catch (final Exception e) {
+      logger.error("Error generating log messages", e);
+      System.err.println("Error generating log messages: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  private long writeMessages(final LogMessageGenerator generator) throws Exception {
+    final LogMessageWriter writer = new LogMessageWriter(outputFormat);
+    final RateLimiter rateLimiter = new RateLimiter(rate);
+
+    long writtenCount = 0;
+    try (Writer fileWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output.toPath()), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+         Stream<Block> blocks = generator.blocks(count, logMessages -> new Block(logMessages.size(), writer.format(logMessages)))) {
+      fileWriter.write(writer.header());
+      final Iterator<Block> iterator = blocks.iterator();
+      while (iterator.hasNext()) {
+        final Block block = iterator.next();
+        rateLimiter.acquire(block.size);
+        fileWriter.write(block.text);
+        writtenCount += block.size;
+      }
+    }
+    return writtenCount;
+  }
+
+  private long sendMessages(final LogMessageGenerator generator) throws Exception {
+    final AppConfig config = new AppConfig();
+    config.setSenderType(senderType);
+    config.setGraylogUrl(graylogUrl);
+    config.setTimeout(timeout);
+    config.setConcurrency(concurrency);
+    config.setCompression(compression);
+
+    final Injector injector = Guice.createInjector(new AppInjector(config));
+    final LogProcessingService logProcessingService = injector.getInstance(LogProcessingService.class);
+    final RateLimiter rateLimiter = new RateLimiter(rate);
+
+    final int sentCount = logProcessingService.processLogMessages(
+        generator.stream(count).peek(logMessage -> rateLimiter.acquire(1)), batchSize);
+
+    if (injector.getInstance(GelfSender.class) instanceof Closeable closeable) {
+      closeable.close();
+    }
+    return sentCount;
+  }
+
+  // A block of formatted messages
+  private static final class Block {
+    final int size;
+    final String text;
+
+    Block(final int size, final String text) {
+      this.size = size;
+      this.text = text;
+    }
+  }
+}
@@ -4,32 +4,66 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.di.AppConfig;
 import org.rolandort.di.AppInjector;
+import org.rolandort.filter.LogFilter;
+import org.rolandort.metrics.MessageTrace;
+import org.rolandort.metrics.MetricsHttpServer;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.metrics.ThroughputReporter;
+import org.rolandort.model.LogMessageField;
 import org.rolandort.parser.ParserType;
+import org.rolandort.parser.StringInterner;
+import org.rolandort.sender.CompressionType;
+import org.rolandort.sender.GelfSender;
 import org.rolandort.sender.SenderType;
 import org.rolandort.service.LogProcessingService;
 import picocli.CommandLine;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 
 @CommandLine.Command(
     name = "Log2Graylog",
     mixinStandardHelpOptions = true,
     version = "1.1.0",
-    description = "Parses log messages and send them to Graylog using the GELF format."
+    description = "Parses log messages and send them to Graylog using the GELF format.",
+    subcommands = {GenerateCommand.class}
 )
 public class Log2GraylogCli implements Callable<Integer> {
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
   private static final Logger logger = LogManager.getLogger(Log2GraylogCli.class);
 
+  // Counted down when call() is done, including closing the sender
+  private final CountDownLatch finished = new CountDownLatch(1);
+
+  @CommandLine.Spec
+  private CommandLine.Model.CommandSpec spec;
+
+  // Required, but checked in call() so the generate subcommand can be used without log files
   @CommandLine.Parameters(
-      index = "0",
-      description = "Logfile to parse as input",
+      arity = "0..*",
+      description = "Logfiles, directories or glob patterns (e.g. 'logs/*.json') to parse as input",
       paramLabel = "LOG_FILE"
   )
-  private File logFile;
+  private List<String> logFiles;
+
+  @CommandLine.Option(
+      names = {"-j", "--file-parallelism"},
+      description = "Number of log files processed at the same time (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int fileParallelism;
 
   @CommandLine.Option(
       names = {"-p", "--parser"},
@@ -40,25 +74,272 @@ public class Log2GraylogCli implements Callable<Integer> {
 
   @CommandLine.Option(
       names = {"-s", "--sender"},
-      description = "Sender type (SIMULATE|HTTP, default: ${DEFAULT-VALUE})",
+      description = "Sender type (SIMULATE|HTTP|UDP|TCP, default: ${DEFAULT-VALUE})",
       defaultValue = "HTTP"
   )
   private SenderType senderType;
 
   @CommandLine.Option(
       names = {"-u", "--url"},
-      description = "Output URL of the Graylog GELF HTTP interface (default: ${DEFAULT-VALUE})",
+      description = "Output URL of the Graylog GELF input, e.g. udp://localhost:12201 for UDP or tcp://localhost:12201 for TCP (default: ${DEFAULT-VALUE})",
       defaultValue = "http://localhost:12202/gelf"
   )
   private String graylogUrl;
 
   @CommandLine.Option(
       names = {"-t", "--timeout"},
-      description = "Timeout of HTTP requests in seconds. (default: ${DEFAULT-VALUE} sec)",
+      description = "Timeout of HTTP requests and of TCP connects and writes in seconds. (default: ${DEFAULT-VALUE} sec)",
       defaultValue = "10"
   )
   private int timeout;
 
+  @CommandLine.Option(
+      names = {"-c", "--concurrency"},
+      description = "Maximum number of concurrent in-flight HTTP requests or TCP connections (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int concurrency;
+
+  @CommandLine.Option(
+      names = {"--max-attempts"},
+      description = "Attempts per message including retries of timeouts and 408/429/502/503/504 responses (default: ${DEFAULT-VALUE})",
+      defaultValue = "3"
+  )
+  private int maxAttempts;
+
+  @CommandLine.Option(
+      names = {"--retry-backoff"},
+      description = "Milliseconds before the first retry, doubled for every further retry (default: ${DEFAULT-VALUE})",
+      defaultValue = "200"
+  )
+  private long retryBackoff;
+
+  @CommandLine.Option(
+      names = {"--retry-max-backoff"},
+      description = "Maximum milliseconds between two attempts, also caps Retry-After (default: ${DEFAULT-VALUE})",
+      defaultValue = "10000"
+  )
+  private long retryMaxBackoff;
+
+  @CommandLine.Option(
+      names = {"--breaker-threshold"},
+      description = "Consecutive failures after which sending pauses, 0 disables the circuit breaker (default: ${DEFAULT-VALUE})",
+      defaultValue = "5"
+  )
+  private int breakerThreshold;
+
+  @CommandLine.Option(
+      names = {"--breaker-open-time"},
+      description = "Seconds sending pauses before a probe request is sent (default: ${DEFAULT-VALUE})",
+      defaultValue = "30"
+  )
+  private int breakerOpenTime;
+
+  @CommandLine.Option(
+      names = {"-z", "--compression"},
+      description = "Compression of the GELF payloads (NONE|GZIP|DEFLATE, default: ${DEFAULT-VALUE})",
+      defaultValue = "NONE"
+  )
+  private CompressionType compression;
+
+  @CommandLine.Option(
+      names = {"--compression-threshold"},
+      description = "Minimum payload size in bytes to be compressed (default: ${DEFAULT-VALUE})",
+      defaultValue = "512"
+  )
+  private int compressionThreshold;
+
+  @CommandLine.Option(
+      names = {"--udp-chunk-size"},
+      description = "Maximum size of a GELF UDP datagram in bytes (default: ${DEFAULT-VALUE})",
+      defaultValue = "1420"
+  )
+  private int udpChunkSize;
+
+  @CommandLine.Option(
+      names = {"--streaming"},
+      description = "Parse, format and send the log file in small batches instead of loading it into memory"
+  )
+  private boolean streaming;
+
+  @CommandLine.Option(
+      names = {"--pipeline"},
+      description = "Read, format and send in streaming mode as concurrent stages connected by bounded queues (implies --streaming)"
+  )
+  private boolean pipeline;
+
+  @CommandLine.Option(
+      names = {"--format-threads"},
+      description = "Number of threads formatting GELF messages in the pipeline (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int formatThreads;
+
+  @CommandLine.Option(
+      names = {"--send-threads"},
+      description = "Number of threads sending batches in the pipeline (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int sendThreads;
+
+  @CommandLine.Option(
+      names = {"--queue-capacity"},
+      description = "Maximum number of batches waiting in front of a pipeline stage (default: ${DEFAULT-VALUE})",
+      defaultValue = "16"
+  )
+  private int queueCapacity;
+
+  @CommandLine.Option(
+      names = {"--filter"},
+      description = "Only send log messages matching the expression, e.g. \"ClientStatus >= 400 and sample(10%%)\""
+  )
+  private String filter;
+
+  @CommandLine.Option(
+      names = {"--dedup"},
+      description = "Drop log messages equal to a message seen shortly before, e.g. of overlapping log files or re-runs"
+  )
+  private boolean dedup;
+
+  @CommandLine.Option(
+      names = {"--dedup-window"},
+      description = "Number of messages a message is remembered for at least, determines the memory usage (default: ${DEFAULT-VALUE})",
+      defaultValue = "1000000"
+  )
+  private long dedupWindow;
+
+  @CommandLine.Option(
+      names = {"--dedup-window-time"},
+      description = "Seconds a message is remembered for at least, 0 for no time limit (default: ${DEFAULT-VALUE})",
+      defaultValue = "0"
+  )
+  private int dedupWindowTime;
+
+  @CommandLine.Option(
+      names = {"--dedup-fp-rate"},
+      description = "Probability that a new message is dropped as duplicate by mistake (default: ${DEFAULT-VALUE})",
+      defaultValue = "0.001"
+  )
+  private double dedupFalsePositiveRate;
+
+  @CommandLine.Option(
+      names = {"--rollup"},
+      description = "Send one summary per group of log messages and time window instead of every message"
+  )
+  private boolean rollup;
+
+  @CommandLine.Option(
+      names = {"--rollup-keys"},
+      description = "Fields grouping the messages of a summary (default: ${DEFAULT-VALUE})",
+      defaultValue = "ClientIP,ClientRequestURI,ClientStatus,EdgeServerIP",
+      split = ","
+  )
+  private List<String> rollupKeys;
+
+  @CommandLine.Option(
+      names = {"--rollup-window"},
+      description = "Seconds of EdgeStartTimestamp summarized per message (default: ${DEFAULT-VALUE})",
+      defaultValue = "60"
+  )
+  private int rollupWindow;
+
+  @CommandLine.Option(
+      names = {"-f", "--follow"},
+      description = "Keep following the log file and send appended lines until interrupted, like tail -F"
+  )
+  private boolean follow;
+
+  @CommandLine.Option(
+      names = {"-b", "--batch-size"},
+      description = "Number of messages sent per batch in streaming and follow mode (default: ${DEFAULT-VALUE})",
+      defaultValue = "100"
+  )
+  private int batchSize;
+
+  @CommandLine.Option(
+      names = {"--parse-threads"},
+      description = "Number of threads parsing memory-mapped chunks of the log file, JSON parser only (default: ${DEFAULT-VALUE})",
+      defaultValue = "1"
+  )
+  private int parseThreads;
+
+  @CommandLine.Option(
+      names = {"--preserve-order"},
+      description = "Keep the input order when parsing with several threads (default: ${DEFAULT-VALUE})",
+      defaultValue = "true",
+      negatable = true
+  )
+  private boolean preserveOrder;
+
+  @CommandLine.Option(
+      names = {"--string-cache-size"},
+      description = "Number of values cached per repetitive string field, e.g. the user agent, to share them between "
+          + "parsed messages; 0 disables the cache (default: ${DEFAULT-VALUE})",
+      defaultValue = "4096"
+  )
+  private int stringCacheSize;
+
+  @CommandLine.Option(
+      names = {"--checkpoint-file"},
+      description = "File storing the read position of the log file; a restart resumes from there instead of resending the whole file; "
+          + "not supported with --pipeline or --parse-threads greater than 1"
+  )
+  private File checkpointFile;
+
+  @CommandLine.Option(
+      names = {"--checkpoint-interval"},
+      description = "Seconds between writes of the checkpoint file (default: ${DEFAULT-VALUE})",
+      defaultValue = "5"
+  )
+  private int checkpointInterval;
+
+  @CommandLine.Option(
+      names = {"--journal-dir"},
+      description = "Directory of a disk journal for messages which cannot be sent; they are resent once Graylog is available"
+  )
+  private File journalDir;
+
+  @CommandLine.Option(
+      names = {"--journal-max-size"},
+      description = "Maximum size of the journal in MB (default: ${DEFAULT-VALUE})",
+      defaultValue = "1024"
+  )
+  private long journalMaxSize;
+
+  @CommandLine.Option(
+      names = {"--metrics-port"},
+      description = "Serve pipeline metrics in Prometheus format on http://localhost:<port>/metrics, 0 to disable (default: ${DEFAULT-VALUE})",
+      defaultValue = "0"
+  )
+  private int metricsPort;
+
+  @CommandLine.Option(
+      names = {"--metrics-interval"},
+      description = "Seconds between throughput summary lines in the log, 0 to disable (default: ${DEFAULT-VALUE})",
+      defaultValue = "10"
+  )
+  private int metricsInterval;
+
+  @CommandLine.Option(
+      names = {"--trace"},
+      description = "Log every message in every stage instead of a sample, for debugging"
+  )
+  private boolean trace;
+
+  @CommandLine.Option(
+      names = {"--trace-every"},
+      description = "Log every n-th message of a stage, 0 to log no messages (default: ${DEFAULT-VALUE})",
+      defaultValue = "1000"
+  )
+  private long traceEvery;
+
+  @CommandLine.Option(
+      names = {"--trace-rate"},
+      description = "Maximum number of messages logged per second and stage, 0 for no limit (default: ${DEFAULT-VALUE})",
+      defaultValue = "10"
+  )
+  private long traceRate;
+
   @CommandLine.Option(
       names = {"-v", "--verbose"},
       description = "Enable verbose output"
@@ -71,36 +352,259 @@ public class Log2GraylogCli implements Callable<Integer> {
    * This method is called when the application is started from the command line.
    * It performs the following steps:
    * <p>
-   * The method returns 0 if the log file was successfully processed and sent to Graylog,
+   * The method returns 0 if the log files were successfully processed and sent to Graylog,
    * 1 otherwise.
    */
   @Override
   public Integer call() {
+    if (logFiles == null || logFiles.isEmpty()) {
+      throw new CommandLine.ParameterException(spec.commandLine(), "Missing required parameter: 'LOG_FILE'");
+    }
+
     logger.info("Started Log2Graylog CLI version {}", Log2GraylogCli.class.getPackage().getImplementationVersion());
+    try {
+      return process();
+    } finally {
+      finished.countDown();
+    }
+  }
+
+  private Integer process() {
 
     if (verbose) {
-      System.out.println("Logfile: " + logFile.getAbsolutePath());
+      System.out.println("Logfiles: " + String.join(" ", logFiles) + " (parallelism: " + fileParallelism + ")");
       System.out.println("Parser: " + parserType);
       System.out.println("Graylog URL: " + graylogUrl);
       System.out.println("Timeout: " + timeout + " sec");
+      System.out.println("Concurrency: " + concurrency);
+      System.out.println("Retries: " + maxAttempts + " attempts (backoff: " + retryBackoff + "-" + retryMaxBackoff + " ms)");
+      System.out.println("Circuit breaker: " + breakerThreshold + " failures (open time: " + breakerOpenTime + " sec)");
+      System.out.println("Compression: " + compression + " (threshold: " + compressionThreshold + " bytes)");
+      System.out.println("Streaming: " + streaming + " (batch size: " + batchSize + ")");
+      System.out.println("Pipeline: " + pipeline + " (format threads: " + formatThreads + ", send threads: " + sendThreads
+          + ", queue capacity: " + queueCapacity + " batches)");
+      System.out.println("Filter: " + (filter == null ? "none" : filter));
+      System.out.println("Deduplication: " + dedup + " (window: " + dedupWindow + " messages, " + dedupWindowTime
+          + " sec, false positive rate: " + dedupFalsePositiveRate + ")");
+      System.out.println("Rollup: " + rollup + " (keys: " + String.join(",", rollupKeys) + ", window: " + rollupWindow + " sec)");
+      System.out.println("Follow: " + follow);
+      System.out.println("Checkpoint file: " + checkpointFile + " (interval: " + checkpointInterval + " sec)");
+      System.out.println("Journal: " + journalDir + " (max size: " + journalMaxSize + " MB)");
+      System.out.println("Parse threads: " + parseThreads + " (preserve order: " + preserveOrder + ")");
+      System.out.println("String cache: " + stringCacheSize + " values per field");
+      System.out.println("Metrics port: " + metricsPort + " (summary interval: " + metricsInterval + " sec)");
+      System.out.println("Message trace: " + (trace ? "all messages" : "every " + traceEvery + ". message (max " + traceRate + "/sec)"));
+    }
+
+    // Validate log files
+    final List<Path> logFilePaths;
+    try {
+      logFilePaths = LogFileResolver.resolve(logFiles);
+    } catch (IllegalArgumentException | IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      return 1;
+    }
+
+    if (follow && logFilePaths.size() > 1) {
+      System.err.println("Error: Only a single log file can be followed: " + logFilePaths.size() + " files given");
+      return 1;
+    }
+
+    if (fileParallelism < 1) {
+      System.err.println("Error: File parallelism must be at least 1: " + fileParallelism);
+      return 1;
+    }
+
+    if (concurrency < 1) {
+      System.err.println("Error: Concurrency must be at least 1: " + concurrency);
+      return 1;
+    }
+
+    if (maxAttempts < 1) {
+      System.err.println("Error: Max attempts must be at least 1: " + maxAttempts);
+      return 1;
+    }
+
+    if (batchSize < 1) {
+      System.err.println("Error: Batch size must be at least 1: " + batchSize);
+      return 1;
+    }
+
+    if (parseThreads < 1) {
+      System.err.println("Error: Parse threads must be at least 1: " + parseThreads);
+      return 1;
     }
 
-    // Validate log file
-    if (!logFile.exists() || !logFile.isFile() || !logFile.canRead()) {
-      System.err.println("Error: Log file does not exist, is not a file or cannot be read: " + logFile.getAbsolutePath());
+    // Chunks are split at line breaks, which may be inside a quoted CSV field
+    if (parseThreads > 1 && parserType == ParserType.CSV) {
+      System.err.println("Error: Parse threads greater than 1 are not supported with the CSV parser");
       return 1;
     }
 
+    if (stringCacheSize < 0) {
+      System.err.println("Error: String cache size must not be negative: " + stringCacheSize);
+      return 1;
+    }
+
+    if (formatThreads < 1 || sendThreads < 1 || queueCapacity < 1) {
+      System.err.println("Error: Pipeline threads and queue capacity must be at least 1: format threads " + formatThreads
+          + ", send threads " + sendThreads + ", queue capacity " + queueCapacity);
+      return 1;
+    }
+
+    if (filter != null) {
+      try {
+        LogFilter.compile(filter);
+      } catch (IllegalArgumentException e) {
+        System.err.println("Error: Invalid filter: " + e.getMessage());
+        return 1;
+      }
+    }
+
+    if (dedupWindow < 1 || dedupWindowTime < 0) {
+      System.err.println("Error: Dedup window must be at least 1 message and not negative in time: " + dedupWindow
+          + " messages, " + dedupWindowTime + " sec");
+      return 1;
+    }
+
+    if (!(dedupFalsePositiveRate > 0 && dedupFalsePositiveRate < 1)) {
+      System.err.println("Error: Dedup false positive rate must be between 0 and 1: " + dedupFalsePositiveRate);
+      return 1;
+    }
+
+    final List<LogMessageField> rollupFields = new ArrayList<>();
+    for (String rollupKey : rollupKeys) {
+      final LogMessageField field = LogMessageField.forName(rollupKey);
+      if (field == null) {
+        System.err.println("Error: Unknown rollup key: " + rollupKey);
+        return 1;
+      }
+      rollupFields.add(field);
+    }
+
+    if (rollupWindow < 1) {
+      System.err.println("Error: Rollup window must be at least 1 second: " + rollupWindow);
+      return 1;
+    }
+
+    // Summaries of open windows would be lost on a restart from a checkpoint
+    if (rollup && (follow || checkpointFile != null)) {
+      System.err.println("Error: Rollup cannot be combined with --follow or --checkpoint-file");
+      return 1;
+    }
+
+    // The checkpoint advances block by block as the file is read, in order and on a single thread
+    if (checkpointFile != null && (pipeline || parseThreads > 1)) {
+      System.err.println("Error: --checkpoint-file cannot be combined with --pipeline or --parse-threads greater than 1");
+      return 1;
+    }
+
+    if (checkpointInterval < 0) {
+      System.err.println("Error: Checkpoint interval must not be negative: " + checkpointInterval);
+      return 1;
+    }
+
+    if (metricsPort < 0 || metricsPort > 65535) {
+      System.err.println("Error: Metrics port must be between 0 and 65535: " + metricsPort);
+      return 1;
+    }
+
+    if (metricsInterval < 0) {
+      System.err.println("Error: Metrics interval must not be negative: " + metricsInterval);
+      return 1;
+    }
+
+    if (traceEvery < 0 || traceRate < 0) {
+      System.err.println("Error: Trace sampling must not be negative: every " + traceEvery + ", rate " + traceRate);
+      return 1;
+    }
+    MessageTrace.configure(trace, traceEvery, traceRate);
+
     try {
+      final AppConfig config = new AppConfig();
+      config.setParserType(parserType);
+      config.setSenderType(senderType);
+      config.setGraylogUrl(graylogUrl);
+      config.setTimeout(timeout);
+      config.setConcurrency(concurrency);
+      config.setMaxAttempts(maxAttempts);
+      config.setRetryBackoff(retryBackoff);
+      config.setRetryMaxBackoff(retryMaxBackoff);
+      config.setBreakerThreshold(breakerThreshold);
+      config.setBreakerOpenTime(breakerOpenTime);
+      config.setCompression(compression);
+      config.setCompressionThreshold(compressionThreshold);
+      config.setUdpChunkSize(udpChunkSize);
+      config.setParseThreads(parseThreads);
+      config.setPreserveOrder(preserveOrder);
+      config.setStringCacheSize(stringCacheSize);
+      config.setCheckpointFile(checkpointFile == null ? null : checkpointFile.toPath());
+      config.setCheckpointInterval(checkpointInterval);
+      config.setJournalDir(journalDir == null ? null : journalDir.toPath());
+      config.setJournalMaxSize(journalMaxSize);
+      config.setPipeline(pipeline);
+      config.setFormatThreads(formatThreads);
+      config.setSendThreads(sendThreads);
+      config.setQueueCapacity(queueCapacity);
+      config.setFilter(filter);
+      config.setDedup(dedup);
+      config.setDedupWindow(dedupWindow);
+      config.setDedupWindowTime(dedupWindowTime);
+      config.setDedupFalsePositiveRate(dedupFalsePositiveRate);
+      config.setRollupKeys(rollup ? rollupFields : null);
+      config.setRollupWindow(rollupWindow);
+
       // Set up dependency injection with injector class implementation object
-      final Injector injector = Guice.createInjector(new AppInjector(parserType, senderType, graylogUrl, timeout));
+      final Injector injector = Guice.createInjector(new AppInjector(config));
       final LogProcessingService logProcessingService = injector.getInstance(LogProcessingService.class);
+      shutdownGracefully(follow ? logProcessingService : null);
 
-      // Process the log file
-      final Path logFilePath = logFile.toPath();
-      int sentCount = logProcessingService.processLogFile(logFilePath);
+      // Expose the pipeline metrics while processing
+      final PipelineMetrics metrics = PipelineMetrics.global();
+      metrics.registerMBean();
+      final MetricsHttpServer metricsServer = metricsPort > 0 ? new MetricsHttpServer(metrics, metricsPort) : null;
+      final ThroughputReporter reporter = metricsInterval > 0
+          ? new ThroughputReporter(metrics, Duration.ofSeconds(metricsInterval)) : null;
+
+      // Process the log files
+      final Path logFilePath = logFilePaths.get(0);
+      final boolean streamingMode = streaming || pipeline;
+      final int sentCount;
+      try {
+        if (rollup) {
+          sentCount = logProcessingService.rollUpLogFiles(logFilePaths, fileParallelism, batchSize);
+        } else if (logFilePaths.size() > 1) {
+          final Map<Path, Integer> sentCounts = logProcessingService.processLogFiles(logFilePaths, fileParallelism, streamingMode, batchSize);
+          sentCounts.forEach((path, count) -> System.out.println(path + ": " + count + " messages"));
+          sentCount = sentCounts.values().stream().mapToInt(Integer::intValue).sum();
+        } else if (follow) {
+          sentCount = logProcessingService.followLogFile(logFilePath, batchSize);
+        } else if (streamingMode) {
+          sentCount = logProcessingService.processLogFileStreaming(logFilePath, batchSize);
+        } else {
+          sentCount = logProcessingService.processLogFile(logFilePath);
+        }
+
+        // Give a journaling sender the chance to replay its journal
+        if (injector.getInstance(GelfSender.class) instanceof Closeable closeable) {
+          closeable.close();
+        }
+      } finally {
+        if (reporter != null) {
+          reporter.close();
+        }
+        if (metricsServer != null) {
+          metricsServer.close();
+        }
+      }
+
+      final String hitRates = injector.getInstance(StringInterner.class).hitRates();
+      if (!hitRates.isEmpty()) {
+        logger.info("String cache hit rates: {}", hitRates);
+      }
       logger.info("Successfully sent {} messages to Graylog ({}, {})", sentCount, parserType, senderType);
-      System.out.println("Successfully sent " + sentCount + " messages to Graylog");
+      System.out.println("Successfully sent " + sentCount + (rollup ? " summaries" : " messages") + " to Graylog"
+          + (logFilePaths.size() > 1 ? " from " + logFilePaths.size() + " files" : ""));
       return 0;
 
     } catch (final Exception e) {
@@ -113,4 +617,27 @@ public class Log2GraylogCli implements Callable<Integer> {
       return 1;
     }
   }
+
+  // On Ctrl-C / SIGTERM stops following and waits until the last batch was sent and the sender was closed. The
+  // following thread is not interrupted, an interrupted sender would fail to send the batch. Log4j's own shutdown
+  // hook is disabled in log4j2.xml, so logging is stopped last and the final log lines are not lost.
+  private void shutdownGracefully(final LogProcessingService following) {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      if (following != null) {
+        try {
+          following.stopFollowing();
+        } catch (IOException e) {
+          logger.warn("Error stopping to follow the log file", e);
+        }
+        try {
+          if (!finished.await(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            logger.warn("Last batch not sent within {} ms, exiting anyway", SHUTDOWN_TIMEOUT_MILLIS);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      LogManager.shutdown();
+    }, "log2graylog-shutdown"));
+  }
 }
@@ -0,0 +1,84 @@
+package org.rolandort.cli;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Expands the log file arguments of the command line into a list of readable files.
+ * <p>
+ * An argument is either a file, a directory (all files below it) or a glob pattern like
+ * {@code logs/2019-12-*&#47;*.json} (the pattern is matched against the path, see {@link FileSystems#getPathMatcher}).
+ */
+final class LogFileResolver {
+
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private LogFileResolver() {
+  }
+
+  /**
+   * @param arguments The log file arguments
+   * @return The matching files in argument order (sorted by name per argument) without duplicates
+   * @throws IllegalArgumentException If an argument does not match any readable file
+   * @throws IOException              If a directory cannot be read
+   */
+  static List<Path> resolve(final List<String> arguments) throws IOException {
+    final Set<Path> files = new LinkedHashSet<>();
+    for (final String argument : arguments) {
+      final List<Path> matches = resolve(argument);
+      if (matches.isEmpty()) {
+        throw new IllegalArgumentException("Log file does not exist, is not a file or cannot be read: " + argument);
+      }
+      files.addAll(matches);
+    }
+    return new ArrayList<>(files);
+  }
+
+  private static List<Path> resolve(final String argument) throws IOException {
+    if (!isGlob(argument)) {
+      final Path path = Paths.get(argument).toAbsolutePath().normalize();
+      if (Files.isDirectory(path)) {
+        return walk(path, file -> true);
+      }
+      return Files.isRegularFile(path) && Files.isReadable(path) ? List.of(path) : List.of();
+    }
+
+    // Walk the directory in front of the first glob character and match the full path
+    final Path pattern = Paths.get(argument).toAbsolutePath().normalize();
+    Path base = pattern.getRoot();
+    for (final Path element : pattern) {
+      if (isGlob(element.toString())) {
+        break;
+      }
+      base = base.resolve(element);
+    }
+    if (!Files.isDirectory(base)) {
+      return List.of();
+    }
+    final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.toString().replace("\\", "\\\\"));
+    return walk(base, matcher);
+  }
+
+  private static List<Path> walk(final Path directory, final PathMatcher matcher) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      return paths.filter(Files::isRegularFile)
+          .filter(Files::isReadable)
+          .filter(matcher::matches)
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static boolean isGlob(final String argument) {
+    return argument.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+  }
+}
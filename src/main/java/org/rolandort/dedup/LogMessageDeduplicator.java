@@ -0,0 +1,180 @@
+package org.rolandort.dedup;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.FieldHash;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Drops log messages whose fields are all equal to a message seen before within a window, e.g. records of
+ * overlapping log exports or of a re-run after a partial failure.
+ * <p>
+ * Messages are remembered as a 128-bit hash of all {@link LogMessageField}s in a {@link RotatingBloomFilter}. The
+ * filter is rotated after the window count of messages or the window time, whichever comes first, so a repeat is
+ * detected if it follows within one to two windows and the memory usage is bounded by the window count. A new message
+ * is dropped with the configured false positive rate. One deduplicator is shared by all files processed in a run and is
+ * thread-safe.
+ */
+public class LogMessageDeduplicator {
+  private static final Logger logger = LogManager.getLogger(LogMessageDeduplicator.class);
+
+  // Seed of the second 64 bits, the first start from FieldHash.SEED
+  private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+  private static final PipelineMetrics metrics = PipelineMetrics.global();
+
+  private final RotatingBloomFilter filter;
+  private final long windowCount;
+  private final long windowNanos;
+  private final LongSupplier nanoClock;
+  private final AtomicLong generationCount = new AtomicLong();
+  private final LongAdder duplicateCount = new LongAdder();
+  private volatile long generationStart;
+
+  /**
+   * @param windowCount       Number of messages after which the oldest remembered messages are forgotten
+   * @param windowTime        Time after which the oldest remembered messages are forgotten, zero for no time limit
+   * @param falsePositiveRate Probability that a new message is dropped as duplicate
+   */
+  public LogMessageDeduplicator(final long windowCount, final Duration windowTime, final double falsePositiveRate) {
+    this(windowCount, windowTime, falsePositiveRate, System::nanoTime);
+  }
+
+  LogMessageDeduplicator(final long windowCount, final Duration windowTime, final double falsePositiveRate,
+                         final LongSupplier nanoClock) {
+    this.filter = new RotatingBloomFilter(windowCount, falsePositiveRate);
+    this.windowCount = windowCount;
+    this.windowNanos = windowTime.toNanos();
+    this.nanoClock = nanoClock;
+    this.generationStart = nanoClock.getAsLong();
+    logger.info("Deduplicating within {} messages{} (false positive rate {}, {} KB, {} hash functions)",
+        windowCount, windowNanos > 0 ? " or " + windowTime.toSeconds() + " sec" : "", falsePositiveRate,
+        filter.sizeInBytes() / 1024, filter.hashCount());
+  }
+
+  /**
+   * Remembers a message and checks whether it was seen before.
+   *
+   * @param logMessage The message
+   * @return True if an equal message was probably seen before within the window
+   */
+  public boolean isDuplicate(final LogMessage logMessage) {
+    rotateIfDue();
+
+    long hash1 = FieldHash.SEED;
+    long hash2 = SEED2;
+    for (LogMessageField field : LogMessageField.all()) {
+      final Object value = field.get(logMessage);
+      hash1 = FieldHash.update(hash1, value);
+      hash2 = FieldHash.update(hash2, value);
+    }
+
+    final boolean duplicate = filter.put(FieldHash.mix(hash1), FieldHash.mix(hash2));
+    if (duplicate) {
+      duplicateCount.increment();
+      metrics.duplicatesDropped.increment();
+    }
+    return duplicate;
+  }
+
+  /**
+   * @param logMessages The messages
+   * @return The messages which were not seen before, in order
+   */
+  public List<LogMessage> filter(final List<LogMessage> logMessages) {
+    final List<LogMessage> unique = new ArrayList<>(logMessages.size());
+    for (LogMessage logMessage : logMessages) {
+      if (!isDuplicate(logMessage)) {
+        unique.add(logMessage);
+      }
+    }
+    return unique;
+  }
+
+  /**
+   * @param logMessages The messages, consumed lazily
+   * @return The messages which were not seen before, in order
+   */
+  public FilteringIterator filter(final Iterator<LogMessage> logMessages) {
+    return new FilteringIterator(logMessages);
+  }
+
+  /**
+   * Skips duplicates of the underlying messages and counts them.
+   */
+  public final class FilteringIterator implements Iterator<LogMessage> {
+    private final Iterator<LogMessage> logMessages;
+    private LogMessage next;
+    private long droppedCount;
+
+    private FilteringIterator(final Iterator<LogMessage> logMessages) {
+      this.logMessages = logMessages;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && logMessages.hasNext()) {
+        final LogMessage logMessage = logMessages.next();
+        if (isDuplicate(logMessage)) {
+          droppedCount++;
+        } else {
+          next = logMessage;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public LogMessage next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final LogMessage logMessage = next;
+      next = null;
+      return logMessage;
+    }
+
+    /**
+     * @return The number of duplicates skipped by this iterator so far
+     */
+    public long droppedCount() {
+      return droppedCount;
+    }
+  }
+
+  /**
+   * @return The number of messages detected as duplicates so far
+   */
+  public long duplicateCount() {
+    return duplicateCount.sum();
+  }
+
+  // A generation ends after the window count of messages or the window time
+  private void rotateIfDue() {
+    final long count = generationCount.incrementAndGet();
+    final boolean countDue = count > windowCount;
+    final boolean timeDue = windowNanos > 0 && nanoClock.getAsLong() - generationStart >= windowNanos;
+    if (countDue || timeDue) {
+      synchronized (this) {
+        // Another thread may have rotated in the meantime
+        if (generationCount.get() > windowCount
+            || windowNanos > 0 && nanoClock.getAsLong() - generationStart >= windowNanos) {
+          filter.rotate();
+          generationCount.set(1);
+          generationStart = nanoClock.getAsLong();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.rolandort.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter of 128-bit hashes with a bounded window: the filter consists of two generations, new hashes are added
+ * to the current one and looked up in both. {@link #rotate()} drops the previous generation and starts a new one, so
+ * a hash is remembered for at least one and at most two generations and the memory usage is fixed.
+ * <p>
+ * Each generation is sized for the expected number of hashes added before it is rotated, with half the false
+ * positive rate, so looking up both generations stays within the configured rate. The bit positions are derived
+ * from the two halves of the hash by double hashing. All methods are thread-safe.
+ */
+public class RotatingBloomFilter {
+  private static final double LN2 = Math.log(2);
+
+  private final long bitCount;
+  private final int hashCount;
+  private long[] current;
+  private long[] previous;
+
+  /**
+   * @param expectedInsertions Number of hashes added to a generation before it is rotated
+   * @param falsePositiveRate  Probability that a new hash is reported as seen, between 0 and 1
+   * @throws IllegalArgumentException If a parameter is out of range
+   */
+  public RotatingBloomFilter(final long expectedInsertions, final double falsePositiveRate) {
+    if (expectedInsertions < 1) {
+      throw new IllegalArgumentException("Expected insertions must be at least 1: " + expectedInsertions);
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+    }
+    final double generationRate = falsePositiveRate / 2;
+    final long bits = (long) Math.ceil(-expectedInsertions * Math.log(generationRate) / (LN2 * LN2));
+    final long words = (bits + 63) / 64;
+    if (words > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Bloom filter too large for " + expectedInsertions + " insertions");
+    }
+    this.bitCount = words * 64;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * LN2));
+    this.current = new long[(int) words];
+    this.previous = new long[(int) words];
+  }
+
+  /**
+   * Adds a hash to the current generation.
+   *
+   * @param hash1 The first 64 bits of the hash
+   * @param hash2 The second 64 bits of the hash
+   * @return True if the hash was probably added before within the window, false if it is definitely new
+   */
+  public synchronized boolean put(final long hash1, final long hash2) {
+    boolean inCurrent = true;
+    boolean inPrevious = true;
+    long combined = hash1;
+    for (int i = 0; i < hashCount; i++) {
+      final long bit = (combined & Long.MAX_VALUE) % bitCount;
+      final int word = (int) (bit >>> 6);
+      final long mask = 1L << bit;
+      inPrevious &= (previous[word] & mask) != 0;
+      if ((current[word] & mask) == 0) {
+        inCurrent = false;
+        current[word] |= mask;
+      }
+      combined += hash2;
+    }
+    return inCurrent || inPrevious;
+  }
+
+  /**
+   * Starts a new generation, the hashes of the previous generation are forgotten.
+   */
+  public synchronized void rotate() {
+    final long[] cleared = previous;
+    Arrays.fill(cleared, 0);
+    previous = current;
+    current = cleared;
+  }
+
+  /**
+   * @return The memory used by both generations in bytes
+   */
+  public long sizeInBytes() {
+    return 2 * bitCount / 8;
+  }
+
+  public int hashCount() {
+    return hashCount;
+  }
+}
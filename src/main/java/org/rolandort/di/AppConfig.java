@@ -0,0 +1,49 @@
+package org.rolandort.di;
+
+import lombok.Data;
+import org.rolandort.model.LogMessageField;
+import org.rolandort.parser.ParserType;
+import org.rolandort.parser.StringInterner;
+import org.rolandort.sender.CompressionType;
+import org.rolandort.sender.SenderType;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Application settings collected from the command line and handed to the {@link AppInjector}.
+ */
+@Data
+public class AppConfig {
+  private ParserType parserType = ParserType.JSON;
+  private SenderType senderType = SenderType.HTTP;
+  private String graylogUrl = "http://localhost:12202/gelf";
+  private int timeout = 10;        // sec
+  private int concurrency = 1;     // max in-flight requests or TCP connections
+  private CompressionType compression = CompressionType.NONE;
+  private int compressionThreshold = 512;  // bytes
+  private int udpChunkSize = 1420;         // bytes per datagram
+  private int maxAttempts = 3;             // attempts per message including retries
+  private long retryBackoff = 200;         // ms before the first retry, doubled per retry
+  private long retryMaxBackoff = 10000;    // ms
+  private int breakerThreshold = 5;        // consecutive failures opening the circuit breaker, 0 = disabled
+  private int breakerOpenTime = 30;        // sec
+  private int parseThreads = 1;            // > 1 parses memory-mapped chunks in parallel
+  private boolean preserveOrder = true;    // keep input order when parsing in parallel
+  private Path checkpointFile;             // null disables checkpoints
+  private int checkpointInterval = 5;      // sec between checkpoint flushes
+  private Path journalDir;                 // null disables the journal of unsent messages
+  private long journalMaxSize = 1024;      // MB
+  private boolean pipeline;                // format and send on separate threads in streaming mode
+  private int formatThreads = 1;           // threads of the pipeline format stage
+  private int sendThreads = 1;             // threads of the pipeline send stage
+  private int queueCapacity = 16;          // batches waiting in front of a pipeline stage
+  private String filter;                   // null accepts all messages
+  private int stringCacheSize = StringInterner.DEFAULT_CAPACITY;  // cached values per string field, 0 disables
+  private boolean dedup;                   // drop repeated log messages
+  private long dedupWindow = 1_000_000;    // messages remembered for deduplication
+  private int dedupWindowTime;             // sec messages are remembered, 0 = no time limit
+  private double dedupFalsePositiveRate = 0.001;
+  private List<LogMessageField> rollupKeys;  // null disables the rollup of messages into summaries
+  private int rollupWindow = 60;           // sec per summary
+}
@@ -3,32 +3,38 @@ package org.rolandort.di;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import org.rolandort.filter.LogFilter;
 import org.rolandort.formatter.DefaultGelfFormatter;
 import org.rolandort.formatter.GelfFormatter;
+import org.rolandort.metrics.PipelineMetrics;
 import org.rolandort.parser.CsvLogParser;
 import org.rolandort.parser.JsonLogParser;
 import org.rolandort.parser.LogParser;
-import org.rolandort.parser.ParserType;
+import org.rolandort.parser.StringInterner;
+import org.rolandort.sender.CircuitBreaker;
+import org.rolandort.sender.GelfJournal;
 import org.rolandort.sender.GelfSender;
 import org.rolandort.sender.HttpGelfSender;
-import org.rolandort.sender.SenderType;
+import org.rolandort.sender.JournalingGelfSender;
+import org.rolandort.sender.MeteredGelfSender;
+import org.rolandort.sender.RetryPolicy;
 import org.rolandort.sender.SimulateGelfSender;
+import org.rolandort.sender.TcpGelfSender;
+import org.rolandort.sender.UdpGelfSender;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 
 /**
  * Guice module for dependency injection.
  */
 public class AppInjector extends AbstractModule {
 
-  final ParserType parserType;
-  final SenderType senderType;
-  private final String graylogUrl;
-  private final int timeout;
+  private final AppConfig config;
 
-  public AppInjector(final ParserType parserType, final SenderType senderType, final String graylogUrl, final int timeout) {
-    this.parserType = parserType;
-    this.senderType = senderType;
-    this.graylogUrl = graylogUrl;
-    this.timeout = timeout;
+  public AppInjector(final AppConfig config) {
+    this.config = config;
   }
 
   // Simple bindings for GelfFormatter
@@ -36,25 +42,64 @@ public class AppInjector extends AbstractModule {
   protected void configure() {
     // Bind the service to implementation class
     bind(GelfFormatter.class).to(DefaultGelfFormatter.class);
+    bind(AppConfig.class).toInstance(config);
   }
 
   // Provider method for LogParser depending on parser type
   @Provides
   @Singleton
-  public LogParser provideLogParser() {
-    return switch (parserType) {
-      case CSV -> new CsvLogParser();
-      case JSON -> new JsonLogParser();
+  public LogParser provideLogParser(final StringInterner interner) {
+    final LogFilter filter = config.getFilter() == null ? null : LogFilter.compile(config.getFilter());
+    return switch (config.getParserType()) {
+      case CSV -> new CsvLogParser(filter, interner);
+      case JSON -> new JsonLogParser(filter, interner);
     };
   }
 
+  // Cache of repeated string values shared by all parse threads
+  @Provides
+  @Singleton
+  public StringInterner provideStringInterner() {
+    return config.getStringCacheSize() > 0
+        ? new StringInterner(StringInterner.DEFAULT_FIELDS, config.getStringCacheSize())
+        : StringInterner.disabled();
+  }
+
   // Sender method for GelfSender depending on sender type
   @Provides
   @Singleton
   public GelfSender provideGelfSender() {
-    return switch (senderType) {
-      case HTTP -> new HttpGelfSender(graylogUrl, timeout);
+    final GelfSender sender = new MeteredGelfSender(createGelfSender(), PipelineMetrics.global());
+    if (config.getJournalDir() == null) {
+      return sender;
+    }
+    try {
+      final GelfJournal journal = new GelfJournal(config.getJournalDir(), GelfJournal.DEFAULT_SEGMENT_SIZE,
+          config.getJournalMaxSize() * 1024 * 1024);
+      return new JournalingGelfSender(sender, journal, Duration.ofSeconds(config.getTimeout()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening GELF journal " + config.getJournalDir(), e);
+    }
+  }
+
+  private GelfSender createGelfSender() {
+    return switch (config.getSenderType()) {
+      case HTTP -> new HttpGelfSender(config.getGraylogUrl(), config.getTimeout(), config.getConcurrency(),
+          config.getCompression(), config.getCompressionThreshold(), createRetryPolicy(), createCircuitBreaker());
+      case UDP -> new UdpGelfSender(config.getGraylogUrl(), config.getCompression(), config.getCompressionThreshold(),
+          config.getUdpChunkSize());
+      case TCP -> new TcpGelfSender(config.getGraylogUrl(), config.getTimeout(), config.getConcurrency(), createRetryPolicy(),
+          createCircuitBreaker());
       case SIMULATE -> new SimulateGelfSender();
     };
   }
-}
\ No newline at end of file
+
+  private CircuitBreaker createCircuitBreaker() {
+    return new CircuitBreaker(config.getGraylogUrl(), config.getBreakerThreshold(), Duration.ofSeconds(config.getBreakerOpenTime()));
+  }
+
+  private RetryPolicy createRetryPolicy() {
+    return new RetryPolicy(config.getMaxAttempts(), Duration.ofMillis(config.getRetryBackoff()),
+        Duration.ofMillis(config.getRetryMaxBackoff()));
+  }
+}
@@ -0,0 +1,326 @@
+package org.rolandort.filter;
+
+import org.rolandort.model.FieldHash;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Recursive descent parser compiling a filter expression into a tree of predicates, see {@link LogFilter}.
+ * <pre>
+ *   or         = and { ("or" | "||") and }
+ *   and        = not { ("and" | "&amp;&amp;") not }
+ *   not        = ("not" | "!") not | primary
+ *   primary    = "(" or ")" | "true" | "false" | sample | comparison
+ *   sample     = "sample" "(" number ["%"] { "," field } ")"
+ *   comparison = field ( op literal | ["not"] "in" "(" literal { "," literal } ")" | "is" ["not"] "null" )
+ *   op         = "==" | "=" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "~" | "!~"
+ * </pre>
+ */
+final class FilterExpressionParser {
+  private final String expression;
+  private final Set<LogMessageField> fields = EnumSet.noneOf(LogMessageField.class);
+  private int pos;
+
+  FilterExpressionParser(final String expression) {
+    this.expression = expression;
+  }
+
+  LogFilter parse() {
+    final Predicate<LogMessage> predicate = parseOr();
+    skipWhitespace();
+    if (pos < expression.length()) {
+      throw error("Unexpected '" + expression.substring(pos) + "'");
+    }
+    return new LogFilter(expression, predicate, fields);
+  }
+
+  private Predicate<LogMessage> parseOr() {
+    Predicate<LogMessage> left = parseAnd();
+    while (keyword("or") || symbol("||")) {
+      final Predicate<LogMessage> first = left;
+      final Predicate<LogMessage> second = parseAnd();
+      left = logMessage -> first.test(logMessage) || second.test(logMessage);
+    }
+    return left;
+  }
+
+  private Predicate<LogMessage> parseAnd() {
+    Predicate<LogMessage> left = parseNot();
+    while (keyword("and") || symbol("&&")) {
+      final Predicate<LogMessage> first = left;
+      final Predicate<LogMessage> second = parseNot();
+      left = logMessage -> first.test(logMessage) && second.test(logMessage);
+    }
+    return left;
+  }
+
+  private Predicate<LogMessage> parseNot() {
+    if (keyword("not") || symbol("!")) {
+      return parseNot().negate();
+    }
+    return parsePrimary();
+  }
+
+  private Predicate<LogMessage> parsePrimary() {
+    if (symbol("(")) {
+      final Predicate<LogMessage> inner = parseOr();
+      expect(")");
+      return inner;
+    }
+    if (keyword("true")) {
+      return logMessage -> true;
+    }
+    if (keyword("false")) {
+      return logMessage -> false;
+    }
+    if (keyword("sample")) {
+      return parseSample();
+    }
+    return parseComparison();
+  }
+
+  private Predicate<LogMessage> parseSample() {
+    expect("(");
+    final int ratePos = pos;
+    double rate = parseNumber();
+    if (symbol("%")) {
+      rate /= 100;
+    }
+    if (!(rate >= 0 && rate <= 1)) {
+      pos = ratePos;
+      throw error("Sample rate must be between 0 and 1 or 0% and 100%");
+    }
+    final List<LogMessageField> keys = new ArrayList<>();
+    while (symbol(",")) {
+      keys.add(parseField());
+    }
+    expect(")");
+
+    final LogMessageField[] hashed = keys.isEmpty() ? LogMessageField.all().clone() : keys.toArray(new LogMessageField[0]);
+    fields.addAll(Arrays.asList(hashed));
+    // Compare the top 53 bits of the hash as a fraction in [0, 1)
+    final long threshold = (long) (rate * (1L << 53));
+    return logMessage -> (hash(logMessage, hashed) >>> 11) < threshold;
+  }
+
+  private Predicate<LogMessage> parseComparison() {
+    final LogMessageField field = parseField();
+    fields.add(field);
+    final boolean numeric = field.type() != LogMessageField.Type.STRING;
+
+    if (keyword("is")) {
+      final boolean negated = keyword("not");
+      if (!keyword("null")) {
+        throw error("Expected 'null'");
+      }
+      return negated ? logMessage -> field.get(logMessage) != null : logMessage -> field.get(logMessage) == null;
+    }
+
+    final boolean negatedIn = keyword("not");
+    if (keyword("in")) {
+      return parseIn(field, numeric, negatedIn);
+    } else if (negatedIn) {
+      throw error("Expected 'in'");
+    }
+
+    final int opPos = pos;
+    final String op = parseOperator();
+    if (op.equals("~") || op.equals("!~")) {
+      if (numeric) {
+        pos = opPos;
+        throw error("Operator " + op + " requires a string field: " + field.key());
+      }
+      final Pattern pattern = parseRegex();
+      final boolean match = op.equals("~");
+      return logMessage -> {
+        final Object value = field.get(logMessage);
+        return value != null && pattern.matcher((String) value).find() == match;
+      };
+    }
+
+    if (numeric) {
+      final double literal = parseNumber();
+      final DoublePredicate compare = switch (op) {
+        case "==" -> value -> value == literal;
+        case "!=" -> value -> value != literal;
+        case "<" -> value -> value < literal;
+        case "<=" -> value -> value <= literal;
+        case ">" -> value -> value > literal;
+        default -> value -> value >= literal;
+      };
+      return logMessage -> {
+        final Object value = field.get(logMessage);
+        return value != null && compare.test(((Number) value).doubleValue());
+      };
+    }
+
+    if (!op.equals("==") && !op.equals("!=")) {
+      pos = opPos;
+      throw error("Operator " + op + " requires a numeric field: " + field.key());
+    }
+    final String literal = parseString();
+    final boolean equal = op.equals("==");
+    return logMessage -> {
+      final Object value = field.get(logMessage);
+      return value != null && literal.equals(value) == equal;
+    };
+  }
+
+  private Predicate<LogMessage> parseIn(final LogMessageField field, final boolean numeric, final boolean negated) {
+    expect("(");
+    final Set<Object> values = new HashSet<>();
+    do {
+      values.add(numeric ? (Object) parseNumber() : parseString());
+    } while (symbol(","));
+    expect(")");
+
+    if (numeric) {
+      return logMessage -> {
+        final Object value = field.get(logMessage);
+        return value != null && values.contains(((Number) value).doubleValue()) != negated;
+      };
+    }
+    return logMessage -> {
+      final Object value = field.get(logMessage);
+      return value != null && values.contains(value) != negated;
+    };
+  }
+
+  private LogMessageField parseField() {
+    skipWhitespace();
+    final int start = pos;
+    while (pos < expression.length() && isIdentifierChar(expression.charAt(pos))) {
+      pos++;
+    }
+    if (start == pos) {
+      throw error("Expected a field name");
+    }
+    final String name = expression.substring(start, pos);
+    final LogMessageField field = LogMessageField.forName(name);
+    if (field == null) {
+      pos = start;
+      throw error("Unknown field '" + name + "'");
+    }
+    return field;
+  }
+
+  private String parseOperator() {
+    for (String op : new String[] {"==", "!=", "<=", ">=", "!~", "<", ">", "~", "="}) {
+      if (symbol(op)) {
+        return op.equals("=") ? "==" : op;
+      }
+    }
+    throw error("Expected a comparison operator");
+  }
+
+  private double parseNumber() {
+    skipWhitespace();
+    final int start = pos;
+    if (pos < expression.length() && (expression.charAt(pos) == '-' || expression.charAt(pos) == '+')) {
+      pos++;
+    }
+    while (pos < expression.length() && (Character.isDigit(expression.charAt(pos)) || expression.charAt(pos) == '.'
+        || expression.charAt(pos) == 'e' || expression.charAt(pos) == 'E')) {
+      pos++;
+    }
+    try {
+      return Double.parseDouble(expression.substring(start, pos));
+    } catch (NumberFormatException e) {
+      pos = start;
+      throw error("Expected a number");
+    }
+  }
+
+  private String parseString() {
+    skipWhitespace();
+    if (pos >= expression.length() || (expression.charAt(pos) != '\'' && expression.charAt(pos) != '"')) {
+      throw error("Expected a quoted string");
+    }
+    final char quote = expression.charAt(pos++);
+    final StringBuilder value = new StringBuilder();
+    while (true) {
+      if (pos >= expression.length()) {
+        throw error("Unterminated string");
+      }
+      final char c = expression.charAt(pos++);
+      if (c == quote) {
+        return value.toString();
+      } else if (c == '\\' && pos < expression.length()) {
+        value.append(expression.charAt(pos++));
+      } else {
+        value.append(c);
+      }
+    }
+  }
+
+  private Pattern parseRegex() {
+    final int start = pos;
+    final String regex = parseString();
+    try {
+      return Pattern.compile(regex);
+    } catch (PatternSyntaxException e) {
+      pos = start;
+      throw error("Invalid regular expression: " + e.getDescription());
+    }
+  }
+
+  // Case-insensitive keyword, not followed by further identifier characters
+  private boolean keyword(final String keyword) {
+    skipWhitespace();
+    final int end = pos + keyword.length();
+    if (expression.regionMatches(true, pos, keyword, 0, keyword.length())
+        && (end == expression.length() || !isIdentifierChar(expression.charAt(end)))) {
+      pos = end;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean symbol(final String symbol) {
+    skipWhitespace();
+    if (expression.startsWith(symbol, pos)) {
+      pos += symbol.length();
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(final String symbol) {
+    if (!symbol(symbol)) {
+      throw error("Expected '" + symbol + "'");
+    }
+  }
+
+  private void skipWhitespace() {
+    while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private static boolean isIdentifierChar(final char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  private IllegalArgumentException error(final String message) {
+    return new IllegalArgumentException(message + " at position " + (pos + 1) + " of filter: " + expression);
+  }
+
+  private static long hash(final LogMessage logMessage, final LogMessageField[] hashed) {
+    long hash = FieldHash.SEED;
+    for (LogMessageField field : hashed) {
+      hash = FieldHash.update(hash, field.get(logMessage));
+    }
+    return FieldHash.mix(hash);
+  }
+}
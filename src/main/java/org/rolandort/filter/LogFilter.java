@@ -0,0 +1,93 @@
+package org.rolandort.filter;
+
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A filter expression over {@link LogMessage} fields, compiled once into a predicate.
+ * <p>
+ * Examples:
+ * <pre>
+ *   ClientStatus &gt;= 400
+ *   OriginResponseTime &gt; 500000000 and ClientRequestURI ~ '^/api/'
+ *   ClientStatus != 200 or sample(1%)
+ *   ClientStatus in (200, 304) and sample(0.01, ClientIP)
+ * </pre>
+ * Fields are named by their input key or Java name, ignoring case. Numbers are compared numerically, strings with
+ * {@code ==}, {@code !=}, {@code in} and {@code ~} (regular expression found in the value). A comparison with a
+ * missing value is false, {@code is null} and {@code is not null} test for missing values. Conditions are combined with
+ * {@code and}, {@code or}, {@code not} and parentheses, evaluated from left to right with short circuit.
+ * <p>
+ * {@code sample(rate, field...)} keeps the given fraction of messages, decided by a hash of the given fields (all
+ * fields if none are given), so the same messages are kept in every run and e.g. all requests of a sampled client IP
+ * are kept together.
+ * <p>
+ * The parsers know the {@link #fields() referenced fields}: they evaluate the filter as soon as these are bound and
+ * skip the rest of a rejected record. Instances are immutable and thread-safe.
+ */
+public final class LogFilter implements Predicate<LogMessage> {
+  private final String expression;
+  private final Predicate<LogMessage> predicate;
+  private final Set<LogMessageField> fields;
+  private final long fieldMask;
+
+  LogFilter(final String expression, final Predicate<LogMessage> predicate, final Set<LogMessageField> fields) {
+    this.expression = expression;
+    this.predicate = predicate;
+    this.fields = fields.isEmpty() ? EnumSet.noneOf(LogMessageField.class) : EnumSet.copyOf(fields);
+    long mask = 0;
+    for (LogMessageField field : fields) {
+      mask |= 1L << field.ordinal();
+    }
+    this.fieldMask = mask;
+  }
+
+  /**
+   * Compiles a filter expression.
+   *
+   * @param expression The expression, e.g. "ClientStatus &gt;= 400"
+   * @return The compiled filter
+   * @throws IllegalArgumentException If the expression is invalid, with the position of the error
+   */
+  public static LogFilter compile(final String expression) {
+    return new FilterExpressionParser(expression).parse();
+  }
+
+  /**
+   * @return True if the message is accepted by the filter
+   */
+  @Override
+  public boolean test(final LogMessage logMessage) {
+    return predicate.test(logMessage);
+  }
+
+  /**
+   * @return The fields the filter depends on
+   */
+  public Set<LogMessageField> fields() {
+    return EnumSet.copyOf(fields);
+  }
+
+  /**
+   * @return True if the filter depends on the field
+   */
+  public boolean references(final LogMessageField field) {
+    return (fieldMask & (1L << field.ordinal())) != 0;
+  }
+
+  /**
+   * @return The referenced fields as bits by {@link LogMessageField#ordinal()}, for tracking bound fields cheaply
+   */
+  public long fieldMask() {
+    return fieldMask;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+}
@@ -3,17 +3,34 @@ package org.rolandort.formatter;
 import com.google.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.MessageTrace;
+import org.rolandort.metrics.PipelineMetrics;
 import org.rolandort.model.GelfMessage;
 import org.rolandort.model.LogMessage;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 
 @Singleton
 public class DefaultGelfFormatter implements GelfFormatter {
   private static final Logger logger = LogManager.getLogger(DefaultGelfFormatter.class);
+  private static final MessageTrace trace = MessageTrace.forStage("format");
+
+  // Accessors of all LogMessage fields, resolved once at class initialization instead of per message
+  private static final List<FieldAccessor> FIELD_ACCESSORS = createFieldAccessors();
+  // Capacity which fits all fields without resizing the map (default load factor 0.75)
+  private static final int ADDITIONAL_FIELDS_CAPACITY = (int) (FIELD_ACCESSORS.size() / 0.75f) + 1;
 
   /**
    * Formats a {@link LogMessage} into a {@link GelfMessage}.
@@ -23,7 +40,10 @@ public class DefaultGelfFormatter implements GelfFormatter {
    */
   @Override
   public GelfMessage formatMessage(final LogMessage logMessage) {
-    logger.info("Formatting GELF message: {}", logMessage);
+    if (trace.sample()) {
+      trace.logger().info("Formatting GELF message: {}", logMessage);
+    }
+    final long start = System.nanoTime();
 
     final GelfMessage gelfMessage = new GelfMessage();
     gelfMessage.setHost(logMessage.getClientIp());
@@ -38,21 +58,69 @@ public class DefaultGelfFormatter implements GelfFormatter {
     gelfMessage.setLevel(1); // ToDo: set dynamic log level based on log message
 
     // Collect all fields from LogMessage with null safety as additional fields
-    final Map<String, Object> additionalFields = new HashMap<>();
+    final Map<String, Object> additionalFields = new HashMap<>(ADDITIONAL_FIELDS_CAPACITY);
 
     // Using for loop to handle null values (not working using steam)
-    for (Field field : logMessage.getClass().getDeclaredFields()) {
-      field.setAccessible(true);
-      try {
-        final String fieldName = field.getName();
-        final Object fieldValue = field.get(logMessage);
-        additionalFields.put(fieldName, fieldValue);
-      } catch (IllegalAccessException e) {
-        logger.warn("Error accessing null value in field: " + field.getName(), e);
-      }
+    for (FieldAccessor accessor : FIELD_ACCESSORS) {
+      additionalFields.put(accessor.name(), accessor.getter().apply(logMessage));
     }
 
     gelfMessage.setAdditionalFields(additionalFields);
+    PipelineMetrics.global().formatNanos.record(System.nanoTime() - start);
     return gelfMessage;
   }
+
+  /**
+   * Resolves an accessor for every instance field of {@link LogMessage} in declaration order.
+   * <p>
+   * The (Lombok generated) getters are bound to {@link Function} instances using {@link LambdaMetafactory},
+   * so the JIT can inline them like a direct method call. Fields without getter fall back to a field getter handle.
+   */
+  private static List<FieldAccessor> createFieldAccessors() {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final List<FieldAccessor> accessors = new ArrayList<>();
+
+    for (Field field : LogMessage.class.getDeclaredFields()) {
+      if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+        continue;
+      }
+      final String fieldName = field.getName();
+      final String getterName = "get" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+
+      try {
+        final MethodHandle getter = lookup.findVirtual(LogMessage.class, getterName, MethodType.methodType(field.getType()));
+        final CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+            MethodType.methodType(Function.class),
+            MethodType.methodType(Object.class, Object.class),
+            getter,
+            MethodType.methodType(field.getType(), LogMessage.class));
+        @SuppressWarnings("unchecked")
+        final Function<LogMessage, Object> function = (Function<LogMessage, Object>) callSite.getTarget().invoke();
+        accessors.add(new FieldAccessor(fieldName, function));
+      } catch (Throwable e) {
+        logger.warn("No getter found for field {}, using field access instead", fieldName, e);
+        accessors.add(new FieldAccessor(fieldName, createFieldGetter(field)));
+      }
+    }
+    return List.copyOf(accessors);
+  }
+
+  private static Function<LogMessage, Object> createFieldGetter(final Field field) {
+    try {
+      field.setAccessible(true);
+      final MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+      return logMessage -> {
+        try {
+          return getter.invoke(logMessage);
+        } catch (Throwable e) {
+          logger.warn("Error accessing null value in field: " + field.getName(), e);
+          return null;
+        }
+      };
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Cannot access field " + field.getName() + " of " + LogMessage.class.getName(), e);
+    }
+  }
+
+  private record FieldAccessor(String name, Function<LogMessage, Object> getter) {}
 }
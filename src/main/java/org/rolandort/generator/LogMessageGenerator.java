@@ -0,0 +1,147 @@
+package org.rolandort.generator;
+
+import org.rolandort.model.LogMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Generates log messages from a {@link LogMessageModel} on several threads.
+ * <p>
+ * The messages are generated in blocks. Every block has its own random generator derived from the random seed and
+ * the block number, so the generated sequence only depends on the random seed and not on the number of threads.
+ * Blocks are handed out in order and only a small window of blocks is generated ahead, so the memory usage does not
+ * depend on the number of messages.
+ */
+public class LogMessageGenerator {
+  public static final int BLOCK_SIZE = 10_000;
+
+  private final LogMessageModel model;
+  private final int threads;
+  private final long randomSeed;
+
+  /**
+   * @param model      The model of the messages
+   * @param threads    Number of generating threads
+   * @param randomSeed Seed of the random generators, the same seed generates the same messages
+   */
+  public LogMessageGenerator(final LogMessageModel model, final int threads, final long randomSeed) {
+    this.model = model;
+    this.threads = threads;
+    this.randomSeed = randomSeed;
+  }
+
+  /**
+   * Generates messages lazily, the stream must be closed to stop the generating threads.
+   *
+   * @param count Number of messages to generate
+   * @return The generated messages in order
+   */
+  public Stream<LogMessage> stream(final long count) {
+    return blocks(count, Function.identity()).flatMap(List::stream);
+  }
+
+  /**
+   * Generates blocks of messages and converts every block on the generating thread, e.g. into text.
+   * The stream must be closed to stop the generating threads.
+   *
+   * @param count     Number of messages to generate
+   * @param converter Converts a block of messages, called on the generating threads
+   * @return The converted blocks in order
+   */
+  public <T> Stream<T> blocks(final long count, final Function<List<LogMessage>, T> converter) {
+    final ExecutorService pool = Executors.newFixedThreadPool(threads, new GeneratorThreadFactory());
+    final BlockResults<T> results = new BlockResults<>(pool, count, converter);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(pool::shutdownNow);
+  }
+
+  // Generates one block, called on a pool thread
+  private List<LogMessage> generateBlock(final long block, final long count) {
+    final long first = block * BLOCK_SIZE;
+    final int size = (int) Math.min(BLOCK_SIZE, count - first);
+    final SplittableRandom random = new SplittableRandom(randomSeed ^ (block * 0x9E3779B97F4A7C15L));
+    final List<LogMessage> logMessages = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      logMessages.add(model.generate(first + i, random));
+    }
+    return logMessages;
+  }
+
+  /**
+   * Keeps a window of blocks being generated and returns them in order.
+   */
+  private final class BlockResults<T> implements Iterator<T> {
+    private final ExecutorService pool;
+    private final long count;
+    private final long blockCount;
+    private final Function<List<LogMessage>, T> converter;
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+    private final int window = threads * 2;
+    private long nextBlock;
+
+    BlockResults(final ExecutorService pool, final long count, final Function<List<LogMessage>, T> converter) {
+      this.pool = pool;
+      this.count = count;
+      this.blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      this.converter = converter;
+      fill();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !pending.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      if (pending.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        return pending.removeFirst().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while generating log messages", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Error generating log messages", e.getCause());
+      } finally {
+        fill();
+      }
+    }
+
+    private void fill() {
+      while (pending.size() < window && nextBlock < blockCount) {
+        final long block = nextBlock++;
+        pending.addLast(pool.submit(() -> converter.apply(generateBlock(block, count))));
+      }
+    }
+  }
+
+  private static final class GeneratorThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "log-generator-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
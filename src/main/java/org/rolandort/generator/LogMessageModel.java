@@ -0,0 +1,212 @@
+package org.rolandort.generator;
+
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Value distributions of the {@link LogMessage} fields learned from seed messages, used to generate any number of
+ * realistic messages.
+ * <ul>
+ *   <li>Strings (device types, user agents, URIs, ...) and integers with few distinct values (status codes) are drawn
+ *       with their frequencies in the seed.</li>
+ *   <li>IPv4 addresses keep the frequencies of their /16 networks, the host part is random.</li>
+ *   <li>Other integers (bytes, ports, response times) are drawn from the empirical distribution of the seed,
+ *       interpolating between neighbouring seed values.</li>
+ *   <li>Timestamps start at the earliest seed timestamp and advance with the message rate of the seed.</li>
+ * </ul>
+ * Missing values are generated with their frequency in the seed. The model is immutable and thread-safe.
+ */
+public class LogMessageModel {
+  private static final int CATEGORICAL_MAX_DISTINCT = 32;
+  private static final Pattern IPV4 = Pattern.compile("(\\d{1,3})\\.(\\d{1,3})\\.\\d{1,3}\\.\\d{1,3}");
+
+  private final Map<LogMessageField, Distribution> distributions;
+
+  private LogMessageModel(final Map<LogMessageField, Distribution> distributions) {
+    this.distributions = distributions;
+  }
+
+  /**
+   * Learns the value distributions of all fields.
+   *
+   * @param seed The seed messages
+   * @return The model
+   * @throws IllegalArgumentException If there are no seed messages
+   */
+  public static LogMessageModel learn(final List<LogMessage> seed) {
+    if (seed.isEmpty()) {
+      throw new IllegalArgumentException("No seed messages to learn from");
+    }
+
+    final Map<LogMessageField, Distribution> distributions = new EnumMap<>(LogMessageField.class);
+    for (LogMessageField field : LogMessageField.all()) {
+      final List<Object> values = new ArrayList<>(seed.size());
+      for (LogMessage logMessage : seed) {
+        values.add(field.get(logMessage));
+      }
+      distributions.put(field, learn(field, values));
+    }
+    return new LogMessageModel(distributions);
+  }
+
+  /**
+   * Generates a message. The same index and random state always generate the same message.
+   *
+   * @param index  The index of the message in the generated sequence, determines the timestamp
+   * @param random The source of randomness, owned by the calling thread
+   * @return The generated message
+   */
+  public LogMessage generate(final long index, final SplittableRandom random) {
+    final LogMessage logMessage = new LogMessage();
+    distributions.forEach((field, distribution) -> {
+      final Object value = distribution.sample(index, random);
+      switch (field.type()) {
+        case STRING -> field.setString(logMessage, (String) value);
+        case INTEGER -> field.setInteger(logMessage, (Integer) value);
+        case DOUBLE -> field.setDouble(logMessage, (Double) value);
+      }
+    });
+    return logMessage;
+  }
+
+  private static Distribution learn(final LogMessageField field, final List<Object> values) {
+    final List<Object> present = values.stream().filter(value -> value != null).toList();
+    final double nullRate = 1.0 - (double) present.size() / values.size();
+    if (present.isEmpty()) {
+      return (index, random) -> null;
+    }
+
+    final Distribution distribution = switch (field.type()) {
+      case STRING -> present.stream().allMatch(value -> IPV4.matcher((String) value).matches())
+          ? IpDistribution.learn(present) : Categorical.learn(present);
+      case INTEGER -> present.stream().distinct().count() <= CATEGORICAL_MAX_DISTINCT
+          ? Categorical.learn(present) : Empirical.learn(present);
+      case DOUBLE -> Timestamps.learn(present);
+    };
+    return nullRate == 0 ? distribution
+        : (index, random) -> random.nextDouble() < nullRate ? null : distribution.sample(index, random);
+  }
+
+  private interface Distribution {
+    Object sample(long index, SplittableRandom random);
+  }
+
+  // Values drawn with their seed frequency, by binary search in the cumulative counts
+  private static final class Categorical implements Distribution {
+    private final Object[] values;
+    private final long[] cumulativeCounts;
+
+    private Categorical(final Object[] values, final long[] cumulativeCounts) {
+      this.values = values;
+      this.cumulativeCounts = cumulativeCounts;
+    }
+
+    static Categorical learn(final List<Object> present) {
+      final Map<Object, Long> counts = new LinkedHashMap<>();
+      for (Object value : present) {
+        counts.merge(value, 1L, Long::sum);
+      }
+      final Object[] values = counts.keySet().toArray();
+      final long[] cumulativeCounts = new long[values.length];
+      long total = 0;
+      for (int i = 0; i < values.length; i++) {
+        total += counts.get(values[i]);
+        cumulativeCounts[i] = total;
+      }
+      return new Categorical(values, cumulativeCounts);
+    }
+
+    @Override
+    public Object sample(final long index, final SplittableRandom random) {
+      final long draw = random.nextLong(cumulativeCounts[cumulativeCounts.length - 1]);
+      final int position = Arrays.binarySearch(cumulativeCounts, draw + 1);
+      return values[position >= 0 ? position : -position - 1];
+    }
+  }
+
+  // The /16 network drawn with its seed frequency, a random host in it
+  private static final class IpDistribution implements Distribution {
+    private final Categorical networks;
+
+    private IpDistribution(final Categorical networks) {
+      this.networks = networks;
+    }
+
+    static IpDistribution learn(final List<Object> present) {
+      final List<Object> networks = new ArrayList<>(present.size());
+      for (Object value : present) {
+        final var matcher = IPV4.matcher((String) value);
+        matcher.matches();
+        networks.add(matcher.group(1) + "." + matcher.group(2) + ".");
+      }
+      return new IpDistribution(Categorical.learn(networks));
+    }
+
+    @Override
+    public Object sample(final long index, final SplittableRandom random) {
+      return networks.sample(index, random) + String.valueOf(random.nextInt(256)) + "." + (1 + random.nextInt(254));
+    }
+  }
+
+  // Quantiles of the seed values, linearly interpolated between neighbouring values
+  private static final class Empirical implements Distribution {
+    private final long[] sorted;
+
+    private Empirical(final long[] sorted) {
+      this.sorted = sorted;
+    }
+
+    static Empirical learn(final List<Object> present) {
+      return new Empirical(present.stream().mapToLong(value -> ((Number) value).longValue()).sorted().toArray());
+    }
+
+    @Override
+    public Object sample(final long index, final SplittableRandom random) {
+      if (sorted.length == 1) {
+        return (int) sorted[0];
+      }
+      final double position = random.nextDouble() * (sorted.length - 1);
+      final int lower = (int) position;
+      final long low = sorted[lower];
+      final long high = sorted[Math.min(lower + 1, sorted.length - 1)];
+      return (int) Math.round(low + (position - lower) * (high - low));
+    }
+  }
+
+  // Advancing timestamps with the message rate of the seed
+  private static final class Timestamps implements Distribution {
+    private final double start;
+    private final double messagesPerSecond;
+    private final boolean wholeSeconds;
+
+    private Timestamps(final double start, final double messagesPerSecond, final boolean wholeSeconds) {
+      this.start = start;
+      this.messagesPerSecond = messagesPerSecond;
+      this.wholeSeconds = wholeSeconds;
+    }
+
+    static Timestamps learn(final List<Object> present) {
+      final double[] timestamps = present.stream().mapToDouble(value -> ((Number) value).doubleValue()).toArray();
+      final double min = Arrays.stream(timestamps).min().orElseThrow();
+      final double max = Arrays.stream(timestamps).max().orElseThrow();
+      final boolean wholeSeconds = Arrays.stream(timestamps).allMatch(timestamp -> timestamp == Math.rint(timestamp));
+      // A seed within one second counts as one second of messages
+      return new Timestamps(min, timestamps.length / Math.max(1.0, max - min), wholeSeconds);
+    }
+
+    @Override
+    public Object sample(final long index, final SplittableRandom random) {
+      final double timestamp = start + index / messagesPerSecond;
+      return wholeSeconds ? Math.floor(timestamp) : timestamp;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package org.rolandort.generator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+import org.rolandort.parser.ParserType;
+
+import java.util.List;
+
+/**
+ * Formats log messages as lines of a log file, readable by the parser of the same {@link ParserType}:
+ * one JSON object per line (NDJSON) or CSV records below a header line.
+ */
+public final class LogMessageWriter {
+  // Whole-second timestamps are written like in the input, e.g. 1576929197 instead of 1.576929197E9
+  private static final Gson gson = new GsonBuilder()
+      .disableHtmlEscaping()
+      .registerTypeAdapter(Double.class, (JsonSerializer<Double>) (value, type, context) ->
+          isWhole(value) ? new JsonPrimitive(value.longValue()) : new JsonPrimitive(value))
+      .create();
+
+  private final ParserType format;
+
+  public LogMessageWriter(final ParserType format) {
+    this.format = format;
+  }
+
+  /**
+   * @return The header line including the line break, empty if the format has no header
+   */
+  public String header() {
+    if (format != ParserType.CSV) {
+      return "";
+    }
+    final StringBuilder header = new StringBuilder(256);
+    for (LogMessageField field : LogMessageField.all()) {
+      if (header.length() > 0) {
+        header.append(',');
+      }
+      header.append(field.key());
+    }
+    return header.append('\n').toString();
+  }
+
+  /**
+   * @return The lines of the given messages, every line terminated by a line break
+   */
+  public String format(final List<LogMessage> logMessages) {
+    final StringBuilder text = new StringBuilder(logMessages.size() * 512);
+    for (LogMessage logMessage : logMessages) {
+      switch (format) {
+        case JSON -> gson.toJson(logMessage, LogMessage.class, text);
+        case CSV -> appendCsv(text, logMessage);
+      }
+      text.append('\n');
+    }
+    return text.toString();
+  }
+
+  private static void appendCsv(final StringBuilder text, final LogMessage logMessage) {
+    final LogMessageField[] fields = LogMessageField.all();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        text.append(',');
+      }
+      final Object value = fields[i].get(logMessage);
+      if (value instanceof Double number && isWhole(number)) {
+        text.append(number.longValue());
+      } else if (value instanceof String string && needsQuotes(string)) {
+        text.append('"').append(string.replace("\"", "\"\"")).append('"');
+      } else if (value != null) {
+        text.append(value);
+      }
+    }
+  }
+
+  private static boolean isWhole(final double value) {
+    return value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE;
+  }
+
+  private static boolean needsQuotes(final String value) {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
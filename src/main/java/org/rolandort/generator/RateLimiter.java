@@ -0,0 +1,40 @@
+package org.rolandort.generator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a sequence of events to a target rate. Events are scheduled at fixed intervals from the first event, so a
+ * caller falling behind catches up with a burst instead of losing the time.
+ */
+public class RateLimiter {
+  private final double nanosPerPermit;
+  private long start;
+  private long permits;
+
+  /**
+   * @param permitsPerSecond The target rate, 0 or less for no limit
+   */
+  public RateLimiter(final double permitsPerSecond) {
+    this.nanosPerPermit = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+  }
+
+  /**
+   * Waits until the given number of permits is available at the target rate.
+   */
+  public synchronized void acquire(final int count) {
+    if (nanosPerPermit == 0) {
+      return;
+    }
+    if (permits == 0) {
+      start = System.nanoTime();
+    }
+    final long due = start + (long) (permits * nanosPerPermit);
+    permits += count;
+
+    long wait;
+    while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(wait);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.rolandort.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values, e.g. latencies in nanoseconds or sizes in bytes.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into 8 sub-buckets, so a reported
+ * percentile is at most 12.5% above the recorded value. Recording is a few atomic increments without allocation.
+ */
+public class LongHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;     // values below are counted exactly
+  private static final int BUCKETS = LINEAR_LIMIT + (63 - 4) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(final long value) {
+    final long v = Math.max(0, value);
+    counts.incrementAndGet(bucket(v));
+    count.increment();
+    sum.add(v);
+    max.accumulate(v);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long sum() {
+    return sum.sum();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * @param quantile The quantile between 0 and 1, e.g. 0.99
+   * @return The upper bound of the bucket holding the quantile (but at most the maximum), 0 if nothing was recorded
+   */
+  public long percentile(final double quantile) {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max());
+      }
+    }
+    return max();
+  }
+
+  static int bucket(final long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBound(final int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+    final int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+    final long lower = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
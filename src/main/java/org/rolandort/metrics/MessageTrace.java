@@ -0,0 +1,92 @@
+package org.rolandort.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-message diagnostics of a pipeline stage, sampled so they do not cost more than the work they describe.
+ * <p>
+ * Each stage logs to its own logger below {@value #LOGGER_PREFIX}, which log4j2.xml configures as an asynchronous
+ * logger, so writing happens on a background thread. The message is still formatted on the calling thread, including
+ * the {@code toString()} of its parameters, e.g. the JSON of a GELF message, which allocates. Sampling keeps this cost
+ * off most messages: unsampled messages cost a counter increment. By default every {@value #DEFAULT_EVERY}th message
+ * of a stage is logged, at most {@value #DEFAULT_PER_SECOND} per second. {@link #configure} switches to tracing every
+ * message or turns the events off. Aggregate events (files, batches, retries, errors) are logged as usual by the
+ * components.
+ * <p>
+ * Usage: {@code if (trace.sample()) trace.logger().info("Sending GELF message: '{}'", gelfMessage);}
+ */
+public final class MessageTrace {
+  public static final String LOGGER_PREFIX = "org.rolandort.trace.";
+  public static final long DEFAULT_EVERY = 1000;
+  public static final long DEFAULT_PER_SECOND = 10;
+
+  private static volatile boolean full;
+  private static volatile long every = DEFAULT_EVERY;
+  private static volatile long perSecond = DEFAULT_PER_SECOND;
+
+  private final Logger logger;
+  private final AtomicLong messageCount = new AtomicLong();
+  private final AtomicLong currentSecond = new AtomicLong();
+  private final AtomicLong sampledInSecond = new AtomicLong();
+
+  private MessageTrace(final String stage) {
+    this.logger = LogManager.getLogger(LOGGER_PREFIX + stage);
+  }
+
+  /**
+   * @param stage Name of the pipeline stage, e.g. "format" or "send", used as the last part of the logger name
+   */
+  public static MessageTrace forStage(final String stage) {
+    return new MessageTrace(stage);
+  }
+
+  /**
+   * Configures the diagnostics of all stages.
+   *
+   * @param fullTrace Log every message, ignoring the sampling
+   * @param every     Log every n-th message of a stage, 0 to log no messages
+   * @param perSecond Maximum number of messages logged per second and stage, 0 for no limit
+   */
+  public static void configure(final boolean fullTrace, final long every, final long perSecond) {
+    MessageTrace.full = fullTrace;
+    MessageTrace.every = every;
+    MessageTrace.perSecond = perSecond;
+  }
+
+  /**
+   * Counts a message and decides whether it is logged.
+   *
+   * @return True if the event of this message should be logged
+   */
+  public boolean sample() {
+    if (full) {
+      return true;
+    }
+    final long sampleEvery = every;
+    if (sampleEvery <= 0 || messageCount.getAndIncrement() % sampleEvery != 0) {
+      return false;
+    }
+    return withinRate();
+  }
+
+  public Logger logger() {
+    return logger;
+  }
+
+  // Lock-free per-second budget: the first sample of a new second resets the counter
+  private boolean withinRate() {
+    final long limit = perSecond;
+    if (limit <= 0) {
+      return true;
+    }
+    final long second = System.nanoTime() / 1_000_000_000L;
+    final long previous = currentSecond.get();
+    if (previous != second && currentSecond.compareAndSet(previous, second)) {
+      sampledInSecond.set(0);
+    }
+    return sampledInSecond.incrementAndGet() <= limit;
+  }
+}
@@ -0,0 +1,123 @@
+package org.rolandort.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the {@link PipelineMetrics} in the Prometheus text format on {@code http://localhost:<port>/metrics}.
+ * The server only listens on the loopback interface.
+ */
+public class MetricsHttpServer implements Closeable {
+  private static final Logger logger = LogManager.getLogger(MetricsHttpServer.class);
+
+  private static final String PREFIX = "log2graylog_";
+
+  private final PipelineMetrics metrics;
+  private final HttpServer server;
+
+  /**
+   * Starts the server.
+   *
+   * @param metrics The metrics to serve
+   * @param port    The local port, 0 for any free port
+   * @throws IOException If the port cannot be bound
+   */
+  public MetricsHttpServer(final PipelineMetrics metrics, final int port) throws IOException {
+    this.metrics = metrics;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", this::handle);
+    server.start();
+    logger.info("Serving pipeline metrics on http://localhost:{}/metrics", port());
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    final byte[] body = render(metrics).getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /**
+   * @return The metrics in the Prometheus text exposition format
+   */
+  static String render(final PipelineMetrics metrics) {
+    final StringBuilder text = new StringBuilder(4096);
+    counter(text, "records_read_total", "Log records parsed", metrics.getRecordsRead());
+    counter(text, "bytes_read_total", "Bytes read from log files", metrics.getBytesRead());
+    counter(text, "parse_failures_total", "Log records which could not be parsed", metrics.getParseFailures());
+    counter(text, "records_filtered_total", "Log records rejected by the filter", metrics.getRecordsFiltered());
+    counter(text, "duplicates_dropped_total", "Duplicate log records dropped by the deduplication", metrics.getDuplicatesDropped());
+    counter(text, "string_cache_hits_total", "Parsed string values taken from the string cache", metrics.getStringCacheHits());
+    counter(text, "string_cache_misses_total", "Parsed string values not found in the string cache", metrics.getStringCacheMisses());
+    summary(text, "format_seconds", "Time to format a log message into a GELF message", metrics.formatNanos, 1e-9);
+    summary(text, "serialized_bytes", "Size of the serialized GELF messages", metrics.serializedBytes, 1);
+    counter(text, "messages_sent_total", "GELF messages sent", metrics.getMessagesSent());
+    counter(text, "send_failures_total", "GELF messages which could not be sent", metrics.getSendFailures());
+    counter(text, "circuit_breaker_rejections_total", "Requests not sent because the circuit breaker was open",
+        metrics.getCircuitBreakerRejections());
+    summary(text, "send_seconds", "Latency of sending a GELF message or batch", metrics.sendNanos, 1e-9);
+    summary(text, "http_request_seconds", "Latency of HTTP requests including failed attempts",
+        metrics.httpRequestNanos, 1e-9);
+    gauge(text, "in_flight_requests", "HTTP requests in flight", metrics.getInFlightRequests());
+
+    text.append("# HELP ").append(PREFIX).append("http_responses_total HTTP responses by status code\n");
+    text.append("# TYPE ").append(PREFIX).append("http_responses_total counter\n");
+    metrics.httpResponses().forEach((statusCode, count) ->
+        text.append(PREFIX).append("http_responses_total{code=\"").append(statusCode).append("\"} ").append(count).append('\n'));
+
+    metrics.gauges().forEach((name, value) -> gauge(text, name, "Current value of " + name.replace('_', ' '), value));
+    return text.toString();
+  }
+
+  private static void counter(final StringBuilder text, final String name, final String help, final long value) {
+    header(text, name, help, "counter");
+    text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void gauge(final StringBuilder text, final String name, final String help, final long value) {
+    header(text, name, help, "gauge");
+    text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void summary(final StringBuilder text, final String name, final String help,
+                              final LongHistogram histogram, final double scale) {
+    header(text, name, help, "summary");
+    for (final double quantile : new double[] {0.5, 0.9, 0.99}) {
+      text.append(PREFIX).append(name).append("{quantile=\"").append(quantile).append("\"} ")
+          .append(format(histogram.percentile(quantile) * scale)).append('\n');
+    }
+    text.append(PREFIX).append(name).append("_sum ").append(format(histogram.sum() * scale)).append('\n');
+    text.append(PREFIX).append(name).append("_count ").append(histogram.count()).append('\n');
+    header(text, name + "_max", "Maximum of the " + name.replace('_', ' '), "gauge");
+    text.append(PREFIX).append(name).append("_max ").append(format(histogram.max() * scale)).append('\n');
+  }
+
+  private static void header(final StringBuilder text, final String name, final String help, final String type) {
+    text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static String format(final double value) {
+    return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+  }
+}
@@ -0,0 +1,222 @@
+package org.rolandort.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges and histograms of all pipeline stages: reading, parsing, formatting, serializing and sending.
+ * <p>
+ * The metrics are process-wide like loggers, so every component records into {@link #global()} without
+ * being wired up. Counters are {@link LongAdder}s and histograms are lock-free, so recording is cheap
+ * enough for the per-message hot path.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+  private static final Logger logger = LogManager.getLogger(PipelineMetrics.class);
+
+  public static final String OBJECT_NAME = "org.rolandort.log2graylog:type=PipelineMetrics";
+
+  private static final PipelineMetrics GLOBAL = new PipelineMetrics();
+
+  // Reading, parsing, filtering and deduplicating
+  public final LongAdder recordsRead = new LongAdder();
+  public final LongAdder bytesRead = new LongAdder();
+  public final LongAdder parseFailures = new LongAdder();
+  public final LongAdder recordsFiltered = new LongAdder();
+  public final LongAdder duplicatesDropped = new LongAdder();
+  public final LongAdder stringCacheHits = new LongAdder();
+  public final LongAdder stringCacheMisses = new LongAdder();
+
+  // Formatting and serializing
+  public final LongHistogram formatNanos = new LongHistogram();
+  public final LongHistogram serializedBytes = new LongHistogram();
+
+  // Sending
+  public final LongAdder messagesSent = new LongAdder();
+  public final LongAdder sendFailures = new LongAdder();
+  public final LongAdder circuitBreakerRejections = new LongAdder();
+  public final LongHistogram sendNanos = new LongHistogram();
+  public final LongHistogram httpRequestNanos = new LongHistogram();
+  public final LongAdder inFlightRequests = new LongAdder();
+  private final Map<Integer, LongAdder> httpResponses = new ConcurrentHashMap<>();
+
+  // Queue depths and other values owned by components, e.g. the size of the journal
+  private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+  PipelineMetrics() {
+  }
+
+  /**
+   * @return The metrics of this process
+   */
+  public static PipelineMetrics global() {
+    return GLOBAL;
+  }
+
+  public void recordHttpResponse(final int statusCode) {
+    httpResponses.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+  }
+
+  /**
+   * @return The number of HTTP responses per status code
+   */
+  public SortedMap<Integer, Long> httpResponses() {
+    final SortedMap<Integer, Long> responses = new TreeMap<>();
+    httpResponses.forEach((statusCode, count) -> responses.put(statusCode, count.sum()));
+    return responses;
+  }
+
+  /**
+   * Registers a gauge, replacing a previous gauge of the same name.
+   *
+   * @param name  Name of the gauge in snake case, e.g. "journal_bytes"
+   * @param value Supplies the current value, called when the metrics are read
+   */
+  public void registerGauge(final String name, final LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  public void unregisterGauge(final String name) {
+    gauges.remove(name);
+  }
+
+  /**
+   * @return The current values of all gauges by name
+   */
+  public SortedMap<String, Long> gauges() {
+    final SortedMap<String, Long> values = new TreeMap<>();
+    gauges.forEach((name, value) -> values.put(name, value.getAsLong()));
+    return values;
+  }
+
+  /**
+   * Registers the metrics in the platform MBean server, so they can be read with JMX clients like JConsole.
+   */
+  public void registerMBean() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException e) {
+      // already registered
+    } catch (JMException e) {
+      logger.warn("Cannot register pipeline metrics MBean {}", OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public long getRecordsRead() {
+    return recordsRead.sum();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  @Override
+  public long getParseFailures() {
+    return parseFailures.sum();
+  }
+
+  @Override
+  public long getRecordsFiltered() {
+    return recordsFiltered.sum();
+  }
+
+  @Override
+  public long getDuplicatesDropped() {
+    return duplicatesDropped.sum();
+  }
+
+  @Override
+  public long getStringCacheHits() {
+    return stringCacheHits.sum();
+  }
+
+  @Override
+  public long getStringCacheMisses() {
+    return stringCacheMisses.sum();
+  }
+
+  @Override
+  public long getMessagesFormatted() {
+    return formatNanos.count();
+  }
+
+  @Override
+  public double getFormatMicrosP99() {
+    return formatNanos.percentile(0.99) / 1e3;
+  }
+
+  @Override
+  public long getSerializedBytes() {
+    return serializedBytes.sum();
+  }
+
+  @Override
+  public long getSerializedBytesP99() {
+    return serializedBytes.percentile(0.99);
+  }
+
+  @Override
+  public long getMessagesSent() {
+    return messagesSent.sum();
+  }
+
+  @Override
+  public long getSendFailures() {
+    return sendFailures.sum();
+  }
+
+  @Override
+  public long getCircuitBreakerRejections() {
+    return circuitBreakerRejections.sum();
+  }
+
+  @Override
+  public double getSendLatencyMillisP50() {
+    return sendNanos.percentile(0.5) / 1e6;
+  }
+
+  @Override
+  public double getSendLatencyMillisP99() {
+    return sendNanos.percentile(0.99) / 1e6;
+  }
+
+  @Override
+  public double getSendLatencyMillisMax() {
+    return sendNanos.max() / 1e6;
+  }
+
+  @Override
+  public double getHttpRequestMillisP99() {
+    return httpRequestNanos.percentile(0.99) / 1e6;
+  }
+
+  @Override
+  public long getInFlightRequests() {
+    return inFlightRequests.sum();
+  }
+
+  @Override
+  public Map<String, Long> getHttpResponses() {
+    final Map<String, Long> responses = new TreeMap<>();
+    httpResponses().forEach((statusCode, count) -> responses.put(String.valueOf(statusCode), count));
+    return responses;
+  }
+
+  @Override
+  public Map<String, Long> getGauges() {
+    return gauges();
+  }
+}
@@ -0,0 +1,51 @@
+package org.rolandort.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link PipelineMetrics}.
+ */
+public interface PipelineMetricsMXBean {
+
+  long getRecordsRead();
+
+  long getBytesRead();
+
+  long getParseFailures();
+
+  long getRecordsFiltered();
+
+  long getDuplicatesDropped();
+
+  long getStringCacheHits();
+
+  long getStringCacheMisses();
+
+  long getMessagesFormatted();
+
+  double getFormatMicrosP99();
+
+  long getSerializedBytes();
+
+  long getSerializedBytesP99();
+
+  long getMessagesSent();
+
+  long getSendFailures();
+
+  long getCircuitBreakerRejections();
+
+  double getSendLatencyMillisP50();
+
+  double getSendLatencyMillisP99();
+
+  double getSendLatencyMillisMax();
+
+  double getHttpRequestMillisP99();
+
+  long getInFlightRequests();
+
+  Map<String, Long> getHttpResponses();
+
+  Map<String, Long> getGauges();
+}
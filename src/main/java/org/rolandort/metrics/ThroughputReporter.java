@@ -0,0 +1,78 @@
+package org.rolandort.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically logs a summary line of the pipeline throughput since the previous line, e.g.
+ * {@code Throughput: 51234 records/s (12.3 MB/s), 51200 sent/s, 0 failed, send p99 4.1 ms, 8 in flight}.
+ */
+public class ThroughputReporter implements Closeable {
+  private static final Logger logger = LogManager.getLogger(ThroughputReporter.class);
+
+  private final PipelineMetrics metrics;
+  private final ScheduledExecutorService scheduler;
+
+  private long lastNanos = System.nanoTime();
+  private long lastRecords;
+  private long lastBytes;
+  private long lastSent;
+  private long lastFailures;
+
+  /**
+   * Starts reporting.
+   *
+   * @param metrics  The metrics to report
+   * @param interval Time between two summary lines
+   */
+  public ThroughputReporter(final PipelineMetrics metrics, final Duration interval) {
+    this.metrics = metrics;
+    this.lastRecords = metrics.getRecordsRead();
+    this.lastBytes = metrics.getBytesRead();
+    this.lastSent = metrics.getMessagesSent();
+    this.lastFailures = metrics.getSendFailures();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "throughput-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::report, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Logs the summary line, called by the scheduler.
+   */
+  synchronized void report() {
+    final long now = System.nanoTime();
+    final long records = metrics.getRecordsRead();
+    final long bytes = metrics.getBytesRead();
+    final long sent = metrics.getMessagesSent();
+    final long failures = metrics.getSendFailures();
+    final double seconds = Math.max(now - lastNanos, 1) / 1e9;
+
+    logger.info(String.format("Throughput: %.0f records/s (%.1f MB/s), %.0f sent/s, %d failed, send p99 %.1f ms, %d in flight",
+        (records - lastRecords) / seconds, (bytes - lastBytes) / seconds / (1024 * 1024), (sent - lastSent) / seconds,
+        failures - lastFailures, metrics.getSendLatencyMillisP99(), metrics.getInFlightRequests()));
+
+    lastNanos = now;
+    lastRecords = records;
+    lastBytes = bytes;
+    lastSent = sent;
+    lastFailures = failures;
+  }
+
+  /**
+   * Stops reporting and logs a last summary line.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    report();
+  }
+}
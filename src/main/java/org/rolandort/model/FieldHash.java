@@ -0,0 +1,50 @@
+package org.rolandort.model;
+
+/**
+ * A deterministic 64-bit hash of {@link LogMessage} field values, the same in every run and on every machine, e.g. for
+ * grouping or sampling messages.
+ */
+public final class FieldHash {
+  public static final long SEED = 0x9E3779B97F4A7C15L;
+
+  private static final long PRIME = 0x100000001B3L;
+  private static final long NULL_VALUE = 0x5BD1E9955BD1E995L;
+
+  private FieldHash() {
+  }
+
+  /**
+   * Adds a field value to a hash. Strings are followed by their length, so "ab", "c" and "a", "bc" differ.
+   *
+   * @param hash  The hash so far, {@link #SEED} for the first value
+   * @param value A string, number or null
+   * @return The updated hash, to be finished with {@link #mix(long)}
+   */
+  public static long update(final long hash, final Object value) {
+    long result = hash;
+    if (value == null) {
+      return (result ^ NULL_VALUE) * PRIME;
+    }
+    if (value instanceof String string) {
+      for (int i = 0; i < string.length(); i++) {
+        result = (result ^ string.charAt(i)) * PRIME;
+      }
+      return (result ^ string.length()) * PRIME;
+    }
+    final long bits = value instanceof Double number ? Double.doubleToLongBits(number) : ((Number) value).longValue();
+    return (result ^ bits) * PRIME;
+  }
+
+  /**
+   * Final mix of MurmurHash3, spreads every input bit over all output bits.
+   */
+  public static long mix(final long value) {
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -1,12 +1,28 @@
 package org.rolandort.model;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * A message in the Graylog Extended Log Format.
+ * <p>
+ * The serialized form is cached by {@link #toJsonBytes()}. The setters invalidate the cache, and so does
+ * {@link #getAdditionalFields()} because the caller may modify the returned map.
+ */
 @Data
+// Comparing must not invalidate the serialized form through getAdditionalFields()
+@EqualsAndHashCode(doNotUseGetters = true)
 public class GelfMessage {
   String version = "1.1"; // fixed gelf version
   String host;            // required
@@ -16,6 +32,115 @@ public class GelfMessage {
   Integer level = 1;      // default log level is 1
   Map<String, Object> additionalFields = new HashMap<>();
 
+  // Serialized form, created on first use and cleared by the setters
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  private transient byte[] json;
+
+  public void setVersion(final String version) {
+    this.version = version;
+    this.json = null;
+  }
+
+  public void setHost(final String host) {
+    this.host = host;
+    this.json = null;
+  }
+
+  public void setShortMessage(final String shortMessage) {
+    this.shortMessage = shortMessage;
+    this.json = null;
+  }
+
+  public void setFullMessage(final String fullMessage) {
+    this.fullMessage = fullMessage;
+    this.json = null;
+  }
+
+  public void setTimestamp(final Double timestamp) {
+    this.timestamp = timestamp;
+    this.json = null;
+  }
+
+  public void setLevel(final Integer level) {
+    this.level = level;
+    this.json = null;
+  }
+
+  /**
+   * @return The additional fields, may be modified, which invalidates the serialized form
+   */
+  public Map<String, Object> getAdditionalFields() {
+    json = null;
+    return additionalFields;
+  }
+
+  public void setAdditionalFields(final Map<String, Object> additionalFields) {
+    this.additionalFields = additionalFields;
+    this.json = null;
+  }
+
+  /**
+   * Serializes the message once and returns the cached UTF-8 encoded JSON on further calls.
+   * The returned array must not be modified.
+   *
+   * @return a UTF-8 encoded JSON representation of the GelfMessage, see {@link #toString()}
+   */
+  public byte[] toJsonBytes() {
+    if (json == null) {
+      json = GelfSerializer.serialize(this);
+    }
+    return json;
+  }
+
+  /**
+   * Restores a message from its serialized form, e.g. read back from a journal. Numbers of additional fields are
+   * restored as Integer, Long or Double depending on their value.
+   *
+   * @param json UTF-8 encoded JSON as returned by {@link #toJsonBytes()}, must not be modified afterwards
+   * @return a message which is sent with exactly the given JSON until it is modified
+   */
+  public static GelfMessage fromJsonBytes(final byte[] json) {
+    final JsonObject object = JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+    final GelfMessage gelfMessage = new GelfMessage();
+    final Map<String, Object> additionalFields = new HashMap<>();
+    for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+      final JsonElement element = entry.getValue();
+      final Object value = element.isJsonPrimitive() ? valueOf(element.getAsJsonPrimitive()) : null;
+      switch (entry.getKey()) {
+        case "version" -> gelfMessage.version = (String) value;
+        case "host" -> gelfMessage.host = (String) value;
+        case "short_message" -> gelfMessage.shortMessage = (String) value;
+        case "full_message" -> gelfMessage.fullMessage = (String) value;
+        case "timestamp" -> gelfMessage.timestamp = value == null ? null : ((Number) value).doubleValue();
+        case "level" -> gelfMessage.level = value == null ? null : ((Number) value).intValue();
+        default -> {
+          if (entry.getKey().startsWith("_")) {
+            additionalFields.put(entry.getKey().substring(1), value);
+          }
+        }
+      }
+    }
+    gelfMessage.additionalFields = additionalFields;
+    gelfMessage.json = json;
+    return gelfMessage;
+  }
+
+  private static Object valueOf(final JsonPrimitive primitive) {
+    if (primitive.isBoolean()) {
+      return primitive.getAsBoolean();
+    } else if (!primitive.isNumber()) {
+      return primitive.getAsString();
+    }
+    final String number = primitive.getAsString();
+    if (number.contains(".") || number.contains("e") || number.contains("E")) {
+      return primitive.getAsDouble();
+    }
+    final long value = primitive.getAsLong();
+    return value == (int) value ? (Object) (int) value : (Object) value;
+  }
+
   /**
    * @return a JSON string representation of the GelfMessage with format:
    *     <pre>
@@ -33,32 +158,6 @@ public class GelfMessage {
    */
   @Override
   public String toString() {
-    final JsonObject jsonObject = new JsonObject();
-    
-    // Add standard fields
-    jsonObject.addProperty("version", version);
-    jsonObject.addProperty("host", host);
-    jsonObject.addProperty("short_message", shortMessage);
-    jsonObject.addProperty("full_message", fullMessage);
-    jsonObject.addProperty("timestamp", timestamp);
-    jsonObject.addProperty("level", level);
-    
-    // Add additional fields with "_" prefix
-    if (additionalFields != null) {
-      for (Map.Entry<String, Object> entry : additionalFields.entrySet()) {
-        String key = "_" + entry.getKey(); // required prefix "_"
-        Object value = entry.getValue();
-        
-        if (value instanceof Number) {
-          jsonObject.addProperty(key, (Number) value);
-        } else if (value instanceof Boolean) {
-          jsonObject.addProperty(key, (Boolean) value);
-        } else {
-          jsonObject.addProperty(key, value.toString());
-        }
-      }
-    }
-    
-    return jsonObject.toString();
+    return new String(toJsonBytes(), StandardCharsets.UTF_8);
   }
 }
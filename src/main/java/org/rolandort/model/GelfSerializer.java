@@ -0,0 +1,198 @@
+package org.rolandort.model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Serializes {@link GelfMessage}s to UTF-8 encoded JSON.
+ * <p>
+ * The JSON is written in a single pass straight into a byte buffer which is reused by the current thread,
+ * without building an intermediate JSON tree or {@link String}. The output (field order, escaping and
+ * number format) is the same as produced by a Gson {@code JsonObject}.
+ */
+public final class GelfSerializer {
+  private static final ThreadLocal<GelfSerializer> LOCAL = ThreadLocal.withInitial(GelfSerializer::new);
+
+  private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+  private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+  private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  private byte[] buffer = new byte[4096];
+  private int size;
+
+  private GelfSerializer() {}
+
+  /**
+   * @param gelfMessage The GELF message to serialize
+   * @return The UTF-8 encoded JSON representation of the message
+   */
+  public static byte[] serialize(final GelfMessage gelfMessage) {
+    final GelfSerializer serializer = LOCAL.get();
+    serializer.size = 0;
+    serializer.write(gelfMessage);
+    return Arrays.copyOf(serializer.buffer, serializer.size);
+  }
+
+  private void write(final GelfMessage gelfMessage) {
+    writeByte('{');
+    writeField("version", gelfMessage.version, true);
+    writeField("host", gelfMessage.host, false);
+    writeField("short_message", gelfMessage.shortMessage, false);
+    writeField("full_message", gelfMessage.fullMessage, false);
+    writeField("timestamp", gelfMessage.timestamp, false);
+    writeField("level", gelfMessage.level, false);
+
+    // Add additional fields with "_" prefix
+    if (gelfMessage.additionalFields != null) {
+      for (Map.Entry<String, Object> entry : gelfMessage.additionalFields.entrySet()) {
+        writeByte(',');
+        writeByte('"');
+        writeByte('_');  // required prefix "_"
+        writeEscaped(entry.getKey());
+        writeByte('"');
+        writeByte(':');
+        writeValue(entry.getValue());
+      }
+    }
+    writeByte('}');
+  }
+
+  private void writeField(final String name, final Object value, final boolean first) {
+    if (!first) {
+      writeByte(',');
+    }
+    writeString(name);
+    writeByte(':');
+    writeValue(value);
+  }
+
+  private void writeValue(final Object value) {
+    if (value == null) {
+      writeBytes(NULL);
+    } else if (value instanceof Integer number) {
+      writeInt(number);
+    } else if (value instanceof Number number) {
+      writeAscii(number.toString());
+    } else if (value instanceof Boolean bool) {
+      writeBytes(bool ? TRUE : FALSE);
+    } else {
+      writeString(value.toString());
+    }
+  }
+
+  private void writeString(final String value) {
+    writeByte('"');
+    writeEscaped(value);
+    writeByte('"');
+  }
+
+  // Escapes like Gson's JsonWriter (without HTML escaping) and encodes as UTF-8
+  private void writeEscaped(final String value) {
+    final int length = value.length();
+    ensureCapacity(length + 2);
+
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        switch (c) {
+          case '"' -> writeEscape('"');
+          case '\\' -> writeEscape('\\');
+          case '\t' -> writeEscape('t');
+          case '\b' -> writeEscape('b');
+          case '\n' -> writeEscape('n');
+          case '\r' -> writeEscape('r');
+          case '\f' -> writeEscape('f');
+          default -> {
+            if (c < 0x20) {
+              writeUnicodeEscape(c);
+            } else {
+              writeByte(c);
+            }
+          }
+        }
+      } else if (c < 0x800) {
+        writeByte(0xc0 | (c >> 6));
+        writeByte(0x80 | (c & 0x3f));
+      } else if (c == '\u2028' || c == '\u2029') {
+        writeUnicodeEscape(c);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        writeByte(0xf0 | (codePoint >> 18));
+        writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+        writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+        writeByte(0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        writeByte('?');  // malformed surrogate, replaced like String.getBytes(UTF_8) does
+      } else {
+        writeByte(0xe0 | (c >> 12));
+        writeByte(0x80 | ((c >> 6) & 0x3f));
+        writeByte(0x80 | (c & 0x3f));
+      }
+    }
+  }
+
+  private void writeEscape(final char c) {
+    writeByte('\\');
+    writeByte(c);
+  }
+
+  private void writeUnicodeEscape(final char c) {
+    writeByte('\\');
+    writeByte('u');
+    writeByte(HEX[(c >> 12) & 0xf]);
+    writeByte(HEX[(c >> 8) & 0xf]);
+    writeByte(HEX[(c >> 4) & 0xf]);
+    writeByte(HEX[c & 0xf]);
+  }
+
+  private void writeInt(final int value) {
+    if (value == Integer.MIN_VALUE) {
+      writeAscii(Integer.toString(value));
+      return;
+    }
+    int remaining = value;
+    if (remaining < 0) {
+      writeByte('-');
+      remaining = -remaining;
+    }
+
+    // Write the digits backwards into the buffer
+    int digits = 1;
+    for (int n = remaining; n >= 10; n /= 10) {
+      digits++;
+    }
+    ensureCapacity(digits);
+    for (int pos = size + digits - 1; pos >= size; pos--) {
+      buffer[pos] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    size += digits;
+  }
+
+  private void writeAscii(final String value) {
+    ensureCapacity(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      buffer[size++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void writeBytes(final byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  private void writeByte(final int b) {
+    if (size == buffer.length) {
+      ensureCapacity(1);
+    }
+    buffer[size++] = (byte) b;
+  }
+
+  private void ensureCapacity(final int additional) {
+    if (size + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(size + additional, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package org.rolandort.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The fields of a {@link LogMessage} together with their key in the JSON and CSV input and their value type.
+ * <p>
+ * The constants are declared in the order of the {@link LogMessage} fields, which is also the legacy column order
+ * of CSV files.
+ */
+public enum LogMessageField {
+  CLIENT_DEVICE_TYPE("ClientDeviceType", Type.STRING),
+  CLIENT_IP("ClientIP", Type.STRING),
+  CLIENT_IP_CLASS("ClientIPClass", Type.STRING),
+  CLIENT_STATUS("ClientStatus", Type.INTEGER),
+  CLIENT_REQUEST_BYTES("ClientRequestBytes", Type.INTEGER),
+  CLIENT_REQUEST_REFERER("ClientRequestReferer", Type.STRING),
+  CLIENT_REQUEST_URI("ClientRequestURI", Type.STRING),
+  CLIENT_REQUEST_USER_AGENT("ClientRequestUserAgent", Type.STRING),
+  CLIENT_SRC_PORT("ClientSrcPort", Type.INTEGER),
+  EDGE_SERVER_IP("EdgeServerIP", Type.STRING),
+  EDGE_START_TIMESTAMP("EdgeStartTimestamp", Type.DOUBLE),
+  DESTINATION_IP("DestinationIP", Type.STRING),
+  ORIGIN_RESPONSE_BYTES("OriginResponseBytes", Type.INTEGER),
+  ORIGIN_RESPONSE_TIME("OriginResponseTime", Type.INTEGER);
+
+  public enum Type {
+    STRING,
+    INTEGER,
+    DOUBLE
+  }
+
+  private static final LogMessageField[] VALUES = values();
+  private static final Map<String, LogMessageField> BY_NAME = new HashMap<>();
+
+  static {
+    for (LogMessageField field : VALUES) {
+      BY_NAME.put(field.key.toLowerCase(Locale.ROOT), field);
+      BY_NAME.put(field.name().replace("_", "").toLowerCase(Locale.ROOT), field);
+    }
+  }
+
+  private final String key;
+  private final char[] keyChars;
+  private final String javaName;
+  private final Type type;
+
+  LogMessageField(final String key, final Type type) {
+    this.key = key;
+    this.keyChars = key.toCharArray();
+    this.javaName = toCamelCase(name());
+    this.type = type;
+  }
+
+  /**
+   * @return The key of the field in JSON and CSV input, e.g. "ClientIP"
+   */
+  public String key() {
+    return key;
+  }
+
+  /**
+   * @return The name of the {@link LogMessage} field, e.g. "clientIp", which is also the name of the GELF field
+   */
+  public String javaName() {
+    return javaName;
+  }
+
+  public Type type() {
+    return type;
+  }
+
+  /**
+   * @return True if the key of this field equals the given characters
+   */
+  public boolean keyEquals(final char[] buffer, final int start, final int end) {
+    return Arrays.equals(buffer, start, end, keyChars, 0, keyChars.length);
+  }
+
+  /**
+   * Looks up a field by its input key (e.g. "ClientIP") or its Java name (e.g. "clientIp"), ignoring case.
+   *
+   * @return The field, or null if no field matches
+   */
+  public static LogMessageField forName(final String name) {
+    return name == null ? null : BY_NAME.get(name.trim().toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * @return All fields in declaration order (shared array, must not be modified)
+   */
+  public static LogMessageField[] all() {
+    return VALUES;
+  }
+
+  public Object get(final LogMessage logMessage) {
+    return switch (this) {
+      case CLIENT_DEVICE_TYPE -> logMessage.getClientDeviceType();
+      case CLIENT_IP -> logMessage.getClientIp();
+      case CLIENT_IP_CLASS -> logMessage.getClientIpClass();
+      case CLIENT_STATUS -> logMessage.getClientStatus();
+      case CLIENT_REQUEST_BYTES -> logMessage.getClientRequestBytes();
+      case CLIENT_REQUEST_REFERER -> logMessage.getClientRequestReferer();
+      case CLIENT_REQUEST_URI -> logMessage.getClientRequestUri();
+      case CLIENT_REQUEST_USER_AGENT -> logMessage.getClientRequestUserAgent();
+      case CLIENT_SRC_PORT -> logMessage.getClientSrcPort();
+      case EDGE_SERVER_IP -> logMessage.getEdgeServerIp();
+      case EDGE_START_TIMESTAMP -> logMessage.getEdgeStartTimestamp();
+      case DESTINATION_IP -> logMessage.getDestinationIp();
+      case ORIGIN_RESPONSE_BYTES -> logMessage.getOriginResponseBytes();
+      case ORIGIN_RESPONSE_TIME -> logMessage.getOriginResponseTime();
+    };
+  }
+
+  public void setString(final LogMessage logMessage, final String value) {
+    switch (this) {
+      case CLIENT_DEVICE_TYPE -> logMessage.setClientDeviceType(value);
+      case CLIENT_IP -> logMessage.setClientIp(value);
+      case CLIENT_IP_CLASS -> logMessage.setClientIpClass(value);
+      case CLIENT_REQUEST_REFERER -> logMessage.setClientRequestReferer(value);
+      case CLIENT_REQUEST_URI -> logMessage.setClientRequestUri(value);
+      case CLIENT_REQUEST_USER_AGENT -> logMessage.setClientRequestUserAgent(value);
+      case EDGE_SERVER_IP -> logMessage.setEdgeServerIp(value);
+      case DESTINATION_IP -> logMessage.setDestinationIp(value);
+      default -> throw new IllegalArgumentException(this + " is not a string field");
+    }
+  }
+
+  public void setInteger(final LogMessage logMessage, final Integer value) {
+    switch (this) {
+      case CLIENT_STATUS -> logMessage.setClientStatus(value);
+      case CLIENT_REQUEST_BYTES -> logMessage.setClientRequestBytes(value);
+      case CLIENT_SRC_PORT -> logMessage.setClientSrcPort(value);
+      case ORIGIN_RESPONSE_BYTES -> logMessage.setOriginResponseBytes(value);
+      case ORIGIN_RESPONSE_TIME -> logMessage.setOriginResponseTime(value);
+      default -> throw new IllegalArgumentException(this + " is not an integer field");
+    }
+  }
+
+  public void setDouble(final LogMessage logMessage, final Double value) {
+    if (this != EDGE_START_TIMESTAMP) {
+      throw new IllegalArgumentException(this + " is not a double field");
+    }
+    logMessage.setEdgeStartTimestamp(value);
+  }
+
+  private static String toCamelCase(final String constantName) {
+    final StringBuilder camelCase = new StringBuilder(constantName.length());
+    for (String word : constantName.toLowerCase(Locale.ROOT).split("_")) {
+      camelCase.append(camelCase.isEmpty() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+    }
+    return camelCase.toString();
+  }
+}
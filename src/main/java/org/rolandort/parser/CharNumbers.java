@@ -0,0 +1,99 @@
+package org.rolandort.parser;
+
+/**
+ * Parses numbers directly from a range of a character buffer, without creating a {@link String} first.
+ */
+final class CharNumbers {
+
+  // Doubles up to 2^53 divided by a power of ten up to 10^22 are exact, so the division is correctly rounded
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  // Preallocated without stack trace, invalid numbers are reported to the callers which map them to null
+  private static final NumberFormatException INVALID_NUMBER = new NumberFormatException("Invalid number") {
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  };
+
+  private CharNumbers() {}
+
+  /**
+   * Parses an integer with the same syntax as {@link Integer#parseInt(String)}.
+   *
+   * @throws NumberFormatException if the range is empty, contains other characters or overflows
+   */
+  static int parseInt(final char[] buffer, final int start, final int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (buffer[pos] == '-' || buffer[pos] == '+')) {
+      negative = buffer[pos] == '-';
+      pos++;
+    }
+    if (pos == end || end - pos > 10) {
+      throw INVALID_NUMBER;
+    }
+
+    long value = 0;
+    for (; pos < end; pos++) {
+      final int digit = buffer[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        throw INVALID_NUMBER;
+      }
+      value = value * 10 + digit;
+    }
+
+    value = negative ? -value : value;
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw INVALID_NUMBER;
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parses a double with the same result as {@link Double#parseDouble(String)}.
+   * <p>
+   * Plain decimals with up to 18 digits are converted exactly without allocation, everything else
+   * (exponents, long mantissas, special values) is delegated to {@link Double#parseDouble(String)}.
+   *
+   * @throws NumberFormatException if the range is not a valid number
+   */
+  static double parseDouble(final char[] buffer, final int start, final int end) {
+    int pos = start;
+    final boolean negative = pos < end && buffer[pos] == '-';
+    if (negative) {
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    for (; pos < end; pos++) {
+      final char c = buffer[pos];
+      if (c >= '0' && c <= '9') {
+        if (++digits > 18) {
+          break;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (fraction) {
+          scale++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+
+    if (pos == end && digits > 0 && mantissa <= MAX_EXACT_MANTISSA && scale < POWERS_OF_TEN.length) {
+      final double value = mantissa / POWERS_OF_TEN[scale];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(new String(buffer, start, end - start));
+  }
+}
@@ -0,0 +1,141 @@
+package org.rolandort.parser;
+
+import org.rolandort.filter.LogFilter;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+/**
+ * Maps the columns of a CSV file to {@link LogMessage} fields.
+ * <p>
+ * The plan is built once from the header row, so files with a different column order or additional columns
+ * are bound correctly. Values are converted directly from the tokenized record buffer, repeated strings are taken
+ * from a {@link StringInterner}.
+ * <p>
+ * With a {@link LogFilter}, the columns of the fields referenced by the filter are bound first. The other columns
+ * are only converted if the filter accepts the record.
+ */
+final class CsvBindingPlan {
+  // Minimum number of columns of a record, shorter records are skipped
+  private static final int MIN_COLUMNS = 10;
+
+  private static final CsvBindingPlan POSITIONAL = new CsvBindingPlan(LogMessageField.all().clone());
+
+  private final LogMessageField[] columns;  // null for columns without matching field
+  private final int minColumns;
+
+  private CsvBindingPlan(final LogMessageField[] columns) {
+    this.columns = columns;
+    this.minColumns = Math.min(MIN_COLUMNS, columns.length);
+  }
+
+  /**
+   * @return The plan for files using the legacy column order of the {@link LogMessage} fields
+   */
+  static CsvBindingPlan positional() {
+    return POSITIONAL;
+  }
+
+  /**
+   * Builds a plan from a header record.
+   *
+   * @param header The tokenized header record
+   * @return The plan, or null if none of the header columns matches a field
+   */
+  static CsvBindingPlan fromHeader(final CsvRecordReader header) {
+    final LogMessageField[] columns = new LogMessageField[header.fieldCount()];
+    boolean matched = false;
+    for (int i = 0; i < columns.length; i++) {
+      // Ignore a byte order mark in front of the first column
+      columns[i] = LogMessageField.forName(header.fieldAsString(i).replace("\uFEFF", ""));
+      matched |= columns[i] != null;
+    }
+    return matched ? new CsvBindingPlan(columns) : null;
+  }
+
+  /**
+   * @return True if the column is bound to a field
+   */
+  boolean isMapped(final int column) {
+    return column < columns.length && columns[column] != null;
+  }
+
+  /**
+   * @return True if the record has enough columns to be bound
+   */
+  boolean accepts(final CsvRecordReader record) {
+    return record.fieldCount() >= minColumns;
+  }
+
+  /**
+   * Binds the current record to a new log message.
+   * Empty or invalid numbers are bound as null, missing trailing columns are left null.
+   */
+  LogMessage bind(final CsvRecordReader record) {
+    return bind(record, null, StringInterner.disabled());
+  }
+
+  /**
+   * Binds the current record to a new log message if the filter accepts it.
+   *
+   * @param filter   The filter, or null to bind every record
+   * @param interner The cache of repeated string values
+   * @return The log message, or null if the filter rejected the record
+   */
+  LogMessage bind(final CsvRecordReader record, final LogFilter filter, final StringInterner interner) {
+    final LogMessage logMessage = new LogMessage();
+    final int count = Math.min(columns.length, record.fieldCount());
+    if (filter == null) {
+      for (int i = 0; i < count; i++) {
+        bindColumn(record, i, logMessage, interner);
+      }
+      return logMessage;
+    }
+
+    for (int i = 0; i < count; i++) {
+      if (columns[i] != null && filter.references(columns[i])) {
+        bindColumn(record, i, logMessage, interner);
+      }
+    }
+    if (!filter.test(logMessage)) {
+      return null;
+    }
+    for (int i = 0; i < count; i++) {
+      if (columns[i] != null && !filter.references(columns[i])) {
+        bindColumn(record, i, logMessage, interner);
+      }
+    }
+    return logMessage;
+  }
+
+  private void bindColumn(final CsvRecordReader record, final int column, final LogMessage logMessage,
+                          final StringInterner interner) {
+    final LogMessageField field = columns[column];
+    if (field == null) {
+      return;
+    }
+    final char[] buffer = record.buffer();
+    final int start = record.fieldStart(column);
+    final int end = record.fieldEnd(column);
+    switch (field.type()) {
+      case STRING -> field.setString(logMessage, interner.intern(field, buffer, start, end));
+      case INTEGER -> field.setInteger(logMessage, start == end ? null : parseInteger(buffer, start, end));
+      case DOUBLE -> field.setDouble(logMessage, start == end ? null : parseDouble(buffer, start, end));
+    }
+  }
+
+  private static Integer parseInteger(final char[] buffer, final int start, final int end) {
+    try {
+      return CharNumbers.parseInt(buffer, start, end);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Double parseDouble(final char[] buffer, final int start, final int end) {
+    try {
+      return CharNumbers.parseDouble(buffer, start, end);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -1,37 +1,60 @@
 package org.rolandort.parser;
 
 import com.google.inject.Singleton;
-import com.opencsv.CSVParser;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.filter.LogFilter;
+import org.rolandort.metrics.PipelineMetrics;
 import org.rolandort.model.LogMessage;
 
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * CSV log parser implementation
+ * <p>
+ * The header row is read once to build a {@link CsvBindingPlan} mapping the columns to {@link LogMessage} fields.
+ * If the header contains no known column names, the legacy column order is assumed. Records are tokenized in
+ * place by a {@link CsvRecordReader} and bound without intermediate strings or arrays.
  */
 @Singleton
 public class CsvLogParser implements LogParser {
   private static final Logger logger = LogManager.getLogger(CsvLogParser.class);
-  private final CSVParser parser;
+  private static final PipelineMetrics metrics = PipelineMetrics.global();
+  private final ThreadLocal<CsvRecordReader> lineReaders = ThreadLocal.withInitial(CsvRecordReader::new);
+
+  private final LogFilter filter;
+  private final StringInterner interner;
 
   public CsvLogParser() {
-    this.parser = new CSVParserBuilder()
-        .withSeparator(',')
-        .withQuoteChar('"')
-        .withIgnoreLeadingWhiteSpace(true)
-        .build();
+    this(null);
+  }
+
+  /**
+   * @param filter Records not accepted by the filter are skipped while binding, null to keep all records
+   */
+  public CsvLogParser(final LogFilter filter) {
+    this(filter, StringInterner.defaults());
+  }
+
+  /**
+   * @param filter   Records not accepted by the filter are skipped while binding, null to keep all records
+   * @param interner The cache of repeated string values, shared by all parse threads
+   */
+  public CsvLogParser(final LogFilter filter, final StringInterner interner) {
+    this.filter = filter;
+    this.interner = interner;
   }
 
   /**
@@ -43,118 +66,165 @@ public class CsvLogParser implements LogParser {
   @Override
   public List<LogMessage> parseLogFile(final Path filePath) {
     logger.info("Parsing CSV log file {}", filePath);
-    final List<LogMessage> logMessages = new ArrayList<>();
-
-    try (CSVReader reader = new CSVReaderBuilder(new FileReader(filePath.toFile()))
-        .withCSVParser(parser)
-        .withSkipLines(1) // Skip header row
-        .build()) {
-      
-      String[] line;
-      while ((line = reader.readNext()) != null) {
-        final Optional<LogMessage> message = createLogMessageFromCsvLine(line);
-        if (message.isPresent()) {
-          logMessages.add(message.get());
-        }
-      }
-      
-      logger.info("Successfully parsed {} log messages from CSV file", logMessages.size());
-    } catch (IOException | CsvValidationException e) {
+
+    try (Stream<LogMessage> logMessages = records(filePath)) {
+      final List<LogMessage> result = logMessages.collect(Collectors.toList());
+      logger.info("Successfully parsed {} log messages from CSV file", result.size());
+      return result;
+    } catch (IOException | UncheckedIOException e) {
       logger.error("Error parsing CSV log file {}", filePath, e);
+      return new ArrayList<>();
     }
-    
-    return logMessages;
   }
 
   /**
-   * Parse a single log line and extract a log message.
+   * Lazily parse a CSV log file row by row.
+   *
+   * @param filePath The path to the log file.
+   * @return A stream of log messages which must be closed after use.
+   */
+  @Override
+  public Stream<LogMessage> streamLogFile(final Path filePath) {
+    logger.info("Streaming CSV log file {}", filePath);
+
+    try {
+      return records(filePath);
+    } catch (IOException e) {
+      logger.error("Error parsing CSV log file {}", filePath, e);
+      return Stream.empty();
+    }
+  }
+
+  /**
+   * Parse a single log line (without header) in the legacy column order.
    *
    * @param logLine The log line to parse.
-   * @return The log message parsed from the log line, or null if the line was empty or invalid.
+   * @return The log message parsed from the log line, or empty if the line was empty or invalid.
    */
   @Override
   public Optional<LogMessage> parseLine(final String logLine) {
     if (logLine == null || logLine.isEmpty()) {
       logger.warn("Empty log line");
-      return null;
+      return Optional.empty();
     }
 
-    try (CSVReader reader = new CSVReaderBuilder(new StringReader(logLine))
-        .withCSVParser(parser)
-        .build()) {
-      
-      String[] line = reader.readNext();
-      if (line != null) {
-        return createLogMessageFromCsvLine(line);
-      }
-    } catch (IOException | CsvValidationException e) {
-      logger.error("Error parsing CSV log line: {}", logLine, e);
-    }
-    
-    return null;
+    final CsvRecordReader record = lineReaders.get();
+    record.parse(logLine);
+    return bind(CsvBindingPlan.positional(), record);
+  }
+
+  @Override
+  public boolean hasHeaderLine() {
+    return true;
   }
-  
+
   /**
-   * Creates a LogMessage object from a CSV line array.
-   * 
-   * @param line Array of CSV values
-   * @return LogMessage object populated with values from the CSV line
+   * Parse a chunk of CSV records using the binding plan of the given header.
+   * Records in a chunk must not contain quoted line breaks spanning the chunk boundary.
    */
-  private Optional<LogMessage> createLogMessageFromCsvLine(final String[] line) {
-    if (line == null || line.length < 10) {
-      logger.warn("CSV line has insufficient columns: {}", line == null ? "null" : line.length);
-      return null;
+  @Override
+  public void parseChunk(final CharBuffer chunk, final String header, final Consumer<LogMessage> consumer) {
+    if (!chunk.hasArray()) {
+      LogParser.super.parseChunk(chunk, header, consumer);
+      return;
+    }
+
+    CsvBindingPlan plan = null;
+    if (header != null) {
+      final CsvRecordReader headerRecord = new CsvRecordReader();
+      headerRecord.parse(header);
+      plan = CsvBindingPlan.fromHeader(headerRecord);
     }
-    
+    final CsvBindingPlan bindingPlan = plan != null ? plan : CsvBindingPlan.positional();
+
+    final int start = chunk.arrayOffset() + chunk.position();
+    final CsvRecordReader reader = new CsvRecordReader(chunk.array(), start, start + chunk.remaining());
     try {
-      final LogMessage message = new LogMessage();
-      // Map CSV columns to LogMessage fields
-      int i = 0;
-      message.setClientDeviceType(getSafeString(line, i++));
-      message.setClientIp(getSafeString(line, i++));
-      message.setClientIpClass(getSafeString(line, i++));
-      message.setClientStatus(getSafeInteger(line, i++));
-      message.setClientRequestBytes(getSafeInteger(line, i++));
-      message.setClientRequestReferer(getSafeString(line, i++));
-      message.setClientRequestUri(getSafeString(line, i++));
-      message.setClientRequestUserAgent(getSafeString(line, i++));
-      message.setClientSrcPort(getSafeInteger(line, i++));
-      message.setEdgeServerIp(getSafeString(line, i++));
-      message.setEdgeStartTimestamp(getSafeDouble(line, i++));
-      message.setDestinationIp(getSafeString(line, i++));
-      message.setOriginResponseBytes(getSafeInteger(line, i++));
-      message.setOriginResponseTime(getSafeInteger(line, i));
-      return Optional.of(message);
-    } catch (Exception e) {
-      logger.error("Error mapping CSV values to LogMessage: {}", e.getMessage());
-      return Optional.empty();
+      while (reader.next()) {
+        bind(bindingPlan, reader).ifPresent(consumer);
+      }
+    } catch (IOException e) {
+      // Not possible for a reader over a buffer
+      throw new UncheckedIOException(e);
     }
   }
-  
-  // Helper methods for safe type conversion
-  private String getSafeString(final String[] array, final int col) {
-    return col < array.length ? array[col] : null;
+
+  private Stream<LogMessage> records(final Path filePath) throws IOException {
+    final CsvRecordReader reader = new CsvRecordReader(LogFileReader.open(filePath));
+    final CsvBindingPlan plan;
+    try {
+      plan = readHeader(reader, filePath);
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+
+    final Spliterator<LogMessage> messages = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(final Consumer<? super LogMessage> action) {
+        try {
+          while (reader.next()) {
+            final Optional<LogMessage> logMessage = bind(plan, reader);
+            if (logMessage.isPresent()) {
+              action.accept(logMessage.get());
+              return true;
+            }
+          }
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+
+    return StreamSupport.stream(messages, false)
+        .onClose(() -> {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            logger.warn("Error closing CSV log file {}", filePath, e);
+          }
+        });
   }
-  
-  private Integer getSafeInteger(final String[] array, final int col) {
-    if (col >= array.length || array[col] == null || array[col].isEmpty()) {
-      return null;
+
+  // Reads the header row and builds the binding plan for the file
+  private CsvBindingPlan readHeader(final CsvRecordReader reader, final Path filePath) throws IOException {
+    if (!reader.next()) {
+      return CsvBindingPlan.positional();
     }
-    try {
-      return Integer.parseInt(array[col]);
-    } catch (NumberFormatException e) {
-      return null;
+
+    final CsvBindingPlan plan = CsvBindingPlan.fromHeader(reader);
+    if (plan == null) {
+      logger.warn("CSV header of {} contains no known column names, assuming the default column order", filePath);
+      return CsvBindingPlan.positional();
+    }
+    for (int i = 0; i < reader.fieldCount(); i++) {
+      if (!plan.isMapped(i)) {
+        logger.warn("Ignoring unknown CSV column '{}' in {}", reader.fieldAsString(i), filePath);
+      }
     }
+    return plan;
   }
-  
-  private Double getSafeDouble(final String[] array, final int col) {
-    if (col >= array.length || array[col] == null || array[col].isEmpty()) {
-      return null;
+
+  private Optional<LogMessage> bind(final CsvBindingPlan plan, final CsvRecordReader record) {
+    if (!plan.accepts(record)) {
+      metrics.parseFailures.increment();
+      logger.warn("CSV line has insufficient columns: {}", record.fieldCount());
+      return Optional.empty();
     }
+
     try {
-      return Double.parseDouble(array[col]);
-    } catch (NumberFormatException e) {
-      return null;
+      final LogMessage logMessage = plan.bind(record, filter, interner);
+      metrics.recordsRead.increment();
+      if (logMessage == null) {
+        metrics.recordsFiltered.increment();
+        return Optional.empty();
+      }
+      return Optional.of(logMessage);
+    } catch (Exception e) {
+      metrics.parseFailures.increment();
+      logger.error("Error mapping CSV values to LogMessage: {}", e.getMessage());
+      return Optional.empty();
     }
   }
 }
@@ -0,0 +1,226 @@
+package org.rolandort.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Tokenizes CSV records in place over a reused character buffer.
+ * <p>
+ * Fields are separated by commas and may be enclosed in double quotes (RFC 4180), in which case they may contain
+ * commas, line breaks and escaped quotes ({@code ""}). Whitespace before an opening quote is ignored. Quoted fields
+ * are unescaped within the buffer, so every field of the current record is available as the range
+ * [{@link #fieldStart(int)}, {@link #fieldEnd(int)}) of {@link #buffer()} without creating a {@link String} or an
+ * array of values. The ranges are only valid until the next record is read.
+ */
+final class CsvRecordReader implements Closeable {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final char SEPARATOR = ',';
+  private static final char QUOTE = '"';
+
+  private final Reader reader;
+  private char[] buffer;
+  private int position;      // start of the unconsumed input
+  private int scanned;       // input before this position belongs to the current record
+  private boolean inQuotes;  // quote state at the scanned position
+  private int limit;         // end of the valid input
+  private boolean eof;
+
+  private char[] lineBuffer;  // copy of a single line given as string
+
+  private int[] fieldStarts = new int[16];
+  private int[] fieldEnds = new int[16];
+  private int fieldCount;
+
+  CsvRecordReader(final Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[DEFAULT_BUFFER_SIZE];
+  }
+
+  /**
+   * Creates a reader over the range [start, end) of a buffer which already holds the complete input.
+   * The records are unescaped within the given buffer.
+   */
+  CsvRecordReader(final char[] buffer, final int start, final int end) {
+    this.reader = null;
+    this.buffer = buffer;
+    this.position = start;
+    this.scanned = start;
+    this.limit = end;
+    this.eof = true;
+  }
+
+  /**
+   * Creates a reader for tokenizing single records with {@link #parse(String)}.
+   */
+  CsvRecordReader() {
+    this.reader = null;
+  }
+
+  /**
+   * Reads the next record from the input.
+   *
+   * @return True if a record was read, false at the end of the input
+   */
+  boolean next() throws IOException {
+    while (true) {
+      for (int i = scanned; i < limit; i++) {
+        final char c = buffer[i];
+        if (c == QUOTE) {
+          inQuotes = !inQuotes;
+        } else if (c == '\n' && !inQuotes) {
+          final int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+          parse(buffer, position, end);
+          position = i + 1;
+          scanned = position;
+          return true;
+        }
+      }
+      scanned = limit;
+
+      if (eof) {
+        if (position < limit) {
+          // Last record without line terminator
+          parse(buffer, position, limit);
+          position = limit;
+          scanned = limit;
+          inQuotes = false;
+          return true;
+        }
+        return false;
+      }
+      fill();
+    }
+  }
+
+  /**
+   * Tokenizes a single record given as string, working on a reused copy of the line.
+   */
+  void parse(final String line) {
+    final int length = line.length();
+    if (lineBuffer == null || lineBuffer.length < length) {
+      lineBuffer = new char[Math.max(length, 4096)];
+    }
+    line.getChars(0, length, lineBuffer, 0);
+    parse(lineBuffer, 0, length);
+  }
+
+  /**
+   * Tokenizes a single complete record, unescaping quoted fields in the given buffer.
+   */
+  void parse(final char[] chars, final int start, final int end) {
+    buffer = chars;
+    fieldCount = 0;
+
+    int pos = start;
+    while (true) {
+      // Ignore whitespace before an opening quote
+      int quote = pos;
+      while (quote < end && (chars[quote] == ' ' || chars[quote] == '\t')) {
+        quote++;
+      }
+
+      if (quote < end && chars[quote] == QUOTE) {
+        final int fieldStart = quote;
+        int out = quote;
+        pos = quote + 1;
+        while (pos < end) {
+          final char c = chars[pos++];
+          if (c == QUOTE) {
+            if (pos < end && chars[pos] == QUOTE) {
+              pos++;  // escaped quote
+            } else {
+              break;  // closing quote
+            }
+          }
+          chars[out++] = c;
+        }
+        // Keep any characters between the closing quote and the separator
+        while (pos < end && chars[pos] != SEPARATOR) {
+          chars[out++] = chars[pos++];
+        }
+        addField(fieldStart, out);
+      } else {
+        final int fieldStart = pos;
+        while (pos < end && chars[pos] != SEPARATOR) {
+          pos++;
+        }
+        addField(fieldStart, pos);
+      }
+
+      if (pos >= end) {
+        return;
+      }
+      pos++;  // skip separator
+      if (pos == end) {
+        addField(end, end);  // trailing empty field
+        return;
+      }
+    }
+  }
+
+  char[] buffer() {
+    return buffer;
+  }
+
+  int fieldCount() {
+    return fieldCount;
+  }
+
+  int fieldStart(final int field) {
+    return fieldStarts[field];
+  }
+
+  int fieldEnd(final int field) {
+    return fieldEnds[field];
+  }
+
+  boolean isFieldEmpty(final int field) {
+    return fieldStarts[field] == fieldEnds[field];
+  }
+
+  /**
+   * @return The value of a field as a new string (for headers and error messages)
+   */
+  String fieldAsString(final int field) {
+    return new String(buffer, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  private void addField(final int start, final int end) {
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    fieldCount++;
+  }
+
+  // Moves the unconsumed input to the front of the buffer (growing it for long records) and reads more input
+  private void fill() throws IOException {
+    final int remaining = limit - position;
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, remaining);
+    } else if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    scanned -= position;
+    position = 0;
+    limit = remaining;
+
+    final int read = reader.read(buffer, limit, buffer.length - limit);
+    if (read == -1) {
+      eof = true;
+    } else {
+      limit += read;
+    }
+  }
+}
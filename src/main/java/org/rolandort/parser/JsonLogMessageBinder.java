@@ -0,0 +1,373 @@
+package org.rolandort.parser;
+
+import org.rolandort.filter.LogFilter;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+/**
+ * Binds a single-line JSON object directly to a {@link LogMessage}.
+ * <p>
+ * This is the fast path of the {@link JsonLogParser}: it reads the known keys straight from a character buffer,
+ * dispatches on the key characters without allocating key strings and parses numbers directly into the fields.
+ * Unknown keys are skipped. Input using syntax outside this fast path (e.g. escaped keys, quoted or fractional
+ * integers, lenient JSON) is rejected by returning {@code null}, so the caller can fall back to Gson which also
+ * reports malformed lines.
+ * <p>
+ * With a {@link LogFilter}, only the values of the fields referenced by the filter are bound while scanning, the
+ * positions of the other values are remembered. The filter is evaluated as soon as all referenced fields are bound, and
+ * a rejected line is left immediately without scanning its rest; the other values are bound for accepted lines only.
+ * Rejected lines are therefore not checked for syntax beyond the referenced fields.
+ * <p>
+ * Instances keep the parse position and a scratch buffer and must not be shared between threads.
+ */
+final class JsonLogMessageBinder {
+
+  private static final LogMessageField[] FIELDS = LogMessageField.all();
+
+  // Thrown to leave the fast path, preallocated without stack trace as it is used for control flow only
+  private static final RuntimeException UNSUPPORTED = new RuntimeException("Unsupported JSON", null, false, false) {};
+
+  // Returned for lines rejected by the filter, compared by identity
+  static final LogMessage REJECTED = new LogMessage();
+
+  // Values of unreferenced fields bound after the filter accepted the line, duplicate keys leave the fast path
+  private static final int MAX_DEFERRED = FIELDS.length;
+
+  private final LogFilter filter;
+  private final StringInterner interner;
+  private final LogMessageField[] deferredFields = new LogMessageField[MAX_DEFERRED];
+  private final int[] deferredPositions = new int[MAX_DEFERRED];
+  private final StringBuilder scratch = new StringBuilder();
+  private char[] scratchChars = new char[256];
+  private char[] lineBuffer = new char[4096];
+  private char[] buf;
+  private int pos;
+  private int end;
+
+  JsonLogMessageBinder() {
+    this(null, StringInterner.disabled());
+  }
+
+  /**
+   * @param filter   The filter evaluated while binding, or null to bind every line
+   * @param interner The cache of repeated string values
+   */
+  JsonLogMessageBinder(final LogFilter filter, final StringInterner interner) {
+    this.filter = filter;
+    this.interner = interner;
+  }
+
+  /**
+   * @param logLine A single JSON object
+   * @return The bound log message, {@link #REJECTED} if the filter rejected it,
+   *         or null if the line is not supported by the fast path
+   */
+  LogMessage bind(final String logLine) {
+    final int length = logLine.length();
+    if (length > lineBuffer.length) {
+      lineBuffer = new char[Math.max(length, lineBuffer.length * 2)];
+    }
+    logLine.getChars(0, length, lineBuffer, 0);
+    return bind(lineBuffer, 0, length);
+  }
+
+  /**
+   * @param buffer The characters containing a single JSON object
+   * @param start  Start of the JSON object in the buffer
+   * @param end    End (exclusive) of the JSON object in the buffer
+   * @return The bound log message, {@link #REJECTED} if the filter rejected it,
+   *         or null if the line is not supported by the fast path
+   */
+  LogMessage bind(final char[] buffer, final int start, final int end) {
+    this.buf = buffer;
+    this.pos = start;
+    this.end = end;
+    try {
+      return readObject();
+    } catch (RuntimeException e) {
+      // UNSUPPORTED or an index out of bounds on truncated input
+      return null;
+    } finally {
+      this.buf = null;
+    }
+  }
+
+  private LogMessage readObject() {
+    skipWhitespace();
+    expect('{');
+    final LogMessage logMessage = new LogMessage();
+    final long filterMask = filter != null ? filter.fieldMask() : 0;
+    long boundMask = 0;
+    boolean filtered = false;
+    int deferredCount = 0;
+
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+    } else {
+      while (true) {
+        skipWhitespace();
+        expect('"');
+        final int keyStart = pos;
+        while (at(pos) != '"') {
+          if (buf[pos] == '\\') {
+            throw UNSUPPORTED;
+          }
+          pos++;
+        }
+        final LogMessageField field = field(keyStart, pos);
+        pos++;
+
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        if (filter == null || field == null || filter.references(field)) {
+          readValue(logMessage, field);
+        } else {
+          if (deferredCount == MAX_DEFERRED) {
+            throw UNSUPPORTED;
+          }
+          deferredFields[deferredCount] = field;
+          deferredPositions[deferredCount++] = pos;
+          skipValue();
+        }
+
+        // Leave the rejected line as soon as all referenced fields are bound
+        if (field != null && filter != null && !filtered && filter.references(field)) {
+          boundMask |= 1L << field.ordinal();
+          if (boundMask == filterMask) {
+            filtered = true;
+            if (!filter.test(logMessage)) {
+              return REJECTED;
+            }
+          }
+        }
+
+        skipWhitespace();
+        final char c = at(pos++);
+        if (c == '}') {
+          break;
+        } else if (c != ',') {
+          throw UNSUPPORTED;
+        }
+      }
+    }
+
+    // Only whitespace may follow the object
+    skipWhitespace();
+    if (pos != end) {
+      throw UNSUPPORTED;
+    }
+
+    if (filter != null) {
+      // Referenced fields missing in the line are null
+      if (!filtered && !filter.test(logMessage)) {
+        return REJECTED;
+      }
+      for (int i = 0; i < deferredCount; i++) {
+        pos = deferredPositions[i];
+        readValue(logMessage, deferredFields[i]);
+      }
+    }
+    return logMessage;
+  }
+
+  private void readValue(final LogMessage logMessage, final LogMessageField field) {
+    if (field == null) {
+      skipValue();
+      return;
+    }
+    switch (field.type()) {
+      case STRING -> field.setString(logMessage, readString(field));
+      case INTEGER -> field.setInteger(logMessage, readInteger());
+      case DOUBLE -> field.setDouble(logMessage, readDouble());
+    }
+  }
+
+  private LogMessageField field(final int start, final int end) {
+    for (LogMessageField field : FIELDS) {
+      if (field.keyEquals(buf, start, end)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private String readString(final LogMessageField field) {
+    if (readNull()) {
+      return null;
+    }
+    expect('"');
+    final int start = pos;
+    while (true) {
+      final char c = at(pos);
+      if (c == '"') {
+        pos++;
+        return interner.intern(field, buf, start, pos - 1);
+      } else if (c == '\\') {
+        return readEscapedString(field, start);
+      }
+      pos++;
+    }
+  }
+
+  private String readEscapedString(final LogMessageField field, final int start) {
+    scratch.setLength(0);
+    scratch.append(buf, start, pos - start);
+    while (true) {
+      final char c = at(pos++);
+      if (c == '"') {
+        return internScratch(field);
+      } else if (c != '\\') {
+        scratch.append(c);
+        continue;
+      }
+
+      final char escaped = at(pos++);
+      switch (escaped) {
+        case '"', '\\', '/' -> scratch.append(escaped);
+        case 'b' -> scratch.append('\b');
+        case 'f' -> scratch.append('\f');
+        case 'n' -> scratch.append('\n');
+        case 'r' -> scratch.append('\r');
+        case 't' -> scratch.append('\t');
+        case 'u' -> {
+          int value = 0;
+          for (int i = 0; i < 4; i++) {
+            final int digit = Character.digit(at(pos++), 16);
+            if (digit < 0) {
+              throw UNSUPPORTED;
+            }
+            value = (value << 4) | digit;
+          }
+          scratch.append((char) value);
+        }
+        default -> throw UNSUPPORTED;
+      }
+    }
+  }
+
+  private Integer readInteger() {
+    if (readNull()) {
+      return null;
+    }
+    final int start = pos;
+    while (pos < end && !isDelimiter(buf[pos])) {
+      pos++;
+    }
+    try {
+      return CharNumbers.parseInt(buf, start, pos);
+    } catch (NumberFormatException e) {
+      // Fraction or exponent which Gson converts if the value is integral, or an invalid number
+      throw UNSUPPORTED;
+    }
+  }
+
+  private Double readDouble() {
+    if (readNull()) {
+      return null;
+    }
+    final int start = pos;
+    while (pos < end && !isDelimiter(buf[pos])) {
+      pos++;
+    }
+    try {
+      return CharNumbers.parseDouble(buf, start, pos);
+    } catch (NumberFormatException e) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private void skipValue() {
+    final char c = peek();
+    if (c == '"') {
+      skipString();
+    } else if (c == '{' || c == '[') {
+      int depth = 0;
+      do {
+        final char next = at(pos);
+        if (next == '"') {
+          skipString();
+          continue;
+        }
+        if (next == '{' || next == '[') {
+          depth++;
+        } else if (next == '}' || next == ']') {
+          depth--;
+        }
+        pos++;
+      } while (depth > 0);
+    } else {
+      // Number or literal
+      final int start = pos;
+      while (pos < end && !isDelimiter(buf[pos])) {
+        pos++;
+      }
+      if (pos == start) {
+        throw UNSUPPORTED;
+      }
+    }
+  }
+
+  private String internScratch(final LogMessageField field) {
+    final int length = scratch.length();
+    if (scratchChars.length < length) {
+      scratchChars = new char[Math.max(length, scratchChars.length * 2)];
+    }
+    scratch.getChars(0, length, scratchChars, 0);
+    return interner.intern(field, scratchChars, 0, length);
+  }
+
+  private void skipString() {
+    expect('"');
+    while (true) {
+      final char c = at(pos++);
+      if (c == '"') {
+        return;
+      } else if (c == '\\') {
+        pos++;
+      }
+    }
+  }
+
+  private boolean readNull() {
+    if (pos + 4 <= end && buf[pos] == 'n' && buf[pos + 1] == 'u' && buf[pos + 2] == 'l' && buf[pos + 3] == 'l') {
+      pos += 4;
+      return true;
+    }
+    return false;
+  }
+
+  private char peek() {
+    return at(pos);
+  }
+
+  // Bounds check against the end of the line, the buffer may contain further input
+  private char at(final int index) {
+    if (index >= end) {
+      throw UNSUPPORTED;
+    }
+    return buf[index];
+  }
+
+  private void expect(final char c) {
+    if (pos >= end || buf[pos] != c) {
+      throw UNSUPPORTED;
+    }
+    pos++;
+  }
+
+  private void skipWhitespace() {
+    while (pos < end) {
+      final char c = buf[pos];
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private static boolean isDelimiter(final char c) {
+    return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+}
@@ -5,31 +5,61 @@ import com.google.gson.GsonBuilder;
 import com.google.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.filter.LogFilter;
+import org.rolandort.metrics.PipelineMetrics;
 import org.rolandort.model.LogMessage;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * JSON log parser implementation.
+ * <p>
+ * Lines are bound by a hand-written {@link JsonLogMessageBinder} reading directly from the file's character buffer.
+ * Lines which are not supported by the binder are parsed with a lenient Gson instance, which also reports
+ * malformed lines.
  */
 @Singleton
 public class JsonLogParser implements LogParser {
   private static final Logger logger = LogManager.getLogger(JsonLogParser.class);
+  private static final PipelineMetrics metrics = PipelineMetrics.global();
   private final Gson gson;
+  private final LogFilter filter;
+  private final ThreadLocal<JsonLogMessageBinder> binders;
   
   public JsonLogParser() {
+    this(null);
+  }
+
+  /**
+   * @param filter Lines not accepted by the filter are skipped while binding, null to keep all lines
+   */
+  public JsonLogParser(final LogFilter filter) {
+    this(filter, StringInterner.defaults());
+  }
+
+  /**
+   * @param filter   Lines not accepted by the filter are skipped while binding, null to keep all lines
+   * @param interner The cache of repeated string values, shared by all parse threads
+   */
+  public JsonLogParser(final LogFilter filter, final StringInterner interner) {
     // Create a Gson instance with custom settings
     this.gson = new GsonBuilder()
         .setLenient() // accept malformed JSON
         .create();
+    this.filter = filter;
+    this.binders = ThreadLocal.withInitial(() -> new JsonLogMessageBinder(filter, interner));
   }
 
   /**
@@ -42,18 +72,32 @@ public class JsonLogParser implements LogParser {
   public List<LogMessage> parseLogFile(final Path filePath) {
     logger.info("Parsing JSON log file {}", filePath);
 
-    try (Stream<String> lines = Files.lines(Paths.get(filePath.toString()))) {
-      // Process each line using stream operations with flatMap to handle Optionals
-      return lines
-          .map(this::parseLine)                // Parse each line to Optional<LogMessage>
-          .flatMap(Optional::stream)           // Convert Optional to Stream (empty or singleton)
-          .collect(Collectors.toList());       // Collect results to List
-    } catch (IOException e) {
+    try (Stream<LogMessage> logMessages = lines(filePath)) {
+      return logMessages.collect(Collectors.toList());
+    } catch (IOException | UncheckedIOException e) {
       logger.error("Error parsing JSON log file {}", filePath, e);
       return new ArrayList<>();                // Return empty list on error
     }
   }
 
+  /**
+   * Lazily parse a log file line by line.
+   *
+   * @param filePath The path to the log file to parse.
+   * @return A stream of log messages which must be closed after use.
+   */
+  @Override
+  public Stream<LogMessage> streamLogFile(final Path filePath) {
+    logger.info("Streaming JSON log file {}", filePath);
+
+    try {
+      return lines(filePath);
+    } catch (IOException e) {
+      logger.error("Error parsing JSON log file {}", filePath, e);
+      return Stream.empty();
+    }
+  }
+
   /**
    * Parse a log line and extract a log message.
    *
@@ -67,14 +111,105 @@ public class JsonLogParser implements LogParser {
       return Optional.empty();
     }
 
+    final LogMessage logMessage = binders.get().bind(logLine);
+    if (logMessage != null) {
+      return accepted(logMessage);
+    }
+    return parseLineWithGson(logLine);
+  }
+
+  /**
+   * Parse a chunk of lines, binding each line directly from the chunk's character buffer.
+   */
+  @Override
+  public void parseChunk(final CharBuffer chunk, final String header, final Consumer<LogMessage> consumer) {
+    if (!chunk.hasArray()) {
+      LogParser.super.parseChunk(chunk, header, consumer);
+      return;
+    }
+
+    final int start = chunk.arrayOffset() + chunk.position();
+    final LineScanner scanner = new LineScanner(chunk.array(), start, start + chunk.remaining());
+    try {
+      while (scanner.next()) {
+        parseLine(scanner.buffer(), scanner.lineStart(), scanner.lineEnd()).ifPresent(consumer);
+      }
+    } catch (IOException e) {
+      // Not possible for a scanner over a buffer
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parse a log line given as a range of a character buffer.
+   */
+  Optional<LogMessage> parseLine(final char[] buffer, final int start, final int end) {
+    if (start == end) {
+      logger.warn("Empty log line");
+      return Optional.empty();
+    }
+
+    final LogMessage logMessage = binders.get().bind(buffer, start, end);
+    if (logMessage != null) {
+      return accepted(logMessage);
+    }
+    return parseLineWithGson(new String(buffer, start, end - start));
+  }
+
+  private Optional<LogMessage> accepted(final LogMessage logMessage) {
+    metrics.recordsRead.increment();
+    if (logMessage == JsonLogMessageBinder.REJECTED) {
+      metrics.recordsFiltered.increment();
+      return Optional.empty();
+    }
+    logger.debug("Parsed log message: {}", logMessage);
+    return Optional.of(logMessage);
+  }
+
+  // Slow path for lines the binder does not support, using a lenient reflective Gson adapter
+  private Optional<LogMessage> parseLineWithGson(final String logLine) {
     try {
       // Parse the log line as JSON using Gson
       final LogMessage logMessage = gson.fromJson(logLine, LogMessage.class);
-      logger.debug("Parsed log message: {}", logMessage);
-      return Optional.ofNullable(logMessage);
+      if (logMessage == null) {
+        return Optional.empty();
+      }
+      return accepted(filter == null || filter.test(logMessage) ? logMessage : JsonLogMessageBinder.REJECTED);
     } catch (Exception e) {
+      metrics.parseFailures.increment();
       logger.error("Error parsing log line: {}", logLine, e);
       return Optional.empty();  // Return empty Optional instead of null
     }
   }
+
+  private Stream<LogMessage> lines(final Path filePath) throws IOException {
+    final LineScanner scanner = new LineScanner(LogFileReader.open(filePath));
+
+    final Spliterator<LogMessage> messages = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(final Consumer<? super LogMessage> action) {
+        try {
+          while (scanner.next()) {
+            final Optional<LogMessage> logMessage = parseLine(scanner.buffer(), scanner.lineStart(), scanner.lineEnd());
+            if (logMessage.isPresent()) {
+              action.accept(logMessage.get());
+              return true;
+            }
+          }
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+
+    return StreamSupport.stream(messages, false)
+        .onClose(() -> {
+          try {
+            scanner.close();
+          } catch (IOException e) {
+            logger.warn("Error closing JSON log file {}", filePath, e);
+          }
+        });
+  }
 }
@@ -0,0 +1,116 @@
+package org.rolandort.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits character input into lines without allocating a {@link String} per line.
+ * <p>
+ * After a successful call of {@link #next()} the current line is available as the range
+ * [{@link #lineStart()}, {@link #lineEnd()}) of {@link #buffer()}, excluding the line terminator.
+ * The range is only valid until the next call of {@link #next()}.
+ */
+final class LineScanner implements Closeable {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Reader reader;
+  private char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+  private int position;  // start of the unconsumed input
+  private int scanned;   // input before this position contains no line feed
+  private int limit;     // end of the valid input
+  private int lineStart;
+  private int lineEnd;
+  private boolean eof;
+
+  LineScanner(final Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Creates a scanner over the range [start, end) of a buffer which already holds the complete input.
+   */
+  LineScanner(final char[] buffer, final int start, final int end) {
+    this.reader = null;
+    this.buffer = buffer;
+    this.position = start;
+    this.scanned = start;
+    this.limit = end;
+    this.eof = true;
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * @return True if a line is available, false at the end of the input
+   */
+  boolean next() throws IOException {
+    while (true) {
+      for (int i = scanned; i < limit; i++) {
+        if (buffer[i] == '\n') {
+          setLine(position, i);
+          position = i + 1;
+          scanned = position;
+          return true;
+        }
+      }
+      scanned = limit;
+
+      if (eof) {
+        if (position < limit) {
+          // Last line without line terminator
+          setLine(position, limit);
+          position = limit;
+          return true;
+        }
+        return false;
+      }
+      fill();
+    }
+  }
+
+  char[] buffer() {
+    return buffer;
+  }
+
+  int lineStart() {
+    return lineStart;
+  }
+
+  int lineEnd() {
+    return lineEnd;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  private void setLine(final int start, final int end) {
+    lineStart = start;
+    lineEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+  }
+
+  // Moves the unconsumed input to the front of the buffer (growing it for long lines) and reads more input
+  private void fill() throws IOException {
+    final int remaining = limit - position;
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, remaining);
+    } else if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    scanned -= position;
+    position = 0;
+    limit = remaining;
+
+    final int read = reader.read(buffer, limit, buffer.length - limit);
+    if (read == -1) {
+      eof = true;
+    } else {
+      limit += read;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.rolandort.parser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.PipelineMetrics;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens log files for reading, transparently decompressing gzip files.
+ * <p>
+ * Gzip files are detected by their magic bytes, independent of the file name. They are inflated by a separate
+ * read-ahead thread into a small bounded queue of large blocks, so inflating and parsing run on two cores.
+ * Files of several concatenated gzip members (e.g. appended by log rotation) are read completely.
+ */
+public final class LogFileReader {
+  private static final Logger logger = LogManager.getLogger(LogFileReader.class);
+
+  private static final int GZIP_MAGIC_1 = 0x1f;
+  private static final int GZIP_MAGIC_2 = 0x8b;
+  private static final int INFLATER_BUFFER_SIZE = 256 * 1024;
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int READ_AHEAD_BLOCKS = 4;
+
+  private LogFileReader() {
+  }
+
+  /**
+   * @return True if the file starts with the gzip magic bytes
+   * @throws IOException If the file cannot be read
+   */
+  public static boolean isGzip(final Path filePath) throws IOException {
+    try (PushbackInputStream in = new PushbackInputStream(Files.newInputStream(filePath), 2)) {
+      return startsWithGzipMagic(in);
+    }
+  }
+
+  /**
+   * Opens a UTF-8 encoded log file, which may be gzip-compressed.
+   *
+   * @param filePath The path to the log file
+   * @return A reader which must be closed by the caller
+   * @throws IOException If the file cannot be opened
+   */
+  public static Reader open(final Path filePath) throws IOException {
+    final PushbackInputStream file = new PushbackInputStream(new CountingInputStream(Files.newInputStream(filePath)), 2);
+    try {
+      if (!startsWithGzipMagic(file)) {
+        // Decode strictly like Files.newBufferedReader
+        return new BufferedReader(new InputStreamReader(file, StandardCharsets.UTF_8.newDecoder()));
+      }
+      logger.info("Decompressing gzip log file {}", filePath);
+      final InputStream gzip = new GZIPInputStream(file, INFLATER_BUFFER_SIZE);
+      return new InputStreamReader(new ReadAheadInputStream(gzip, filePath.getFileName().toString()), StandardCharsets.UTF_8);
+    } catch (IOException | RuntimeException e) {
+      // e.g. a corrupt gzip header, nobody else can close the file
+      try {
+        file.close();
+      } catch (IOException closeError) {
+        e.addSuppressed(closeError);
+      }
+      throw e;
+    }
+  }
+
+  // Peeks at the first bytes, which are pushed back to be read again
+  private static boolean startsWithGzipMagic(final PushbackInputStream in) throws IOException {
+    final byte[] magic = new byte[2];
+    final int length = in.readNBytes(magic, 0, magic.length);
+    in.unread(magic, 0, length);
+    return length == magic.length && (magic[0] & 0xff) == GZIP_MAGIC_1 && (magic[1] & 0xff) == GZIP_MAGIC_2;
+  }
+
+  /**
+   * Counts the bytes read from a log file in the pipeline metrics.
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    CountingInputStream(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = super.read();
+      if (b >= 0) {
+        PipelineMetrics.global().bytesRead.increment();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      final int count = super.read(buffer, offset, length);
+      if (count > 0) {
+        PipelineMetrics.global().bytesRead.add(count);
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Reads a stream on a separate thread into a bounded queue of blocks.
+   */
+  private static final class ReadAheadInputStream extends InputStream {
+    private static final byte[] END = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(READ_AHEAD_BLOCKS);
+    private final Thread reader;
+    private volatile IOException error;
+    private volatile boolean closed;
+
+    private byte[] block;
+    private int position;
+
+    private ReadAheadInputStream(final InputStream source, final String name) {
+      this.source = source;
+      this.reader = new Thread(this::readAhead, "read-ahead-" + name);
+      this.reader.setDaemon(true);
+      this.reader.start();
+    }
+
+    private void readAhead() {
+      try (source) {
+        while (!closed) {
+          // Fill a whole block, the gzip stream returns at most one inflater buffer per read
+          final byte[] buffer = new byte[BLOCK_SIZE];
+          int length = 0;
+          int read;
+          while (length < buffer.length && (read = source.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+          }
+          if (length == 0 || !put(length == buffer.length ? buffer : Arrays.copyOf(buffer, length))) {
+            break;
+          }
+        }
+      } catch (IOException e) {
+        error = e;
+      } catch (InterruptedException e) {
+        // closed by the consumer
+        return;
+      }
+      try {
+        put(END);
+      } catch (InterruptedException e) {
+        // closed by the consumer
+      }
+    }
+
+    // Waits for space in the queue, returns false if the stream was closed meanwhile
+    private boolean put(final byte[] block) throws InterruptedException {
+      while (!closed) {
+        if (blocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (block == null || position == block.length) {
+        if (block == END) {
+          return -1;
+        }
+        try {
+          block = blocks.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while reading " + reader.getName());
+        }
+        position = 0;
+        if (block == END) {
+          if (error != null) {
+            throw error;
+          }
+          return -1;
+        }
+      }
+      final int count = Math.min(length, block.length - position);
+      System.arraycopy(block, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+      // The read-ahead thread stops and closes the source
+      closed = true;
+      reader.interrupt();
+      blocks.clear();
+    }
+  }
+}
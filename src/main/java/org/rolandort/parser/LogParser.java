@@ -2,12 +2,49 @@ package org.rolandort.parser;
 
 import org.rolandort.model.LogMessage;
 
+import java.nio.CharBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface LogParser {
   List<LogMessage> parseLogFile(Path filePath);
 
+  /**
+   * Lazily parses a log file record by record without materializing the whole file.
+   * <p>
+   * The returned stream holds the underlying file open and must be closed by the caller,
+   * e.g. using try-with-resources.
+   *
+   * @param filePath The path to the log file to parse.
+   * @return A stream of log messages parsed from the file.
+   */
+  Stream<LogMessage> streamLogFile(Path filePath);
+
   Optional<LogMessage> parseLine(String logLine);
+
+  /**
+   * @return True if the first line of a log file is a header, which is passed to {@link #parseChunk}
+   */
+  default boolean hasHeaderLine() {
+    return false;
+  }
+
+  /**
+   * Parses a chunk of complete lines cut out of a log file, e.g. for parsing a file in parallel.
+   * <p>
+   * Implementations must be thread-safe, as chunks of the same file are parsed concurrently.
+   *
+   * @param chunk    The characters of the chunk, starting at the beginning of a line
+   * @param header   The header line of the file, or null if the format has no header
+   * @param consumer Receives the parsed log messages in input order
+   */
+  default void parseChunk(final CharBuffer chunk, final String header, final Consumer<LogMessage> consumer) {
+    chunk.toString().lines()
+        .map(this::parseLine)
+        .flatMap(Optional::stream)
+        .forEach(consumer);
+  }
 }
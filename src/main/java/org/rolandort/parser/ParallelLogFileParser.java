@@ -0,0 +1,269 @@
+package org.rolandort.parser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.LogMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses large newline-delimited log files in parallel.
+ * <p>
+ * The file is split into chunks of about {@link #DEFAULT_CHUNK_SIZE} bytes aligned on line boundaries (after the
+ * header line, if the format has one). Every chunk is memory-mapped with {@link FileChannel#map}, decoded and
+ * parsed by {@link LogParser#parseChunk} on a fork-join pool. Only a small window of chunks is parsed ahead of the
+ * consumer, so the memory usage is bounded independent of the file size.
+ * <p>
+ * The messages are returned either in input order or in the order in which the chunks complete.
+ * Records must not span lines, e.g. CSV fields with quoted line breaks are not supported.
+ */
+public class ParallelLogFileParser {
+  private static final Logger logger = LogManager.getLogger(ParallelLogFileParser.class);
+
+  public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final int BOUNDARY_SCAN_SIZE = 64 * 1024;
+
+  // Decoding state and target buffer, reused by every pool thread for all its chunks
+  private static final ThreadLocal<CharsetDecoder> DECODERS = ThreadLocal.withInitial(() -> StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE));
+  private static final ThreadLocal<CharBuffer> CHAR_BUFFERS = new ThreadLocal<>();
+
+  private final LogParser logParser;
+  private final int parallelism;
+  private final boolean preserveOrder;
+  private final int chunkSize;
+
+  /**
+   * @param logParser     The parser for the chunks
+   * @param parallelism   Number of threads parsing chunks
+   * @param preserveOrder True to return the messages in input order
+   */
+  public ParallelLogFileParser(final LogParser logParser, final int parallelism, final boolean preserveOrder) {
+    this(logParser, parallelism, preserveOrder, DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelLogFileParser(final LogParser logParser, final int parallelism, final boolean preserveOrder, final int chunkSize) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    this.logParser = logParser;
+    this.parallelism = parallelism;
+    this.preserveOrder = preserveOrder;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Parses a log file in parallel.
+   *
+   * @param filePath The path to the log file to parse.
+   * @return A stream of log messages which must be closed after use to stop the parser threads.
+   */
+  public Stream<LogMessage> streamLogFile(final Path filePath) {
+    logger.info("Parsing log file {} in parallel ({} threads, preserve order: {})", filePath, parallelism, preserveOrder);
+
+    final FileChannel channel;
+    final String header;
+    final List<long[]> chunks;
+    try {
+      channel = FileChannel.open(filePath, StandardOpenOption.READ);
+    } catch (IOException e) {
+      logger.error("Error parsing log file {}", filePath, e);
+      return Stream.empty();
+    }
+    try {
+      long start = 0;
+      if (logParser.hasHeaderLine()) {
+        start = findLineEnd(channel, 0);
+        header = readHeader(channel, start);
+      } else {
+        header = null;
+      }
+      chunks = split(channel, start);
+      logger.info("Split log file {} into {} chunks", filePath, chunks.size());
+    } catch (IOException e) {
+      logger.error("Error parsing log file {}", filePath, e);
+      closeQuietly(channel);
+      return Stream.empty();
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    final ChunkResults results = new ChunkResults(pool, chunks.iterator(), chunk -> parseChunk(channel, chunk, header));
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .flatMap(List::stream)
+        .onClose(() -> {
+          pool.shutdownNow();
+          closeQuietly(channel);
+        });
+  }
+
+  // Parses one chunk, called on a pool thread
+  private List<LogMessage> parseChunk(final FileChannel channel, final long[] chunk, final String header) throws IOException {
+    final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+    PipelineMetrics.global().bytesRead.add(chunk[1] - chunk[0]);
+    final CharBuffer chars = decode(bytes);
+    final List<LogMessage> logMessages = new ArrayList<>();
+    logParser.parseChunk(chars, header, logMessages::add);
+    return logMessages;
+  }
+
+  private static CharBuffer decode(final ByteBuffer bytes) {
+    CharBuffer chars = CHAR_BUFFERS.get();
+    // UTF-8 never decodes to more chars than bytes
+    if (chars == null || chars.capacity() < bytes.remaining()) {
+      chars = CharBuffer.allocate(bytes.remaining());
+      CHAR_BUFFERS.set(chars);
+    }
+    chars.clear();
+
+    final CharsetDecoder decoder = DECODERS.get().reset();
+    CoderResult result = decoder.decode(bytes, chars, true);
+    if (!result.isError()) {
+      result = decoder.flush(chars);
+    }
+    if (result.isError()) {
+      throw new IllegalStateException("Error decoding chunk: " + result);
+    }
+    return chars.flip();
+  }
+
+  // Splits the file into chunks [start, end) which end after a line feed (or at the end of the file)
+  private List<long[]> split(final FileChannel channel, final long start) throws IOException {
+    final long size = channel.size();
+    final List<long[]> chunks = new ArrayList<>();
+    long chunkStart = start;
+    while (chunkStart < size) {
+      final long chunkEnd = chunkStart + chunkSize >= size ? size : findLineEnd(channel, chunkStart + chunkSize);
+      chunks.add(new long[] {chunkStart, chunkEnd});
+      chunkStart = chunkEnd;
+    }
+    return chunks;
+  }
+
+  // Returns the position after the next line feed at or after the given position, or the file size
+  private static long findLineEnd(final FileChannel channel, final long from) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+    long position = from;
+    while (true) {
+      buffer.clear();
+      final int read = channel.read(buffer, position);
+      if (read <= 0) {
+        return channel.size();
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+  }
+
+  private static String readHeader(final FileChannel channel, final long end) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate((int) end);
+    while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+      // read until the end of the header line
+    }
+    return StandardCharsets.UTF_8.decode(buffer.flip()).toString().stripTrailing();
+  }
+
+  private static void closeQuietly(final FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.warn("Error closing log file", e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface ChunkParser {
+    List<LogMessage> parse(long[] chunk) throws IOException;
+  }
+
+  /**
+   * Submits the chunks to the pool with a bounded look-ahead and returns their results
+   * in input order or in completion order.
+   */
+  private final class ChunkResults implements Iterator<List<LogMessage>> {
+    private final Iterator<long[]> chunks;
+    private final ChunkParser chunkParser;
+    private final ForkJoinPool pool;
+    private final CompletionService<List<LogMessage>> completionService;
+    private final Deque<Future<List<LogMessage>>> pending = new ArrayDeque<>();
+    private final int window = parallelism * 2;
+
+    private ChunkResults(final ForkJoinPool pool, final Iterator<long[]> chunks, final ChunkParser chunkParser) {
+      this.chunks = chunks;
+      this.chunkParser = chunkParser;
+      this.pool = pool;
+      this.completionService = new ExecutorCompletionService<>(pool);
+    }
+
+    @Override
+    public boolean hasNext() {
+      submit();
+      return !pending.isEmpty();
+    }
+
+    @Override
+    public List<LogMessage> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        if (preserveOrder) {
+          return pending.removeFirst().get();
+        }
+        final Future<List<LogMessage>> completed = completionService.take();
+        pending.remove(completed);
+        return completed.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while parsing log file", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException ioException) {
+          throw new UncheckedIOException(ioException);
+        }
+        throw new IllegalStateException("Error parsing log file chunk", e.getCause());
+      }
+    }
+
+    private void submit() {
+      while (pending.size() < window && chunks.hasNext()) {
+        final long[] chunk = chunks.next();
+        final Callable<List<LogMessage>> task = () -> chunkParser.parse(chunk);
+        // Only the unordered mode consumes the completion queue
+        pending.addLast(preserveOrder ? pool.submit(task) : completionService.submit(task));
+      }
+    }
+  }
+}
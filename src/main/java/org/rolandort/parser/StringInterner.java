@@ -0,0 +1,186 @@
+package org.rolandort.parser;
+
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.LogMessageField;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the values of low-cardinality string fields, so the messages of a file share one instance of e.g.
+ * "desktop" instead of allocating a new string per record.
+ * <p>
+ * Values are looked up directly in the parse buffer, a hit allocates nothing. Every field has its own table of a fixed
+ * number of entries, organized in sets of two entries: a miss replaces the least recently used entry of its set, so a
+ * field with many distinct values cannot grow the cache and does not evict the values of other fields. Values longer
+ * than {@link #MAX_LENGTH} are not cached.
+ * <p>
+ * The cache is shared by all parse threads without locking. Entries are immutable strings published through an
+ * {@link AtomicReferenceArray}; concurrent misses in the same set may lose an entry, which only costs a later miss.
+ */
+public final class StringInterner {
+  /**
+   * Fields cached by default, their values repeat across many records
+   */
+  public static final Set<LogMessageField> DEFAULT_FIELDS = EnumSet.of(
+      LogMessageField.CLIENT_DEVICE_TYPE,
+      LogMessageField.CLIENT_IP_CLASS,
+      LogMessageField.CLIENT_REQUEST_REFERER,
+      LogMessageField.CLIENT_REQUEST_URI,
+      LogMessageField.CLIENT_REQUEST_USER_AGENT,
+      LogMessageField.EDGE_SERVER_IP,
+      LogMessageField.DESTINATION_IP);
+
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  // Longer values are rarely repeated and would keep too much memory alive
+  static final int MAX_LENGTH = 512;
+
+  private static final PipelineMetrics metrics = PipelineMetrics.global();
+  private static final StringInterner DISABLED = new StringInterner(EnumSet.noneOf(LogMessageField.class), 0);
+
+  private final AtomicReferenceArray<String>[] tables;  // by field ordinal, null for fields not cached
+  private final LongAdder[] hits;
+  private final LongAdder[] misses;
+
+  /**
+   * @param fields   The fields to cache
+   * @param capacity Maximum number of values cached per field, rounded up to a power of two, 0 disables the cache
+   */
+  @SuppressWarnings("unchecked")
+  public StringInterner(final Set<LogMessageField> fields, final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+    }
+    final int size = Math.max(2, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    final int fieldCount = LogMessageField.all().length;
+    this.tables = new AtomicReferenceArray[fieldCount];
+    this.hits = new LongAdder[fieldCount];
+    this.misses = new LongAdder[fieldCount];
+    for (LogMessageField field : fields) {
+      if (capacity > 0 && field.type() == LogMessageField.Type.STRING) {
+        tables[field.ordinal()] = new AtomicReferenceArray<>(size);
+        hits[field.ordinal()] = new LongAdder();
+        misses[field.ordinal()] = new LongAdder();
+      }
+    }
+  }
+
+  /**
+   * @return An interner caching the {@link #DEFAULT_FIELDS} with the {@link #DEFAULT_CAPACITY}
+   */
+  public static StringInterner defaults() {
+    return new StringInterner(DEFAULT_FIELDS, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @return An interner creating a new string for every value
+   */
+  public static StringInterner disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * @param field  The field of the value
+   * @param buffer The characters containing the value
+   * @param start  Start of the value in the buffer
+   * @param end    End (exclusive) of the value in the buffer
+   * @return The cached string equal to the value, or a new string
+   */
+  public String intern(final LogMessageField field, final char[] buffer, final int start, final int end) {
+    final AtomicReferenceArray<String> table = tables[field.ordinal()];
+    final int length = end - start;
+    if (table == null || length > MAX_LENGTH) {
+      return new String(buffer, start, length);
+    }
+
+    int hash = length;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+    hash ^= hash >>> 16;
+    final int first = (hash * 0x9E3779B9 >>> 1) & (table.length() - 2);
+
+    final String newer = table.get(first);
+    if (matches(newer, buffer, start, length)) {
+      hits[field.ordinal()].increment();
+      metrics.stringCacheHits.increment();
+      return newer;
+    }
+    final String older = table.get(first + 1);
+    if (matches(older, buffer, start, length)) {
+      // Keep the recently used value in the set
+      table.set(first, older);
+      table.set(first + 1, newer);
+      hits[field.ordinal()].increment();
+      metrics.stringCacheHits.increment();
+      return older;
+    }
+
+    // Evict the least recently used entry of the set
+    final String value = new String(buffer, start, length);
+    table.set(first + 1, newer);
+    table.set(first, value);
+    misses[field.ordinal()].increment();
+    metrics.stringCacheMisses.increment();
+    return value;
+  }
+
+  /**
+   * @return True if the values of the field are cached
+   */
+  public boolean caches(final LogMessageField field) {
+    return tables[field.ordinal()] != null;
+  }
+
+  /**
+   * @return The number of values of the field found in the cache
+   */
+  public long hitCount(final LogMessageField field) {
+    return caches(field) ? hits[field.ordinal()].sum() : 0;
+  }
+
+  /**
+   * @return The number of values of the field not found in the cache
+   */
+  public long missCount(final LogMessageField field) {
+    return caches(field) ? misses[field.ordinal()].sum() : 0;
+  }
+
+  /**
+   * @return The fraction of values of the field found in the cache, 0 before the first lookup
+   */
+  public double hitRate(final LogMessageField field) {
+    final long hitCount = hitCount(field);
+    final long lookups = hitCount + missCount(field);
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  /**
+   * @return The hit rates of the cached fields which were looked up, e.g. "clientDeviceType 100.0%, clientRequestUri 87.5%"
+   */
+  public String hitRates() {
+    final StringJoiner rates = new StringJoiner(", ");
+    for (LogMessageField field : LogMessageField.all()) {
+      if (hitCount(field) + missCount(field) > 0) {
+        rates.add(String.format("%s %.1f%%", field.javaName(), hitRate(field) * 100));
+      }
+    }
+    return rates.toString();
+  }
+
+  private static boolean matches(final String value, final char[] buffer, final int start, final int length) {
+    if (value == null || value.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != buffer[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,438 @@
+package org.rolandort.rollup;
+
+import org.rolandort.model.FieldHash;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates log messages into one summary per group and tumbling time window, e.g. per client IP, URI and status
+ * code and minute.
+ * <p>
+ * A message belongs to the window of its {@code EdgeStartTimestamp}. A summary counts the requests, sums the request
+ * and response bytes and holds the minimum, maximum and percentiles of the origin response time. A window is closed
+ * once a message two windows later was added, so messages may arrive up to one window out of order. Messages of a
+ * window which was already closed are summarized again and counted as late; messages without timestamp are skipped.
+ * <p>
+ * Inputs read at the same time, e.g. files processed in parallel, are added as separate {@link Source}s. Every source
+ * tracks its own latest window and a window is only closed once all unfinished sources are past it, so a file with
+ * newer data does not close the windows another file is still adding to.
+ * <p>
+ * The groups are kept in open-addressing tables keyed by a 64-bit hash of the window and the key values, with all
+ * aggregates in primitive arrays. The tables are striped by the hash, so threads adding messages concurrently rarely
+ * wait for each other. The response times of open windows are kept for exact percentiles, which costs 8 bytes per
+ * message until its window is closed.
+ */
+public class RollupAggregator {
+  private static final String DEFAULT_HOST = "log2graylog";
+
+  private final LogMessageField[] keys;
+  private final long windowSeconds;
+  private final Stripe[] stripes;
+  private final List<Source> sources = new CopyOnWriteArrayList<>();  // unfinished
+  private volatile Source defaultSource;
+  private final AtomicLong closedBefore = new AtomicLong(Long.MIN_VALUE);
+  private final LongAdder aggregatedCount = new LongAdder();
+  private final LongAdder lateCount = new LongAdder();
+  private final LongAdder skippedCount = new LongAdder();
+
+  /**
+   * @param keys    The fields to group by, e.g. client IP and URI
+   * @param window  The length of the windows, whole seconds
+   * @param stripes The number of independently locked tables, e.g. the number of processors
+   * @throws IllegalArgumentException If the window is shorter than a second
+   */
+  public RollupAggregator(final List<LogMessageField> keys, final Duration window, final int stripes) {
+    if (window.toSeconds() < 1) {
+      throw new IllegalArgumentException("Rollup window must be at least 1 second: " + window);
+    }
+    this.keys = keys.toArray(new LogMessageField[0]);
+    this.windowSeconds = window.toSeconds();
+    // A power of two, so a stripe is selected by the bits of the hash
+    this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes) * 2 - 1)];
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * An input of messages with its own progress, e.g. a file.
+   */
+  public static final class Source {
+    private final LongAccumulator latestWindow = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    private Source() {
+    }
+  }
+
+  /**
+   * Registers an input. No window is closed before every unfinished source added a message after it, so the sources
+   * of all inputs should be registered before any of them is read.
+   *
+   * @return The source to pass to {@link #add(Source, LogMessage)}, to be finished at the end of the input
+   */
+  public Source newSource() {
+    final Source source = new Source();
+    sources.add(source);
+    return source;
+  }
+
+  /**
+   * Marks the end of an input, its progress no longer holds back closing windows.
+   */
+  public void finish(final Source source) {
+    sources.remove(source);
+  }
+
+  /**
+   * Adds a message of a single input to the summary of its group and window. Thread-safe.
+   */
+  public void add(final LogMessage logMessage) {
+    if (defaultSource == null) {
+      synchronized (this) {
+        if (defaultSource == null) {
+          defaultSource = newSource();
+        }
+      }
+    }
+    add(defaultSource, logMessage);
+  }
+
+  /**
+   * Adds a message of the given input to the summary of its group and window. Thread-safe.
+   */
+  public void add(final Source source, final LogMessage logMessage) {
+    final Double timestamp = logMessage.getEdgeStartTimestamp();
+    if (timestamp == null) {
+      skippedCount.increment();
+      return;
+    }
+    final long window = (long) Math.floor(timestamp / windowSeconds);
+    source.latestWindow.accumulate(window);
+    if (window < closedBefore.get()) {
+      lateCount.increment();
+    }
+
+    long hash = FieldHash.update(FieldHash.SEED, window);
+    for (LogMessageField key : keys) {
+      hash = FieldHash.update(hash, key.get(logMessage));
+    }
+    hash = FieldHash.mix(hash);
+
+    final Stripe stripe = stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    synchronized (stripe) {
+      stripe.add(hash, window, logMessage);
+    }
+    aggregatedCount.increment();
+  }
+
+  /**
+   * Removes the summaries of all windows which are closed because later messages of every unfinished source arrived.
+   *
+   * @return The GELF messages of the summaries ordered by window, empty if no window was closed since the last call
+   */
+  public List<GelfMessage> closedWindows() {
+    // The slowest source decides, none left means the end of the input which is handled by flush
+    long latest = Long.MAX_VALUE;
+    for (Source source : sources) {
+      latest = Math.min(latest, source.latestWindow.get());
+    }
+    if (latest == Long.MIN_VALUE || latest == Long.MAX_VALUE) {
+      return List.of();
+    }
+    final long before = latest - 1;
+    final long previous = closedBefore.getAndAccumulate(before, Math::max);
+    // Late messages may still wait in closed windows, they are emitted with the next window
+    return before > previous ? drain(before) : List.of();
+  }
+
+  /**
+   * Removes the summaries of all windows, e.g. at the end of the input.
+   *
+   * @return The GELF messages of the summaries ordered by window
+   */
+  public List<GelfMessage> flush() {
+    return drain(Long.MAX_VALUE);
+  }
+
+  public long aggregatedCount() {
+    return aggregatedCount.sum();
+  }
+
+  /**
+   * @return The number of messages added after their window was closed
+   */
+  public long lateCount() {
+    return lateCount.sum();
+  }
+
+  /**
+   * @return The number of messages without timestamp
+   */
+  public long skippedCount() {
+    return skippedCount.sum();
+  }
+
+  private List<GelfMessage> drain(final long beforeWindow) {
+    final List<Summary> summaries = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.drain(beforeWindow, summaries);
+      }
+    }
+    summaries.sort(Comparator.comparingLong(summary -> summary.window));
+
+    final List<GelfMessage> gelfMessages = new ArrayList<>(summaries.size());
+    for (Summary summary : summaries) {
+      gelfMessages.add(toGelfMessage(summary));
+    }
+    return gelfMessages;
+  }
+
+  private GelfMessage toGelfMessage(final Summary summary) {
+    final long windowStart = summary.window * windowSeconds;
+    final Map<String, Object> additionalFields = new HashMap<>();
+    final StringBuilder keyText = new StringBuilder();
+    String host = DEFAULT_HOST;
+    for (int i = 0; i < keys.length; i++) {
+      additionalFields.put(keys[i].javaName(), summary.keyValues[i]);
+      keyText.append(i == 0 ? ": " : ", ").append(keys[i].javaName()).append('=').append(summary.keyValues[i]);
+      if (keys[i] == LogMessageField.CLIENT_IP && summary.keyValues[i] != null) {
+        host = (String) summary.keyValues[i];
+      }
+    }
+
+    additionalFields.put("rollupWindowStart", Instant.ofEpochSecond(windowStart).toString());
+    additionalFields.put("rollupWindowSeconds", windowSeconds);
+    additionalFields.put("rollupCount", summary.count);
+    additionalFields.put("clientRequestBytesSum", summary.requestBytes);
+    additionalFields.put("originResponseBytesSum", summary.responseBytes);
+    final long[] times = summary.responseTimes;
+    if (times.length > 0) {
+      Arrays.sort(times);
+      additionalFields.put("originResponseTimeMin", times[0]);
+      additionalFields.put("originResponseTimeMax", times[times.length - 1]);
+      additionalFields.put("originResponseTimeP50", percentile(times, 0.5));
+      additionalFields.put("originResponseTimeP90", percentile(times, 0.9));
+      additionalFields.put("originResponseTimeP99", percentile(times, 0.99));
+    }
+
+    final GelfMessage gelfMessage = new GelfMessage();
+    gelfMessage.setHost(host);
+    gelfMessage.setShortMessage("Rollup of " + summary.count + " requests in " + windowSeconds + " sec from "
+        + Instant.ofEpochSecond(windowStart) + keyText);
+    gelfMessage.setTimestamp((double) windowStart);
+    gelfMessage.setAdditionalFields(additionalFields);
+    return gelfMessage;
+  }
+
+  // Nearest rank of the sorted values
+  private static long percentile(final long[] sorted, final double quantile) {
+    final int rank = (int) Math.ceil(quantile * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static long longValue(final Integer value) {
+    return value == null ? 0 : value;
+  }
+
+  /**
+   * The aggregates of a removed group.
+   */
+  private static final class Summary {
+    final long window;
+    final Object[] keyValues;
+    final long count;
+    final long requestBytes;
+    final long responseBytes;
+    final long[] responseTimes;
+
+    Summary(final long window, final Object[] keyValues, final long count, final long requestBytes,
+            final long responseBytes, final long[] responseTimes) {
+      this.window = window;
+      this.keyValues = keyValues;
+      this.count = count;
+      this.requestBytes = requestBytes;
+      this.responseBytes = responseBytes;
+      this.responseTimes = responseTimes;
+    }
+  }
+
+  /**
+   * Open-addressing table of group hashes with linear probing and the aggregates of the groups in parallel arrays.
+   * Guarded by its own monitor.
+   */
+  private final class Stripe {
+    private static final int INITIAL_GROUPS = 64;
+    private static final int INITIAL_TIMES = 4;
+
+    // Slots: the hash of a group and its index, -1 for a free slot
+    private long[] slotHashes = new long[INITIAL_GROUPS * 2];
+    private int[] slotGroups = newSlots(INITIAL_GROUPS * 2);
+
+    // Groups
+    private int groupCount;
+    private long[] groupHashes = new long[INITIAL_GROUPS];
+    private long[] windows = new long[INITIAL_GROUPS];
+    private Object[][] keyValues = new Object[INITIAL_GROUPS][];
+    private long[] counts = new long[INITIAL_GROUPS];
+    private long[] requestBytes = new long[INITIAL_GROUPS];
+    private long[] responseBytes = new long[INITIAL_GROUPS];
+    private long[][] responseTimes = new long[INITIAL_GROUPS][];
+    private int[] responseTimeCounts = new int[INITIAL_GROUPS];
+
+    void add(final long hash, final long window, final LogMessage logMessage) {
+      final int group = findOrInsert(hash, window, logMessage);
+      counts[group]++;
+      requestBytes[group] += longValue(logMessage.getClientRequestBytes());
+      responseBytes[group] += longValue(logMessage.getOriginResponseBytes());
+      final Integer responseTime = logMessage.getOriginResponseTime();
+      if (responseTime != null) {
+        long[] times = responseTimes[group];
+        if (responseTimeCounts[group] == times.length) {
+          times = Arrays.copyOf(times, times.length * 2);
+          responseTimes[group] = times;
+        }
+        times[responseTimeCounts[group]++] = responseTime;
+      }
+    }
+
+    // Moves the groups of windows before the given one to the summaries and rebuilds the table with the others
+    void drain(final long beforeWindow, final List<Summary> summaries) {
+      int kept = 0;
+      for (int group = 0; group < groupCount; group++) {
+        if (windows[group] < beforeWindow) {
+          summaries.add(new Summary(windows[group], keyValues[group], counts[group], requestBytes[group],
+              responseBytes[group], Arrays.copyOf(responseTimes[group], responseTimeCounts[group])));
+        } else {
+          moveGroup(group, kept++);
+        }
+      }
+      if (kept == groupCount) {
+        return;
+      }
+      for (int group = kept; group < groupCount; group++) {
+        keyValues[group] = null;
+        responseTimes[group] = null;
+      }
+      groupCount = kept;
+
+      // Rehash the remaining groups
+      Arrays.fill(slotGroups, -1);
+      for (int group = 0; group < groupCount; group++) {
+        insertSlot(slotHashes, slotGroups, groupHashes[group], group);
+      }
+    }
+
+    private int findOrInsert(final long hash, final long window, final LogMessage logMessage) {
+      final int mask = slotGroups.length - 1;
+      int slot = (int) hash & mask;
+      while (slotGroups[slot] >= 0) {
+        final int group = slotGroups[slot];
+        if (slotHashes[slot] == hash && windows[group] == window && sameKeys(keyValues[group], logMessage)) {
+          return group;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      final int group = newGroup(window, logMessage);
+      slotHashes[slot] = hash;
+      slotGroups[slot] = group;
+      groupHashes[group] = hash;
+      // Keep the load factor at most 1/2
+      if (groupCount * 2 > slotGroups.length) {
+        resize();
+      }
+      return group;
+    }
+
+    private boolean sameKeys(final Object[] values, final LogMessage logMessage) {
+      for (int i = 0; i < keys.length; i++) {
+        final Object value = keys[i].get(logMessage);
+        if (value == null ? values[i] != null : !value.equals(values[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int newGroup(final long window, final LogMessage logMessage) {
+      if (groupCount == windows.length) {
+        final int capacity = windows.length * 2;
+        windows = Arrays.copyOf(windows, capacity);
+        keyValues = Arrays.copyOf(keyValues, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        requestBytes = Arrays.copyOf(requestBytes, capacity);
+        responseBytes = Arrays.copyOf(responseBytes, capacity);
+        responseTimes = Arrays.copyOf(responseTimes, capacity);
+        responseTimeCounts = Arrays.copyOf(responseTimeCounts, capacity);
+        groupHashes = Arrays.copyOf(groupHashes, capacity);
+      }
+      final int group = groupCount++;
+      final Object[] values = new Object[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        values[i] = keys[i].get(logMessage);
+      }
+      windows[group] = window;
+      keyValues[group] = values;
+      counts[group] = 0;
+      requestBytes[group] = 0;
+      responseBytes[group] = 0;
+      responseTimes[group] = new long[INITIAL_TIMES];
+      responseTimeCounts[group] = 0;
+      return group;
+    }
+
+    private void moveGroup(final int from, final int to) {
+      if (from == to) {
+        return;
+      }
+      windows[to] = windows[from];
+      keyValues[to] = keyValues[from];
+      counts[to] = counts[from];
+      requestBytes[to] = requestBytes[from];
+      responseBytes[to] = responseBytes[from];
+      responseTimes[to] = responseTimes[from];
+      responseTimeCounts[to] = responseTimeCounts[from];
+      groupHashes[to] = groupHashes[from];
+    }
+
+    private void resize() {
+      final int capacity = slotGroups.length * 2;
+      slotHashes = new long[capacity];
+      slotGroups = newSlots(capacity);
+      for (int group = 0; group < groupCount; group++) {
+        insertSlot(slotHashes, slotGroups, groupHashes[group], group);
+      }
+    }
+
+    private static void insertSlot(final long[] hashes, final int[] groups, final long hash, final int group) {
+      final int mask = groups.length - 1;
+      int slot = (int) hash & mask;
+      while (groups[slot] >= 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      groups[slot] = group;
+    }
+
+    private static int[] newSlots(final int capacity) {
+      final int[] slots = new int[capacity];
+      Arrays.fill(slots, -1);
+      return slots;
+    }
+  }
+}
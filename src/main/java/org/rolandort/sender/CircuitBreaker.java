@@ -0,0 +1,116 @@
+package org.rolandort.sender;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+
+/**
+ * Stops sending to an unhealthy endpoint.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens and requests are rejected without being
+ * sent. After the open duration a single probe request is let through (half-open): its success closes the breaker,
+ * its failure opens it again.
+ * <p>
+ * Rejected requests are logged once when the first request is rejected and summed up when the breaker leaves the
+ * open state, so an open breaker does not log every message.
+ */
+public class CircuitBreaker {
+  private static final Logger logger = LogManager.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean probeInFlight;
+  private long rejectedCount;  // since the breaker opened
+
+  /**
+   * @param name             Name of the protected endpoint used in log messages
+   * @param failureThreshold Number of consecutive failures which open the breaker, 0 disables the breaker
+   * @param openDuration     Time the breaker stays open before a probe request is sent
+   */
+  public CircuitBreaker(final String name, final int failureThreshold, final Duration openDuration) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+  }
+
+  /**
+   * @return A breaker which never opens
+   */
+  public static CircuitBreaker disabled() {
+    return new CircuitBreaker("disabled", 0, Duration.ZERO);
+  }
+
+  /**
+   * @return True if a request may be sent, false if the endpoint is considered unhealthy
+   */
+  public synchronized boolean allowRequest() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    if (state == State.OPEN) {
+      if (System.nanoTime() - openedAt < openNanos) {
+        return reject();
+      }
+      state = State.HALF_OPEN;
+      logger.info("Circuit breaker for {} is half-open after rejecting {} requests, sending a probe request",
+          name, rejectedCount);
+      rejectedCount = 0;
+    } else if (probeInFlight) {
+      // Only one probe at a time
+      return reject();
+    }
+    probeInFlight = true;
+    return true;
+  }
+
+  private boolean reject() {
+    if (rejectedCount++ == 0) {
+      logger.error("Circuit breaker for {} is {}, rejecting requests until it closes", name, state.name().toLowerCase());
+    }
+    return false;
+  }
+
+  public synchronized void recordSuccess() {
+    if (state != State.CLOSED) {
+      logger.info("Circuit breaker for {} is closed again", name);
+    }
+    if (rejectedCount > 0) {
+      logger.info("Circuit breaker for {} rejected {} requests", name, rejectedCount);
+    }
+    state = State.CLOSED;
+    rejectedCount = 0;
+    consecutiveFailures = 0;
+    probeInFlight = false;
+  }
+
+  public synchronized void recordFailure() {
+    if (failureThreshold <= 0) {
+      return;
+    }
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+      logger.warn("Circuit breaker for {} is open after {} consecutive failures, pausing for {} ms",
+          name, consecutiveFailures, openNanos / 1_000_000);
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+      probeInFlight = false;
+      rejectedCount = 0;
+    }
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+}
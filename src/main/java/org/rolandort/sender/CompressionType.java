@@ -0,0 +1,30 @@
+package org.rolandort.sender;
+
+public enum CompressionType {
+  NONE,
+  GZIP,
+  DEFLATE;  // zlib format, as expected by "Content-Encoding: deflate"
+
+  public static CompressionType fromString(final String value) {
+    if (value == null) {
+      return NONE; // default value
+    }
+
+    try {
+      return valueOf(value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return NONE; // default value
+    }
+  }
+
+  /**
+   * @return The value of the HTTP Content-Encoding header for this compression type
+   */
+  public String contentEncoding() {
+    return switch (this) {
+      case NONE -> "identity";
+      case GZIP -> "gzip";
+      case DEFLATE -> "deflate";
+    };
+  }
+}
@@ -0,0 +1,109 @@
+package org.rolandort.sender;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses GELF payloads with gzip or zlib (deflate).
+ * <p>
+ * Native {@link Deflater} state and the output buffer are expensive to create, so one instance is kept per thread
+ * and reused for every message compressed on that thread. An instance must not be shared between threads.
+ */
+public final class GelfCompressor {
+  private static final ThreadLocal<GelfCompressor> LOCAL = ThreadLocal.withInitial(GelfCompressor::new);
+
+  // Fixed gzip member header: magic, CM=deflate, no flags, no mtime, no extra flags, OS=unknown
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+  private static final int GZIP_TRAILER_LENGTH = 8;
+
+  private final Deflater zlibDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+  private final Deflater rawDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  private byte[] buffer = new byte[8192];
+
+  private GelfCompressor() {}
+
+  /**
+   * @return The compressor bound to the current thread
+   */
+  public static GelfCompressor forCurrentThread() {
+    return LOCAL.get();
+  }
+
+  /**
+   * Compresses the input into the internal buffer of this compressor.
+   * <p>
+   * The result is only valid until the next call on the same thread, callers which hand the data
+   * to another thread must copy it, e.g. using {@link #toByteArray(int)}.
+   *
+   * @param type   The compression format (must not be {@link CompressionType#NONE})
+   * @param input  The uncompressed data
+   * @param offset Start of the data in the input array
+   * @param length Number of bytes to compress
+   * @return The number of compressed bytes available in {@link #buffer()}
+   */
+  public int compress(final CompressionType type, final byte[] input, final int offset, final int length) {
+    return switch (type) {
+      case GZIP -> gzip(input, offset, length);
+      case DEFLATE -> deflate(zlibDeflater, input, offset, length, 0);
+      case NONE -> throw new IllegalArgumentException("No compression type given");
+    };
+  }
+
+  /**
+   * @return The internal buffer holding the result of the last {@link #compress} call
+   */
+  public byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * @param length The length returned by the last {@link #compress} call
+   * @return A copy of the compressed data
+   */
+  public byte[] toByteArray(final int length) {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  private int gzip(final byte[] input, final int offset, final int length) {
+    ensureCapacity(GZIP_HEADER.length);
+    System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+    int pos = deflate(rawDeflater, input, offset, length, GZIP_HEADER.length);
+
+    crc.reset();
+    crc.update(input, offset, length);
+    ensureCapacity(pos + GZIP_TRAILER_LENGTH);
+    pos = writeIntLe(pos, (int) crc.getValue());
+    return writeIntLe(pos, length);
+  }
+
+  private int deflate(final Deflater deflater, final byte[] input, final int offset, final int length, final int start) {
+    deflater.reset();
+    deflater.setInput(input, offset, length);
+    deflater.finish();
+
+    int pos = start;
+    while (!deflater.finished()) {
+      if (pos == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      pos += deflater.deflate(buffer, pos, buffer.length - pos);
+    }
+    return pos;
+  }
+
+  private int writeIntLe(int pos, final int value) {
+    buffer[pos++] = (byte) value;
+    buffer[pos++] = (byte) (value >>> 8);
+    buffer[pos++] = (byte) (value >>> 16);
+    buffer[pos++] = (byte) (value >>> 24);
+    return pos;
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+  }
+}
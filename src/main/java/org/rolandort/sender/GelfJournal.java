@@ -0,0 +1,328 @@
+package org.rolandort.sender;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed FIFO of serialized GELF messages, stored in append-only segment files.
+ * <p>
+ * Every record is written as {@code [length][crc32][payload]}. A new segment is started when the current one
+ * reaches the segment size. Records are read back in order and acknowledged after they were sent; fully
+ * acknowledged segments are deleted. The read position is stored in a small position file, so the journal
+ * survives restarts. A record with an invalid length or checksum (e.g. torn by a crash) ends its segment.
+ * <p>
+ * Appends are not forced to disk individually: {@link #force()} makes the messages appended so far durable, segments
+ * are also forced when they are completed and on close.
+ */
+public class GelfJournal implements Closeable {
+  private static final Logger logger = LogManager.getLogger(GelfJournal.class);
+
+  public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".journal";
+  private static final String POSITION_FILE = "position";
+
+  private final Path directory;
+  private final long segmentSize;
+  private final long maxSize;
+  private final CRC32 crc = new CRC32();
+  private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+  private final FileChannel positionChannel;
+  private final ByteBuffer position = ByteBuffer.allocate(16);
+
+  // Segment ids in order, the last one is written
+  private final Deque<Long> segments = new ArrayDeque<>();
+  private FileChannel writeChannel;
+  private long writeSegment;
+  private long writeOffset;
+  private long size;
+
+  // Read cursor in the oldest segment and the ends of the records returned by the last read
+  private FileChannel readChannel;
+  private long readSegment = -1;
+  private long readOffset;
+  private final List<Long> readEnds = new ArrayList<>();
+
+  /**
+   * Opens a journal and recovers the segments and read position of a previous run.
+   *
+   * @param directory   Directory of the segment files, created if missing
+   * @param segmentSize Size in bytes after which a new segment is started
+   * @param maxSize     Maximum total size in bytes of all segments, further appends are rejected
+   * @throws IOException If the directory cannot be read or written
+   */
+  public GelfJournal(final Path directory, final long segmentSize, final long maxSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSize = maxSize;
+    Files.createDirectories(directory);
+
+    try (Stream<Path> files = Files.list(directory)) {
+      files.map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .forEach(segments::addLast);
+    }
+    for (final long segment : segments) {
+      size += Files.size(segmentPath(segment));
+    }
+
+    positionChannel = FileChannel.open(directory.resolve(POSITION_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (positionChannel.read(position, 0) == position.capacity() && segments.contains(position.getLong(0))) {
+      readSegment = position.getLong(0);
+      readOffset = position.getLong(8);
+      // Segments before the read position were acknowledged, but not yet deleted
+      while (segments.peekFirst() < readSegment) {
+        deleteSegment(segments.removeFirst());
+      }
+    }
+
+    // Always append to a new segment, the last one may end with a torn record
+    writeSegment = segments.isEmpty() ? 0 : segments.peekLast() + 1;
+    openWriteSegment();
+    if (size > 0) {
+      logger.info("Recovered GELF journal {} with {} segments ({} bytes)", directory, segments.size() - 1, size);
+    }
+  }
+
+  /**
+   * Appends a serialized message to the end of the journal.
+   *
+   * @param payload The serialized GELF message
+   * @return True if the message was appended, false if the journal is full
+   * @throws IOException If the message cannot be written
+   */
+  public synchronized boolean append(final byte[] payload) throws IOException {
+    final int recordSize = RECORD_HEADER_SIZE + payload.length;
+    if (size + recordSize > maxSize) {
+      return false;
+    }
+    if (writeOffset > 0 && writeOffset + recordSize > segmentSize) {
+      writeChannel.force(false);
+      writeChannel.close();
+      writeSegment++;
+      openWriteSegment();
+    }
+
+    crc.reset();
+    crc.update(payload);
+    header.clear();
+    header.putInt(payload.length).putInt((int) crc.getValue()).flip();
+    final ByteBuffer[] record = {header, ByteBuffer.wrap(payload)};
+    while (record[1].hasRemaining()) {
+      writeChannel.write(record);
+    }
+    writeOffset += recordSize;
+    size += recordSize;
+    return true;
+  }
+
+  /**
+   * Forces the appended messages to disk, so they survive a crash of the process or the machine.
+   *
+   * @throws IOException If the segment cannot be forced
+   */
+  public synchronized void force() throws IOException {
+    writeChannel.force(false);
+  }
+
+  /**
+   * @return True if all appended messages were acknowledged
+   */
+  public synchronized boolean isEmpty() {
+    if (segments.size() > 1) {
+      return false;
+    }
+    return readSegment == writeSegment ? readOffset >= writeOffset : writeOffset == 0;
+  }
+
+  /**
+   * @return The total size of all segments in bytes, including acknowledged records of the oldest segment
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Reads the next messages after the acknowledged ones without removing them from the journal.
+   * Reading again without acknowledging returns the same messages.
+   *
+   * @param maxCount Maximum number of messages to read
+   * @return The serialized messages in append order, empty if the journal is empty
+   * @throws IOException If a segment cannot be read
+   */
+  public synchronized List<byte[]> read(final int maxCount) throws IOException {
+    readEnds.clear();
+    final List<byte[]> payloads = new ArrayList<>();
+    if (readSegment < 0) {
+      readSegment = segments.peekFirst();
+      readOffset = 0;
+    }
+
+    long offset = readOffset;
+    while (payloads.size() < maxCount) {
+      final long end = readSegment == writeSegment ? writeOffset : segmentEnd();
+      final byte[] payload = offset < end ? readRecord(offset, end) : null;
+      if (payload == null) {
+        // End of a completed segment: continue with the next one once everything was acknowledged
+        if (readSegment == writeSegment || !payloads.isEmpty()) {
+          break;
+        }
+        nextReadSegment();
+        offset = 0;
+        continue;
+      }
+      payloads.add(payload);
+      offset += RECORD_HEADER_SIZE + payload.length;
+      readEnds.add(offset);
+    }
+    return payloads;
+  }
+
+  /**
+   * Removes the first messages returned by the last {@link #read} from the journal.
+   *
+   * @param count Number of messages which were sent
+   * @throws IOException If the read position cannot be stored
+   */
+  public synchronized void acknowledge(final int count) throws IOException {
+    if (count <= 0) {
+      return;
+    }
+    readOffset = readEnds.get(count - 1);
+    readEnds.clear();
+
+    if (readSegment == writeSegment && readOffset >= writeOffset) {
+      // Everything was sent: start over with an empty segment
+      writeChannel.close();
+      closeReadChannel();
+      deleteSegment(segments.removeLast());
+      writeSegment++;
+      openWriteSegment();
+      readSegment = writeSegment;
+      readOffset = 0;
+    }
+    storePosition();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeReadChannel();
+    writeChannel.force(false);
+    writeChannel.close();
+    if (writeOffset == 0) {
+      deleteSegment(segments.removeLast());
+    }
+    positionChannel.force(false);
+    positionChannel.close();
+  }
+
+  // Returns the payload of the record at the offset, or null at the end of the segment or for a torn record
+  private byte[] readRecord(final long offset, final long end) throws IOException {
+    final FileChannel channel = readChannel();
+    header.clear();
+    if (offset + RECORD_HEADER_SIZE > end || readFully(channel, header, offset) < RECORD_HEADER_SIZE) {
+      return null;
+    }
+    final int length = header.getInt(0);
+    final int checksum = header.getInt(4);
+    if (length < 0 || length > MAX_RECORD_SIZE || offset + RECORD_HEADER_SIZE + length > end) {
+      logger.warn("Invalid record in GELF journal segment {} at offset {}, skipping the rest of the segment", readSegment, offset);
+      return null;
+    }
+
+    final ByteBuffer payload = ByteBuffer.allocate(length);
+    if (readFully(channel, payload, offset + RECORD_HEADER_SIZE) < length) {
+      return null;
+    }
+    crc.reset();
+    crc.update(payload.array());
+    if ((int) crc.getValue() != checksum) {
+      logger.warn("Checksum mismatch in GELF journal segment {} at offset {}, skipping the rest of the segment", readSegment, offset);
+      return null;
+    }
+    return payload.array();
+  }
+
+  private static int readFully(final FileChannel channel, final ByteBuffer buffer, final long offset) throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, offset + total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    buffer.flip();
+    return total;
+  }
+
+  private long segmentEnd() throws IOException {
+    return readChannel().size();
+  }
+
+  private FileChannel readChannel() throws IOException {
+    if (readChannel == null) {
+      readChannel = FileChannel.open(segmentPath(readSegment), StandardOpenOption.READ);
+    }
+    return readChannel;
+  }
+
+  // Deletes the fully acknowledged read segment and continues with the next one
+  private void nextReadSegment() throws IOException {
+    closeReadChannel();
+    deleteSegment(segments.removeFirst());
+    readSegment = segments.peekFirst();
+    readOffset = 0;
+    storePosition();
+  }
+
+  private void openWriteSegment() throws IOException {
+    writeChannel = FileChannel.open(segmentPath(writeSegment),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    writeOffset = 0;
+    segments.addLast(writeSegment);
+  }
+
+  private void deleteSegment(final long segment) throws IOException {
+    final Path path = segmentPath(segment);
+    size -= Files.size(path);
+    Files.delete(path);
+    logger.debug("Deleted GELF journal segment {}", path);
+  }
+
+  private void storePosition() throws IOException {
+    position.clear();
+    position.putLong(readSegment).putLong(readOffset).flip();
+    positionChannel.write(position, 0);
+  }
+
+  private void closeReadChannel() throws IOException {
+    if (readChannel != null) {
+      readChannel.close();
+      readChannel = null;
+    }
+  }
+
+  private Path segmentPath(final long segment) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+  }
+}
@@ -3,10 +3,45 @@ package org.rolandort.sender;
 import org.rolandort.model.GelfMessage;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface GelfSender {
 
   boolean sendMessage(GelfMessage gelfMessage);
 
   int sendMessages(List<GelfMessage> gelfMessages);
+
+  /**
+   * Sends a list of GELF messages and reports every message which was not sent, e.g. to retry it later.
+   *
+   * @param gelfMessages The list of GELF messages to send
+   * @param failed       Receives the messages which were not sent
+   * @return The number of messages that were sent successfully
+   */
+  default int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    int sentCount = 0;
+    for (GelfMessage gelfMessage : gelfMessages) {
+      if (sendMessage(gelfMessage)) {
+        sentCount++;
+      } else {
+        failed.accept(gelfMessage);
+      }
+    }
+    return sentCount;
+  }
+
+  /**
+   * Sends a list of GELF messages and reports every message which was not sent, separating failures which may be
+   * overcome by sending the message again later, e.g. a network error, from messages the server rejected.
+   * The default implementation reports every failure as retryable.
+   *
+   * @param gelfMessages The list of GELF messages to send
+   * @param failed       Receives the messages which were not sent, but may be sent later
+   * @param rejected     Receives the messages which would be rejected again
+   * @return The number of messages that were sent successfully
+   */
+  default int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed,
+                           final Consumer<GelfMessage> rejected) {
+    return sendMessages(gelfMessages, failed);
+  }
 }
@@ -4,84 +4,283 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.MessageTrace;
+import org.rolandort.metrics.PipelineMetrics;
 import org.rolandort.model.GelfMessage;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Consumer;
 
 @Singleton
 public class HttpGelfSender implements GelfSender {
   private static final Logger logger = LogManager.getLogger(HttpGelfSender.class);
+  private static final MessageTrace trace = MessageTrace.forStage("send.http");
+  private static final long PERMIT_POLL_MILLIS = 10;
 
   private final String graylogUrl;
   private final int timeout;
+  private final int concurrency;
+  private final CompressionType compression;
+  private final int compressionThreshold;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final Semaphore inFlight;
   private final HttpClient client;
 
+  // Result of sending a single message
+  private enum Outcome {
+    SENT,
+    FAILED,   // may succeed later, e.g. after a network error or while the server is overloaded
+    REJECTED  // the server refused the message, e.g. 400 Bad Request or 413 Payload Too Large
+  }
+
   @Inject
   public HttpGelfSender(String graylogUrl, int timeout) {
+    this(graylogUrl, timeout, 1, CompressionType.NONE, 0);
+  }
+
+  /**
+   * @param graylogUrl           URL of the Graylog GELF HTTP input
+   * @param timeout              Timeout of a single HTTP request in seconds
+   * @param concurrency          Maximum number of HTTP requests in flight at the same time (1 = send sequentially)
+   * @param compression          Content encoding of the request bodies
+   * @param compressionThreshold Minimum body size in bytes to compress, smaller bodies are sent uncompressed
+   */
+  public HttpGelfSender(String graylogUrl, int timeout, int concurrency, CompressionType compression, int compressionThreshold) {
+    this(graylogUrl, timeout, concurrency, compression, compressionThreshold, RetryPolicy.none(), CircuitBreaker.disabled());
+  }
+
+  /**
+   * @param graylogUrl           URL of the Graylog GELF HTTP input
+   * @param timeout              Timeout of a single HTTP request in seconds
+   * @param concurrency          Maximum number of HTTP requests in flight at the same time (1 = send sequentially)
+   * @param compression          Content encoding of the request bodies
+   * @param compressionThreshold Minimum body size in bytes to compress, smaller bodies are sent uncompressed
+   * @param retryPolicy          Retries of requests failing with an exception or a retryable status code
+   * @param circuitBreaker       Rejects requests while the Graylog server is unhealthy
+   */
+  public HttpGelfSender(String graylogUrl, int timeout, int concurrency, CompressionType compression, int compressionThreshold,
+                        RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+    }
     this.graylogUrl = graylogUrl;
     this.timeout = timeout;
+    this.concurrency = concurrency;
+    this.compression = compression;
+    this.compressionThreshold = compressionThreshold;
+    this.retryPolicy = retryPolicy;
+    this.circuitBreaker = circuitBreaker;
+    this.inFlight = new Semaphore(concurrency);
     this.client = HttpClient.newHttpClient();
   }
 
   /**
    * Sends a GELF message to a Graylog server over HTTP.
    * <p>
-   * The message is sent as a POST request to the Graylog server.
-   * The method returns true if the message was successfully sent, false otherwise.
+   * The message is sent as a POST request to the Graylog server, failed requests are retried according to the
+   * retry policy. The method returns true if the message was successfully sent, false otherwise.
    *
    * @param gelfMessage The GELF message to send
    * @return True if the message was successfully sent, false otherwise
    */
   @Override
   public boolean sendMessage(final GelfMessage gelfMessage) {
-    logger.info("Sending GELF message to {} (timeout: {} sec): '{}'", graylogUrl, timeout, gelfMessage.toString());
-
-    // HTTP request using internal HttpClient of Java >=17
-    final HttpRequest request = HttpRequest.newBuilder()
-        .uri(URI.create(this.graylogUrl))
-        .header("Content-Type", "application/json")
-        .POST(HttpRequest.BodyPublishers.ofString(gelfMessage.toString()))
-        .timeout(java.time.Duration.ofSeconds(timeout))
-        .build();
-
-    try {
-      // Send the HTTP request
-      final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-      if (response.statusCode() >= 200 && response.statusCode() < 400) {
-        logger.info("Successfully sent GELF message to {} ({}): '{}'", graylogUrl, response.statusCode(), gelfMessage);
-        return true;
-      } else {
-        logger.error("Error sending GELF message to {} ({}): '{}'", graylogUrl, response.statusCode(), gelfMessage);
-        return false;
-      }
-    } catch (IOException | InterruptedException e) {
-      logger.error("Exception ({}) sending GELF message to {}: '{}'", e.getCause(), graylogUrl, gelfMessage, e);
-      return false;
-    }
+    return send(gelfMessage, buildRequest(gelfMessage), 1, false).join() == Outcome.SENT;
+  }
 
+  /**
+   * Sends a GELF message asynchronously without blocking the calling thread.
+   * <p>
+   * Retries are scheduled on a delayed executor, so no thread is parked during the backoff.
+   * The returned future never completes exceptionally: failures are logged and reported as false.
+   *
+   * @param gelfMessage The GELF message to send
+   * @return A future completed with true if the message was successfully sent, false otherwise
+   */
+  public CompletableFuture<Boolean> sendMessageAsync(final GelfMessage gelfMessage) {
+    return send(gelfMessage, buildRequest(gelfMessage), 1, false).thenApply(outcome -> outcome == Outcome.SENT);
   }
 
   /**
    * Send a list of GELF messages to the Graylog server over HTTP.
+   * <p>
+   * With a concurrency of 1 the messages are sent one after another. Otherwise up to
+   * {@code concurrency} requests are kept in flight and the method returns once all of them completed.
+   * A message waiting for its retry does not count against the concurrency.
    *
    * @param gelfMessages The list of GELF messages to send
    * @return The number of messages that were sent successfully
    */
   @Override
   public int sendMessages(final List<GelfMessage> gelfMessages) {
-    final AtomicInteger sentCount = new AtomicInteger(0);
+    return sendMessages(gelfMessages, gelfMessage -> { });
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    return sendMessages(gelfMessages, failed, failed);
+  }
+
+  /**
+   * Send a list of GELF messages, messages failing with a status code which is not retryable are reported as rejected.
+   */
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed,
+                          final Consumer<GelfMessage> rejected) {
+    final List<CompletableFuture<Outcome>> results = new ArrayList<>(gelfMessages.size());
+    if (concurrency == 1) {
+      for (GelfMessage gelfMessage : gelfMessages) {
+        results.add(CompletableFuture.completedFuture(send(gelfMessage, buildRequest(gelfMessage), 1, false).join()));
+      }
+      return collect(gelfMessages, results, failed, rejected);
+    }
 
     for (GelfMessage gelfMessage : gelfMessages) {
-      if (this.sendMessage(gelfMessage)) {
-        sentCount.incrementAndGet();
+      // Blocks while the maximum number of requests is in flight
+      try {
+        inFlight.acquire();
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted while waiting for in-flight requests, {} messages not sent", gelfMessages.size() - results.size());
+        Thread.currentThread().interrupt();
+        break;
+      }
+      results.add(send(gelfMessage, buildRequest(gelfMessage), 1, true));
+    }
+
+    // Wait for the outstanding requests of this batch
+    CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+    return collect(gelfMessages, results, failed, rejected);
+  }
+
+  private static int collect(final List<GelfMessage> gelfMessages, final List<CompletableFuture<Outcome>> results,
+                             final Consumer<GelfMessage> failed, final Consumer<GelfMessage> rejected) {
+    int sentCount = 0;
+    for (int i = 0; i < gelfMessages.size(); i++) {
+      // Messages after an interruption were not sent at all
+      final Outcome outcome = i < results.size() ? results.get(i).join() : Outcome.FAILED;
+      switch (outcome) {
+        case SENT -> sentCount++;
+        case FAILED -> failed.accept(gelfMessages.get(i));
+        case REJECTED -> rejected.accept(gelfMessages.get(i));
+      }
+    }
+    return sentCount;
+  }
+
+  private HttpRequest buildRequest(final GelfMessage gelfMessage) {
+    // HTTP request using internal HttpClient of Java >=17
+    final HttpRequest.Builder builder = HttpRequest.newBuilder()
+        .uri(URI.create(this.graylogUrl))
+        .header("Content-Type", "application/json")
+        .timeout(java.time.Duration.ofSeconds(timeout));
+
+    final byte[] body = gelfMessage.toJsonBytes();
+    if (compression == CompressionType.NONE || body.length < compressionThreshold) {
+      return builder.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    // The compressor is reused by this thread, so the body is copied before it is handed to the client
+    final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+    final int length = compressor.compress(compression, body, 0, body.length);
+    return builder
+        .header("Content-Encoding", compression.contentEncoding())
+        .POST(HttpRequest.BodyPublishers.ofByteArray(compressor.toByteArray(length)))
+        .build();
+  }
+
+  // Sends a request and schedules a retry if it failed temporarily. With a permit of inFlight the permit is released
+  // when the request completed, so it is not held during the backoff, and acquired again for the retry.
+  private CompletableFuture<Outcome> send(final GelfMessage gelfMessage, final HttpRequest request, final int attempt,
+                                          final boolean permit) {
+    final PipelineMetrics metrics = PipelineMetrics.global();
+    if (!circuitBreaker.allowRequest()) {
+      // The breaker logs once per open period, not per message
+      metrics.circuitBreakerRejections.increment();
+      releasePermit(permit);
+      return CompletableFuture.completedFuture(Outcome.FAILED);
+    }
+
+    final long start = System.nanoTime();
+    metrics.inFlightRequests.increment();
+    return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .handle((response, e) -> {
+          metrics.inFlightRequests.decrement();
+          metrics.httpRequestNanos.record(System.nanoTime() - start);
+          releasePermit(permit);
+          if (response != null) {
+            metrics.recordHttpResponse(response.statusCode());
+          }
+          final long delayMillis;
+          if (e != null) {
+            circuitBreaker.recordFailure();
+            if (!retryPolicy.canRetry(attempt)) {
+              logger.error("Exception ({}) sending GELF message to {}: '{}'", e.getCause(), graylogUrl, gelfMessage, e);
+              return CompletableFuture.completedFuture(Outcome.FAILED);
+            }
+            delayMillis = retryPolicy.backoffMillis(attempt);
+            logger.warn("Exception ({}) sending GELF message to {}, retrying in {} ms (attempt {} of {})",
+                e.getCause(), graylogUrl, delayMillis, attempt, retryPolicy.maxAttempts());
+          } else {
+            final int statusCode = response.statusCode();
+            if (!RetryPolicy.isRetryable(statusCode) || !retryPolicy.canRetry(attempt)) {
+              return CompletableFuture.completedFuture(handleResponse(gelfMessage, statusCode));
+            }
+            circuitBreaker.recordFailure();
+            delayMillis = retryPolicy.backoffMillis(attempt, response.headers().firstValue("Retry-After"));
+            logger.warn("Error sending GELF message to {} ({}), retrying in {} ms (attempt {} of {})",
+                graylogUrl, statusCode, delayMillis, attempt, retryPolicy.maxAttempts());
+          }
+
+          final Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+          return CompletableFuture.runAsync(() -> { }, delayed)
+              .thenCompose(ignored -> permit ? acquirePermit() : CompletableFuture.completedFuture(null))
+              .thenCompose(ignored -> send(gelfMessage, request, attempt + 1, permit));
+        })
+        .thenCompose(Function.identity());
+  }
+
+  // Waits for a permit without blocking a thread, polling while all permits are taken
+  private CompletableFuture<Void> acquirePermit() {
+    if (inFlight.tryAcquire()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final Executor delayed = CompletableFuture.delayedExecutor(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+    return CompletableFuture.runAsync(() -> { }, delayed).thenCompose(ignored -> acquirePermit());
+  }
+
+  private void releasePermit(final boolean permit) {
+    if (permit) {
+      inFlight.release();
+    }
+  }
+
+  private Outcome handleResponse(final GelfMessage gelfMessage, final int statusCode) {
+    if (statusCode >= 200 && statusCode < 400) {
+      circuitBreaker.recordSuccess();
+      if (trace.sample()) {
+        trace.logger().info("Sent GELF message to {} ({}): '{}'", graylogUrl, statusCode, gelfMessage);
+      }
+      return Outcome.SENT;
+    } else {
+      logger.error("Error sending GELF message to {} ({}): '{}'", graylogUrl, statusCode, gelfMessage);
+      // Only overload and gateway errors count as unhealthy, otherwise the server rejected this message
+      if (RetryPolicy.isRetryable(statusCode)) {
+        circuitBreaker.recordFailure();
+        return Outcome.FAILED;
       }
+      circuitBreaker.recordSuccess();
+      return Outcome.REJECTED;
     }
-    return sentCount.get();
   }
 }
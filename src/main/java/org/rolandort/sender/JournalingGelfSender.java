@@ -0,0 +1,246 @@
+package org.rolandort.sender;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sender decorator which spills messages to a {@link GelfJournal} instead of losing them while Graylog is
+ * unavailable.
+ * <p>
+ * Messages the wrapped sender fails to send temporarily, e.g. because of a network error or an overloaded server, are
+ * appended to the journal and count as sent once the journal was forced to disk. Messages the server rejected, e.g.
+ * with 400 Bad Request, would be rejected again and are reported as failed instead. While the journal holds messages,
+ * new messages are appended as well, so they are neither lost nor sent before older ones and the caller is not slowed
+ * down by a failing server.
+ * <p>
+ * A background thread replays the journal in order with an exponential backoff and acknowledges the messages once
+ * they were sent. Messages rejected during the replay are dropped, so a single bad message cannot block the journal.
+ * Messages sent after a temporary failure within a replayed batch are remembered and not sent again by the next
+ * attempt; after a crash they may be sent twice. Only one batch of the journal is held in memory.
+ */
+public class JournalingGelfSender implements GelfSender, Closeable {
+  private static final Logger logger = LogManager.getLogger(JournalingGelfSender.class);
+
+  private static final int REPLAY_BATCH_SIZE = 100;
+  private static final long MIN_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 30_000;
+  private static final long DRAIN_POLL_MILLIS = 100;
+  private static final String JOURNAL_BYTES_GAUGE = "journal_bytes";
+
+  private final GelfSender delegate;
+  private final GelfJournal journal;
+  private final Duration drainTimeout;
+  private final Thread replayThread;
+  private final Object wakeUp = new Object();
+  private volatile boolean closed;
+
+  // Messages after the acknowledged ones which were already sent by a partially failed replay, by their index in the
+  // journal; used by the replay thread only
+  private BitSet replayed = new BitSet();
+
+  /**
+   * @param delegate     The sender used for sending and replaying messages
+   * @param journal      The journal of unsent messages
+   * @param drainTimeout Time {@link #close()} waits for the journal to be replayed
+   */
+  public JournalingGelfSender(final GelfSender delegate, final GelfJournal journal, final Duration drainTimeout) {
+    this.delegate = delegate;
+    this.journal = journal;
+    this.drainTimeout = drainTimeout;
+    PipelineMetrics.global().registerGauge(JOURNAL_BYTES_GAUGE, journal::size);
+    this.replayThread = new Thread(this::replay, "gelf-journal-replay");
+    this.replayThread.setDaemon(true);
+    this.replayThread.start();
+  }
+
+  /**
+   * Sends a GELF message or appends it to the journal.
+   *
+   * @param gelfMessage The GELF message to send
+   * @return True if the message was sent or journaled, false if it was lost
+   */
+  @Override
+  public boolean sendMessage(final GelfMessage gelfMessage) {
+    return sendMessages(List.of(gelfMessage)) == 1;
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages) {
+    return sendMessages(gelfMessages, gelfMessage -> { });
+  }
+
+  /**
+   * Sends a list of GELF messages, the messages which could not be sent temporarily are appended to the journal.
+   *
+   * @param gelfMessages The list of GELF messages to send
+   * @param failed       Receives the messages which were neither sent nor journaled
+   * @return The number of messages that were sent or journaled
+   */
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    return sendMessages(gelfMessages, failed, failed);
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed,
+                          final Consumer<GelfMessage> rejected) {
+    if (!journal.isEmpty()) {
+      // Keep the order while older messages are waiting to be replayed
+      return spill(gelfMessages, failed);
+    }
+
+    final List<GelfMessage> unsent = new ArrayList<>();
+    final int sentCount = delegate.sendMessages(gelfMessages, unsent::add, rejected);
+    if (unsent.isEmpty()) {
+      return sentCount;
+    }
+    logger.warn("Journaling {} of {} GELF messages which could not be sent", unsent.size(), gelfMessages.size());
+    return sentCount + spill(unsent, failed);
+  }
+
+  /**
+   * Waits until the journal was replayed or the drain timeout elapsed and stops the replay.
+   * Messages remaining in the journal are replayed by the next run.
+   */
+  @Override
+  public void close() throws IOException {
+    final long deadline = System.nanoTime() + drainTimeout.toNanos();
+    try {
+      while (!journal.isEmpty() && System.nanoTime() < deadline) {
+        Thread.sleep(DRAIN_POLL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    closed = true;
+    replayThread.interrupt();
+    try {
+      replayThread.join(drainTimeout.toMillis() + MAX_BACKOFF_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!journal.isEmpty()) {
+      logger.warn("Stopped with {} bytes of unsent GELF messages in the journal, they are sent by the next run", journal.size());
+    }
+    PipelineMetrics.global().unregisterGauge(JOURNAL_BYTES_GAUGE);
+    journal.close();
+  }
+
+  // Appends the messages to the journal and forces them to disk before they count as sent
+  private int spill(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    final List<GelfMessage> journaled = new ArrayList<>(gelfMessages.size());
+    for (GelfMessage gelfMessage : gelfMessages) {
+      try {
+        if (journal.append(gelfMessage.toJsonBytes())) {
+          journaled.add(gelfMessage);
+        } else {
+          logger.error("GELF journal is full, message lost: '{}'", gelfMessage);
+          failed.accept(gelfMessage);
+        }
+      } catch (IOException e) {
+        logger.error("Error writing GELF message to the journal: '{}'", gelfMessage, e);
+        failed.accept(gelfMessage);
+      }
+    }
+    try {
+      if (!journaled.isEmpty()) {
+        journal.force();
+      }
+    } catch (IOException e) {
+      logger.error("Error forcing {} GELF messages to the journal, they may be lost on a crash", journaled.size(), e);
+      journaled.forEach(failed);
+      journaled.clear();
+    }
+    synchronized (wakeUp) {
+      wakeUp.notifyAll();
+    }
+    return journaled.size();
+  }
+
+  // Replays the journal in order until closed
+  private void replay() {
+    long backoffMillis = MIN_BACKOFF_MILLIS;
+    while (!closed) {
+      try {
+        final List<byte[]> payloads = journal.read(REPLAY_BATCH_SIZE);
+        if (payloads.isEmpty()) {
+          synchronized (wakeUp) {
+            wakeUp.wait(journal.isEmpty() ? MAX_BACKOFF_MILLIS : MIN_BACKOFF_MILLIS);
+          }
+          continue;
+        }
+
+        final int sentCount = replayBatch(payloads);
+        if (sentCount < payloads.size()) {
+          logger.warn("Replaying GELF journal failed, retrying in {} ms", backoffMillis);
+          Thread.sleep(backoffMillis);
+          backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        } else {
+          logger.debug("Replayed {} GELF messages from the journal", sentCount);
+          backoffMillis = MIN_BACKOFF_MILLIS;
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (IOException | RuntimeException e) {
+        logger.error("Error replaying GELF journal", e);
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+      }
+    }
+  }
+
+  // Sends the messages not yet replayed and acknowledges them up to the first temporary failure.
+  // Returns the number of acknowledged messages.
+  private int replayBatch(final List<byte[]> payloads) throws IOException {
+    final List<GelfMessage> batch = new ArrayList<>(payloads.size());
+    final List<GelfMessage> unsent = new ArrayList<>(payloads.size());
+    for (int i = 0; i < payloads.size(); i++) {
+      final GelfMessage gelfMessage = replayed.get(i) ? null : GelfMessage.fromJsonBytes(payloads.get(i));
+      batch.add(gelfMessage);
+      if (gelfMessage != null) {
+        unsent.add(gelfMessage);
+      }
+    }
+
+    final Set<GelfMessage> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Set<GelfMessage> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+    delegate.sendMessages(unsent, failed::add, rejected::add);
+    if (!rejected.isEmpty()) {
+      logger.error("Dropping {} GELF messages from the journal which were rejected by the server", rejected.size());
+    }
+
+    // Acknowledge up to the first temporary failure and remember the messages done after it
+    int acknowledged = 0;
+    boolean blocked = false;
+    for (int i = 0; i < batch.size(); i++) {
+      final GelfMessage gelfMessage = batch.get(i);
+      if (gelfMessage != null && failed.contains(gelfMessage)) {
+        blocked = true;
+      } else if (blocked) {
+        replayed.set(i);
+      } else {
+        acknowledged++;
+      }
+    }
+    journal.acknowledge(acknowledged);
+    replayed = replayed.get(acknowledged, Math.max(acknowledged, replayed.length()));
+    return acknowledged;
+  }
+}
@@ -0,0 +1,70 @@
+package org.rolandort.sender;
+
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records the number of sent and failed messages, the size of the serialized messages and the send latency of another
+ * sender in the {@link PipelineMetrics}.
+ */
+public class MeteredGelfSender implements GelfSender {
+
+  private final GelfSender delegate;
+  private final PipelineMetrics metrics;
+
+  public MeteredGelfSender(final GelfSender delegate, final PipelineMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public boolean sendMessage(final GelfMessage gelfMessage) {
+    recordSize(gelfMessage);
+    final long start = System.nanoTime();
+    final boolean sent = delegate.sendMessage(gelfMessage);
+    record(1, sent ? 1 : 0, start);
+    return sent;
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages) {
+    gelfMessages.forEach(this::recordSize);
+    final long start = System.nanoTime();
+    final int sentCount = delegate.sendMessages(gelfMessages);
+    record(gelfMessages.size(), sentCount, start);
+    return sentCount;
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    gelfMessages.forEach(this::recordSize);
+    final long start = System.nanoTime();
+    final int sentCount = delegate.sendMessages(gelfMessages, failed);
+    record(gelfMessages.size(), sentCount, start);
+    return sentCount;
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed,
+                          final Consumer<GelfMessage> rejected) {
+    gelfMessages.forEach(this::recordSize);
+    final long start = System.nanoTime();
+    final int sentCount = delegate.sendMessages(gelfMessages, failed, rejected);
+    record(gelfMessages.size(), sentCount, start);
+    return sentCount;
+  }
+
+  // Serializes the message, the senders use the cached JSON
+  private void recordSize(final GelfMessage gelfMessage) {
+    metrics.serializedBytes.record(gelfMessage.toJsonBytes().length);
+  }
+
+  private void record(final int messageCount, final int sentCount, final long start) {
+    metrics.sendNanos.record(System.nanoTime() - start);
+    metrics.messagesSent.add(sentCount);
+    metrics.sendFailures.add(messageCount - sentCount);
+  }
+}
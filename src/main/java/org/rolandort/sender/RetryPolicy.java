@@ -0,0 +1,107 @@
+package org.rolandort.sender;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed send is retried: up to {@code maxAttempts} attempts with an exponential backoff
+ * and jitter, honoring the {@code Retry-After} header of HTTP responses.
+ */
+public class RetryPolicy {
+
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+
+  /**
+   * @param maxAttempts    Maximum number of attempts including the first one (1 = no retries)
+   * @param initialBackoff Delay before the first retry, doubled for every further retry
+   * @param maxBackoff     Upper bound of a single delay, also for delays requested by {@code Retry-After}
+   */
+  public RetryPolicy(final int maxAttempts, final Duration initialBackoff, final Duration maxBackoff) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Max attempts must be at least 1: " + maxAttempts);
+    }
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMillis = initialBackoff.toMillis();
+    this.maxBackoffMillis = maxBackoff.toMillis();
+  }
+
+  /**
+   * @return A policy which never retries
+   */
+  public static RetryPolicy none() {
+    return new RetryPolicy(1, Duration.ZERO, Duration.ZERO);
+  }
+
+  public int maxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @param attempt The number of the failed attempt, starting at 1
+   * @return True if another attempt is allowed
+   */
+  public boolean canRetry(final int attempt) {
+    return attempt < maxAttempts;
+  }
+
+  /**
+   * Only overload and gateway errors are retried, other errors would fail again.
+   *
+   * @param statusCode HTTP status code of a failed request
+   * @return True if the request may succeed when it is sent again
+   */
+  public static boolean isRetryable(final int statusCode) {
+    return statusCode == 408 || statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+  }
+
+  /**
+   * Computes the delay before the next attempt: the exponential backoff with "equal jitter", i.e. a random delay
+   * between half and the full backoff, so that many senders do not retry in lockstep.
+   *
+   * @param attempt The number of the failed attempt, starting at 1
+   * @return The delay in milliseconds
+   */
+  public long backoffMillis(final int attempt) {
+    final long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+    if (backoff <= 1) {
+      return backoff;
+    }
+    final long half = backoff / 2;
+    return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+  }
+
+  /**
+   * Computes the delay before the next attempt, waiting at least as long as the server requested.
+   *
+   * @param attempt    The number of the failed attempt, starting at 1
+   * @param retryAfter Value of the {@code Retry-After} response header, in seconds or as HTTP date
+   * @return The delay in milliseconds
+   */
+  public long backoffMillis(final int attempt, final Optional<String> retryAfter) {
+    final long backoff = backoffMillis(attempt);
+    return retryAfter.map(RetryPolicy::parseRetryAfterMillis)
+        .map(requested -> Math.min(maxBackoffMillis, Math.max(backoff, requested)))
+        .orElse(backoff);
+  }
+
+  static Long parseRetryAfterMillis(final String value) {
+    final String trimmed = value.trim();
+    try {
+      return Math.max(0, Long.parseLong(trimmed) * 1000);
+    } catch (NumberFormatException e) {
+      // not delay-seconds, try an HTTP date
+    }
+    try {
+      final ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+}
@@ -2,6 +2,8 @@ package org.rolandort.sender;
 
 public enum SenderType {
   HTTP,
+  UDP,
+  TCP,
   SIMULATE;
 
   public static SenderType fromString(final String value) {
@@ -0,0 +1,317 @@
+package org.rolandort.sender;
+
+import com.google.inject.Singleton;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.MessageTrace;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Sends GELF messages to the Graylog GELF TCP input.
+ * <p>
+ * Messages are framed with a trailing null byte and written over a small pool of persistent connections.
+ * The frames of a batch are coalesced into a large write buffer, so thousands of small messages go out with a
+ * single write. If a write fails the connection is re-established and writing resumes with the first frame which
+ * was not completely written, the server discards the incomplete frame together with the broken connection.
+ * Frames already written are not written again: they are not duplicated, but frames still in the socket buffers
+ * when the connection broke are lost. A write which makes no progress within the timeout fails like a broken
+ * connection.
+ * <p>
+ * Writes block the sending thread, and so does the backoff before a reconnect: unlike the HTTP sender, the thread
+ * sleeps while it holds its pooled connection. The circuit breaker bounds this: while it is open, batches fail
+ * immediately without connecting, e.g. to be spilled to the journal.
+ */
+@Singleton
+public class TcpGelfSender implements GelfSender {
+  private static final Logger logger = LogManager.getLogger(TcpGelfSender.class);
+  private static final MessageTrace trace = MessageTrace.forStage("send.tcp");
+
+  public static final int DEFAULT_PORT = 12201;
+
+  private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+  private static final byte FRAME_DELIMITER = 0;
+
+  private final String graylogUrl;
+  private final InetSocketAddress address;
+  private final int timeout;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final BlockingQueue<Connection> pool;
+
+  /**
+   * @param graylogUrl Address of the Graylog GELF TCP input, e.g. tcp://localhost:12201
+   * @param timeout    Connect and write timeout in seconds, 0 waits forever
+   * @param poolSize   Number of persistent connections
+   */
+  public TcpGelfSender(String graylogUrl, int timeout, int poolSize) {
+    this(graylogUrl, timeout, poolSize, new RetryPolicy(4, Duration.ofMillis(200), Duration.ofSeconds(2)));
+  }
+
+  /**
+   * @param graylogUrl  Address of the Graylog GELF TCP input, e.g. tcp://localhost:12201
+   * @param timeout     Connect and write timeout in seconds, 0 waits forever
+   * @param poolSize    Number of persistent connections
+   * @param retryPolicy Reconnects and backoff after a failed write
+   */
+  public TcpGelfSender(String graylogUrl, int timeout, int poolSize, RetryPolicy retryPolicy) {
+    this(graylogUrl, timeout, poolSize, retryPolicy, CircuitBreaker.disabled());
+  }
+
+  /**
+   * @param graylogUrl     Address of the Graylog GELF TCP input, e.g. tcp://localhost:12201
+   * @param timeout        Connect and write timeout in seconds, 0 waits forever
+   * @param poolSize       Number of persistent connections
+   * @param retryPolicy    Reconnects and backoff after a failed write
+   * @param circuitBreaker Fails batches without connecting while the Graylog server is unreachable
+   */
+  public TcpGelfSender(String graylogUrl, int timeout, int poolSize, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("Pool size must be at least 1: " + poolSize);
+    }
+    this.graylogUrl = graylogUrl;
+    final URI uri = URI.create(graylogUrl);
+    this.address = new InetSocketAddress(uri.getHost(), uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort());
+    this.timeout = timeout;
+    this.retryPolicy = retryPolicy;
+    this.circuitBreaker = circuitBreaker;
+
+    // Connections are opened lazily on first use
+    this.pool = new ArrayBlockingQueue<>(poolSize);
+    for (int i = 0; i < poolSize; i++) {
+      pool.add(new Connection());
+    }
+  }
+
+  @Override
+  public boolean sendMessage(final GelfMessage gelfMessage) {
+    return sendMessages(List.of(gelfMessage)) == 1;
+  }
+
+  /**
+   * Sends a list of GELF messages over one pooled connection.
+   *
+   * @param gelfMessages The list of GELF messages to send
+   * @return The number of messages that were written to the connection
+   */
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages) {
+    return writeMessages(gelfMessages);
+  }
+
+  /**
+   * Sends a list of GELF messages over one pooled connection. Messages are written in order, so the messages
+   * not sent are always the tail of the list.
+   *
+   * @param gelfMessages The list of GELF messages to send
+   * @param failed       Receives the messages which were not written
+   * @return The number of messages that were written to the connection
+   */
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+    final int sentCount = writeMessages(gelfMessages);
+    gelfMessages.subList(sentCount, gelfMessages.size()).forEach(failed);
+    return sentCount;
+  }
+
+  private int writeMessages(final List<GelfMessage> gelfMessages) {
+    final Connection connection;
+    try {
+      connection = pool.take();
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while waiting for a connection to {}, {} messages not sent", graylogUrl, gelfMessages.size());
+      Thread.currentThread().interrupt();
+      return 0;
+    }
+
+    try {
+      final ByteBuffer buffer = connection.buffer;
+      buffer.clear();
+      int sentCount = 0;
+      int bufferedCount = 0;
+
+      for (GelfMessage gelfMessage : gelfMessages) {
+        if (trace.sample()) {
+          trace.logger().info("Sending GELF message to {}: '{}'", graylogUrl, gelfMessage);
+        }
+        final byte[] payload = gelfMessage.toJsonBytes();
+
+        if (payload.length + 1 > buffer.remaining() && bufferedCount > 0) {
+          // Write the coalesced frames before buffering further messages
+          final int writtenCount = write(connection, connection.frameEnds, bufferedCount, buffer.flip());
+          sentCount += writtenCount;
+          if (writtenCount < bufferedCount) {
+            return sentCount;
+          }
+          bufferedCount = 0;
+          buffer.clear();
+        }
+
+        if (payload.length + 1 > buffer.remaining()) {
+          // Message does not fit into the write buffer, write it directly
+          final int[] frameEnd = {payload.length + 1};
+          if (write(connection, frameEnd, 1, ByteBuffer.wrap(payload), ByteBuffer.wrap(new byte[] {FRAME_DELIMITER})) == 0) {
+            return sentCount;
+          }
+          sentCount++;
+        } else {
+          buffer.put(payload).put(FRAME_DELIMITER);
+          connection.addFrameEnd(bufferedCount++, buffer.position());
+        }
+      }
+
+      if (bufferedCount > 0) {
+        sentCount += write(connection, connection.frameEnds, bufferedCount, buffer.flip());
+      }
+      return sentCount;
+    } finally {
+      pool.add(connection);
+    }
+  }
+
+  /**
+   * Writes the frames completely using a gathering write. After a failure the connection is re-established and
+   * writing resumes with the first frame which was not completely written.
+   *
+   * @param frameEnds  End offsets of the frames in the buffers, which start at position 0
+   * @param frameCount Number of frames in the buffers
+   * @return The number of frames completely written, less than frameCount if the connection could not be (re-)established
+   */
+  private int write(final Connection connection, final int[] frameEnds, final int frameCount, final ByteBuffer... buffers) {
+    int writtenCount = 0;
+    for (int attempt = 1; ; attempt++) {
+      if (!circuitBreaker.allowRequest()) {
+        PipelineMetrics.global().circuitBreakerRejections.increment();
+        return writtenCount;
+      }
+      try {
+        connection.write(buffers);
+        circuitBreaker.recordSuccess();
+        return frameCount;
+      } catch (IOException e) {
+        circuitBreaker.recordFailure();
+        connection.close();
+        long written = 0;
+        for (ByteBuffer buffer : buffers) {
+          written += buffer.position();
+        }
+        while (writtenCount < frameCount && frameEnds[writtenCount] <= written) {
+          writtenCount++;
+        }
+        if (!retryPolicy.canRetry(attempt)) {
+          logger.error("Exception ({}) sending GELF messages to {}, giving up after {} attempts", e.getMessage(), graylogUrl, attempt, e);
+          return writtenCount;
+        }
+        logger.warn("Exception ({}) sending GELF messages to {}, reconnecting (attempt {})", e.getMessage(), graylogUrl, attempt);
+
+        // Write the incomplete frame again on the new connection, but not the frames before it
+        long offset = writtenCount == 0 ? 0 : frameEnds[writtenCount - 1];
+        for (ByteBuffer buffer : buffers) {
+          buffer.position((int) Math.min(offset, buffer.limit()));
+          offset = Math.max(0, offset - buffer.limit());
+        }
+        try {
+          Thread.sleep(retryPolicy.backoffMillis(attempt));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return writtenCount;
+        }
+      }
+    }
+  }
+
+  /**
+   * A pooled connection together with its write buffer. Only used by the thread which took it from the pool.
+   * <p>
+   * The channel is non-blocking after connecting, writes wait for the channel to become writable with a selector,
+   * so a server which stops reading cannot block the sender forever.
+   */
+  private final class Connection {
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ByteBuffer probe = ByteBuffer.allocate(64);
+    private int[] frameEnds = new int[1024];  // end offsets of the frames in the buffer
+    private SocketChannel channel;
+    private Selector selector;
+
+    private void addFrameEnd(final int index, final int frameEnd) {
+      if (index == frameEnds.length) {
+        frameEnds = Arrays.copyOf(frameEnds, frameEnds.length * 2);
+      }
+      frameEnds[index] = frameEnd;
+    }
+
+    private void write(final ByteBuffer[] buffers) throws IOException {
+      connect();
+      long deadline = System.nanoTime() + timeout * 1_000_000_000L;
+      while (buffers[buffers.length - 1].hasRemaining()) {
+        if (channel.write(buffers) > 0) {
+          deadline = System.nanoTime() + timeout * 1_000_000_000L;
+          continue;
+        }
+        final long waitMillis = (deadline - System.nanoTime()) / 1_000_000;
+        if (timeout > 0 && waitMillis <= 0) {
+          throw new SocketTimeoutException("Write timed out after " + timeout + " sec");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Interrupted while writing");
+        }
+        selector.select(timeout > 0 ? waitMillis : 0);
+        selector.selectedKeys().clear();
+      }
+    }
+
+    private void connect() throws IOException {
+      if (channel != null && closedByPeer()) {
+        logger.info("Connection to {} was closed by the server", graylogUrl);
+        close();
+      }
+      if (channel == null) {
+        logger.info("Opening connection to {}", graylogUrl);
+        channel = SocketChannel.open();
+        selector = Selector.open();
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().connect(address, timeout * 1000);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_WRITE);
+      }
+    }
+
+    // The server never sends data on a GELF input, the end of the stream means it closed the connection
+    private boolean closedByPeer() {
+      try {
+        return channel.read(probe.clear()) < 0;
+      } catch (IOException e) {
+        return true;
+      }
+    }
+
+    private void close() {
+      if (channel != null) {
+        try {
+          selector.close();
+          channel.close();
+        } catch (IOException e) {
+          logger.debug("Error closing connection to {}", graylogUrl, e);
+        }
+        channel = null;
+        selector = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package org.rolandort.sender;
+
+import com.google.inject.Singleton;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.MessageTrace;
+import org.rolandort.model.GelfMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends GELF messages to the Graylog GELF UDP input.
+ * <p>
+ * Messages larger than the chunk size are split into GELF chunks, each prefixed with the chunk magic bytes,
+ * an 8 byte message id, the sequence number and the sequence count. UDP is fire-and-forget, a message
+ * counts as sent once all of its datagrams were handed to the network stack.
+ */
+@Singleton
+public class UdpGelfSender implements GelfSender {
+  private static final Logger logger = LogManager.getLogger(UdpGelfSender.class);
+  private static final MessageTrace trace = MessageTrace.forStage("send.udp");
+
+  public static final int DEFAULT_PORT = 12201;
+
+  private static final byte CHUNK_MAGIC_1 = 0x1e;
+  private static final byte CHUNK_MAGIC_2 = 0x0f;
+  private static final int CHUNK_HEADER_LENGTH = 12;
+  private static final int MAX_CHUNKS = 128;
+
+  private final String graylogUrl;
+  private final InetSocketAddress address;
+  private final CompressionType compression;
+  private final int compressionThreshold;
+  private final DatagramChannel channel;
+  private final ByteBuffer datagram;  // reused for every datagram, guarded by this
+  private final long messageIdBase;
+  private long messageIdSequence;
+
+  /**
+   * @param graylogUrl           Address of the Graylog GELF UDP input, e.g. udp://localhost:12201
+   * @param compression          Compression of the payloads (GELF UDP accepts GZIP and zlib)
+   * @param compressionThreshold Minimum payload size in bytes to compress
+   * @param chunkSize            Maximum datagram size in bytes including the chunk header
+   */
+  public UdpGelfSender(String graylogUrl, CompressionType compression, int compressionThreshold, int chunkSize) {
+    if (chunkSize <= CHUNK_HEADER_LENGTH) {
+      throw new IllegalArgumentException("Chunk size must be larger than " + CHUNK_HEADER_LENGTH + " bytes: " + chunkSize);
+    }
+    this.graylogUrl = graylogUrl;
+    final URI uri = URI.create(graylogUrl);
+    this.address = new InetSocketAddress(uri.getHost(), uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort());
+    this.compression = compression;
+    this.compressionThreshold = compressionThreshold;
+    this.datagram = ByteBuffer.allocateDirect(chunkSize);
+    this.messageIdBase = new SecureRandom().nextLong();
+
+    try {
+      this.channel = DatagramChannel.open();
+      this.channel.connect(address);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening UDP channel to " + graylogUrl, e);
+    }
+  }
+
+  /**
+   * Sends a GELF message as one or more UDP datagrams.
+   *
+   * @param gelfMessage The GELF message to send
+   * @return True if all datagrams of the message were sent, false otherwise
+   */
+  @Override
+  public boolean sendMessage(final GelfMessage gelfMessage) {
+    if (trace.sample()) {
+      trace.logger().info("Sending GELF message to {}: '{}'", graylogUrl, gelfMessage);
+    }
+
+    byte[] payload = gelfMessage.toJsonBytes();
+    int length = payload.length;
+    if (compression != CompressionType.NONE && length >= compressionThreshold) {
+      final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+      length = compressor.compress(compression, payload, 0, length);
+      payload = compressor.buffer();
+    }
+
+    try {
+      synchronized (this) {
+        if (length <= datagram.capacity()) {
+          datagram.clear();
+          datagram.put(payload, 0, length).flip();
+          channel.write(datagram);
+          return true;
+        }
+        return sendChunked(payload, length);
+      }
+    } catch (IOException e) {
+      logger.error("Exception ({}) sending GELF message to {}: '{}'", e.getCause(), graylogUrl, gelfMessage, e);
+      return false;
+    }
+  }
+
+  @Override
+  public int sendMessages(final List<GelfMessage> gelfMessages) {
+    final AtomicInteger sentCount = new AtomicInteger(0);
+
+    for (GelfMessage gelfMessage : gelfMessages) {
+      if (this.sendMessage(gelfMessage)) {
+        sentCount.incrementAndGet();
+      }
+    }
+    return sentCount.get();
+  }
+
+  // Caller must hold the lock on this
+  private boolean sendChunked(final byte[] payload, final int length) throws IOException {
+    final int chunkDataSize = datagram.capacity() - CHUNK_HEADER_LENGTH;
+    final int chunkCount = (length + chunkDataSize - 1) / chunkDataSize;
+    if (chunkCount > MAX_CHUNKS) {
+      logger.error("GELF message of {} bytes exceeds the maximum of {} chunks", length, MAX_CHUNKS);
+      return false;
+    }
+
+    final long messageId = messageIdBase + messageIdSequence++;
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      final int offset = chunk * chunkDataSize;
+      datagram.clear();
+      datagram.put(CHUNK_MAGIC_1).put(CHUNK_MAGIC_2)
+          .putLong(messageId)
+          .put((byte) chunk)
+          .put((byte) chunkCount)
+          .put(payload, offset, Math.min(chunkDataSize, length - offset))
+          .flip();
+      channel.write(datagram);
+    }
+    return true;
+  }
+}
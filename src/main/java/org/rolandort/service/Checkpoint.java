@@ -0,0 +1,17 @@
+package org.rolandort.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read progress of a log file: all lines before {@code offset} were sent to Graylog.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Checkpoint {
+  private long offset;        // byte offset after the last line sent
+  private long lineNumber;    // number of lines before the offset, including a header line
+  private String fileKey;     // identifies the file across renames, e.g. "(dev=fe00,ino=12042245)"
+}
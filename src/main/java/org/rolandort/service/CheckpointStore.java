@@ -0,0 +1,130 @@
+package org.rolandort.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persists the read {@link Checkpoint} of every input file in a small JSON file, so an interrupted run can resume
+ * where it stopped instead of sending the whole file again.
+ * <p>
+ * Updates are kept in memory and written at most once per flush interval (and on {@link #close()}), so
+ * checkpointing costs one fsync per interval instead of one per message. The file is replaced atomically by
+ * writing a temporary file and renaming it, so a crash leaves either the old or the new checkpoints behind.
+ */
+public class CheckpointStore implements Closeable {
+  private static final Logger logger = LogManager.getLogger(CheckpointStore.class);
+
+  private final Path storePath;
+  private final long flushIntervalNanos;
+  private final Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+  private final Map<String, Checkpoint> checkpoints;
+  private long lastFlush = System.nanoTime();
+  private boolean dirty;
+
+  /**
+   * Opens a checkpoint store and loads the existing checkpoints.
+   *
+   * @param storePath     The JSON file holding the checkpoints, created on the first flush
+   * @param flushInterval Minimum time between two writes of the file
+   * @throws IOException If an existing checkpoint file cannot be read
+   */
+  public CheckpointStore(final Path storePath, final Duration flushInterval) throws IOException {
+    this.storePath = storePath.toAbsolutePath();
+    this.flushIntervalNanos = flushInterval.toNanos();
+    this.checkpoints = load();
+  }
+
+  /**
+   * @return The checkpoint of a log file, if one was stored
+   */
+  public synchronized Optional<Checkpoint> get(final Path logFile) {
+    return Optional.ofNullable(checkpoints.get(key(logFile)));
+  }
+
+  /**
+   * Records the progress of a log file and writes the store if the flush interval has elapsed.
+   */
+  public synchronized void update(final Path logFile, final Checkpoint checkpoint) {
+    checkpoints.put(key(logFile), checkpoint);
+    dirty = true;
+    if (System.nanoTime() - lastFlush >= flushIntervalNanos) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes pending updates to disk. Errors are logged, as losing a checkpoint only causes messages to be resent.
+   */
+  public synchronized void flush() {
+    lastFlush = System.nanoTime();
+    if (!dirty) {
+      return;
+    }
+    try {
+      write();
+      dirty = false;
+      logger.debug("Flushed {} checkpoints to {}", checkpoints.size(), storePath);
+    } catch (IOException e) {
+      logger.error("Error writing checkpoints to {}", storePath, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    flush();
+  }
+
+  private Map<String, Checkpoint> load() throws IOException {
+    if (!Files.exists(storePath)) {
+      return new HashMap<>();
+    }
+    try {
+      final Map<String, Checkpoint> loaded = gson.fromJson(Files.readString(storePath),
+          new TypeToken<HashMap<String, Checkpoint>>() { }.getType());
+      logger.info("Loaded {} checkpoints from {}", loaded == null ? 0 : loaded.size(), storePath);
+      return loaded == null ? new HashMap<>() : loaded;
+    } catch (JsonParseException e) {
+      throw new IOException("Invalid checkpoint file " + storePath, e);
+    }
+  }
+
+  private void write() throws IOException {
+    final Path temp = storePath.resolveSibling(storePath.getFileName() + ".tmp");
+    final ByteBuffer content = ByteBuffer.wrap(gson.toJson(checkpoints).getBytes(StandardCharsets.UTF_8));
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+      channel.force(true);
+    }
+    try {
+      Files.move(temp, storePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, storePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String key(final Path logFile) {
+    return logFile.toAbsolutePath().normalize().toString();
+  }
+}
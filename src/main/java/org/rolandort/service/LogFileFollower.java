@@ -0,0 +1,397 @@
+package org.rolandort.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.LogMessage;
+import org.rolandort.parser.LogParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows a growing log file like {@code tail -F} and hands newly appended log messages to a consumer.
+ * <p>
+ * The follower keeps the file open and only reads the bytes appended since the last read. It wakes up on
+ * file system events of the parent directory and additionally polls the file, as watch services
+ * may be slow or unsupported on some file systems (e.g. network shares).
+ * <p>
+ * A rotation is detected by a change of the file key (the inode on Unix), a truncation by the file size
+ * dropping below the read position. In both cases the rest of the old file is read and the new file is
+ * followed from its beginning.
+ * <p>
+ * The follower can also read a file once up to its end ({@link #readToEnd}) and resume from a {@link Checkpoint}.
+ */
+public class LogFileFollower implements Closeable {
+  private static final Logger logger = LogManager.getLogger(LogFileFollower.class);
+
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(250);
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final Path filePath;
+  private final LogParser logParser;
+  private final long pollIntervalMillis;
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  private WatchService watchService;
+  private FileChannel channel;
+  private Object fileKey;
+  private String header;
+  private boolean headerPending;
+  private volatile boolean closed;
+
+  // Bytes read but not yet parsed, i.e. an incomplete last line
+  private byte[] pending = new byte[READ_BUFFER_SIZE];
+  private int pendingLength;
+  private CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+  // Read position in the current file, position after the last complete line and number of lines before it
+  private long readPosition;
+  private long linePosition;
+  private long lineNumber;
+  private Checkpoint resumeFrom;
+
+  public LogFileFollower(final Path filePath, final LogParser logParser) {
+    this(filePath, logParser, DEFAULT_POLL_INTERVAL);
+  }
+
+  public LogFileFollower(final Path filePath, final LogParser logParser, final Duration pollInterval) {
+    this.filePath = filePath.toAbsolutePath();
+    this.logParser = logParser;
+    this.pollIntervalMillis = pollInterval.toMillis();
+  }
+
+  /**
+   * Starts reading at a checkpoint instead of the beginning of the file. The checkpoint is ignored if it belongs
+   * to another file (e.g. the file was rotated meanwhile) or lies beyond the end of the file.
+   *
+   * @param checkpoint The checkpoint stored for the file
+   */
+  public void resumeFrom(final Checkpoint checkpoint) {
+    this.resumeFrom = checkpoint;
+  }
+
+  /**
+   * Reads the file from the beginning (or the checkpoint) up to its current end, including a last line
+   * without line feed.
+   *
+   * @param consumer Receives the log messages of every block of complete lines (possibly none)
+   * @throws IOException If the file cannot be read
+   */
+  public void readToEnd(final Consumer<List<LogMessage>> consumer) throws IOException {
+    open();
+    if (channel == null) {
+      throw new NoSuchFileException(filePath.toString());
+    }
+    try {
+      readAppended(consumer);
+      parseLastLine(consumer);
+    } finally {
+      closeChannel();
+    }
+  }
+
+  /**
+   * Reads the file from the beginning (or the checkpoint) and then keeps reading appended lines until the follower is closed
+   * or the calling thread is interrupted.
+   *
+   * @param consumer Receives the log messages of every block of newly appended complete lines (possibly none)
+   * @throws IOException If the file cannot be read
+   */
+  public void follow(final Consumer<List<LogMessage>> consumer) throws IOException {
+    logger.info("Following log file {}", filePath);
+    watchService = openWatchService();
+    try {
+      while (!closed && !Thread.currentThread().isInterrupted()) {
+        if (channel == null) {
+          open();
+        }
+        if (channel != null) {
+          readAppended(consumer);
+          checkRotation(consumer);
+        }
+        if (!await()) {
+          break;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // closed while waiting
+    } finally {
+      closeChannel();
+      if (watchService != null) {
+        watchService.close();
+      }
+      logger.info("Stopped following log file {}", filePath);
+    }
+  }
+
+  /**
+   * @return The byte offset after the last complete line read from the current file
+   */
+  public long position() {
+    return linePosition;
+  }
+
+  /**
+   * @return The progress in the current file, i.e. the position after the last complete line passed to the consumer
+   */
+  public Checkpoint checkpoint() {
+    return new Checkpoint(linePosition, lineNumber, fileKey == null ? null : fileKey.toString());
+  }
+
+  /**
+   * Stops following the file; {@link #follow} returns after the current read.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    final WatchService service = watchService;
+    if (service != null) {
+      service.close();
+    }
+  }
+
+  private WatchService openWatchService() {
+    final Path directory = filePath.getParent();
+    try {
+      final WatchService service = FileSystems.getDefault().newWatchService();
+      directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+      return service;
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.warn("Cannot watch directory {}, polling every {} ms: {}", directory, pollIntervalMillis, e.getMessage());
+      return null;
+    }
+  }
+
+  // Waits for a file system event in the directory or the poll interval; returns false if interrupted
+  private boolean await() {
+    try {
+      if (watchService == null) {
+        Thread.sleep(pollIntervalMillis);
+        return true;
+      }
+      final WatchKey key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+      if (key != null) {
+        // Only used as a wake-up signal, the file itself is checked in any case
+        key.pollEvents();
+        key.reset();
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void open() throws IOException {
+    try {
+      channel = FileChannel.open(filePath, StandardOpenOption.READ);
+      fileKey = Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+    } catch (NoSuchFileException e) {
+      logger.debug("Waiting for log file {}", filePath);
+      closeChannel();
+      return;
+    }
+    readPosition = 0;
+    linePosition = 0;
+    lineNumber = 0;
+    pendingLength = 0;
+    header = null;
+    headerPending = logParser.hasHeaderLine();
+    logger.info("Opened log file {} (file key: {})", filePath, fileKey);
+
+    final Checkpoint checkpoint = resumeFrom;
+    resumeFrom = null;
+    if (checkpoint != null && checkpoint.getOffset() > 0) {
+      resume(checkpoint);
+    }
+  }
+
+  private void resume(final Checkpoint checkpoint) throws IOException {
+    if (fileKey != null && checkpoint.getFileKey() != null && !checkpoint.getFileKey().equals(fileKey.toString())) {
+      logger.warn("Ignoring checkpoint of log file {}, the file was replaced (file key: {})", filePath, checkpoint.getFileKey());
+      return;
+    }
+    if (checkpoint.getOffset() > channel.size()) {
+      logger.warn("Ignoring checkpoint of log file {}, the file is shorter than offset {}", filePath, checkpoint.getOffset());
+      return;
+    }
+
+    if (headerPending) {
+      readHeader();
+    }
+    readPosition = checkpoint.getOffset();
+    linePosition = checkpoint.getOffset();
+    lineNumber = checkpoint.getLineNumber();
+    logger.info("Resuming log file {} at offset {} (line {})", filePath, linePosition, lineNumber);
+  }
+
+  // Reads the header line at the beginning of the file
+  private void readHeader() throws IOException {
+    while (pendingLength == 0 || indexOfLineFeed(0, pendingLength) < 0) {
+      ensureCapacity();
+      final int read = channel.read(ByteBuffer.wrap(pending, pendingLength, pending.length - pendingLength), pendingLength);
+      if (read <= 0) {
+        break;
+      }
+      pendingLength += read;
+    }
+    final int end = indexOfLineFeed(0, pendingLength) + 1;
+    header = new String(pending, 0, end > 0 ? end : pendingLength, StandardCharsets.UTF_8).stripTrailing();
+    headerPending = false;
+    pendingLength = 0;
+  }
+
+  // Switches to the new file after a rotation and starts over after a truncation
+  private void checkRotation(final Consumer<List<LogMessage>> consumer) throws IOException {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      // Moved away and not yet recreated, keep reading the old file until the new one appears
+      return;
+    }
+
+    if (fileKey != null && attributes.fileKey() != null && !Objects.equals(fileKey, attributes.fileKey())) {
+      logger.info("Log file {} was rotated", filePath);
+      readAppended(consumer);
+      // The old file is complete, its last line will not be terminated anymore
+      parseLastLine(consumer);
+      closeChannel();
+      open();
+      if (channel != null) {
+        readAppended(consumer);
+      }
+    } else if (attributes.size() < readPosition) {
+      logger.info("Log file {} was truncated from {} to {} bytes", filePath, readPosition, attributes.size());
+      closeChannel();
+      open();
+      if (channel != null) {
+        readAppended(consumer);
+      }
+    }
+  }
+
+  // Reads everything appended since the last read and parses the complete lines
+  private void readAppended(final Consumer<List<LogMessage>> consumer) throws IOException {
+    while (true) {
+      ensureCapacity();
+      final int read = channel.read(ByteBuffer.wrap(pending, pendingLength, pending.length - pendingLength), readPosition);
+      if (read <= 0) {
+        return;
+      }
+      readPosition += read;
+      pendingLength += read;
+      PipelineMetrics.global().bytesRead.add(read);
+      parseCompleteLines(consumer);
+    }
+  }
+
+  private void parseCompleteLines(final Consumer<List<LogMessage>> consumer) {
+    int end = pendingLength;
+    while (end > 0 && pending[end - 1] != '\n') {
+      end--;
+    }
+    if (end == 0) {
+      return;
+    }
+
+    int start = 0;
+    if (headerPending) {
+      start = indexOfLineFeed(0, end) + 1;
+      header = new String(pending, 0, start, StandardCharsets.UTF_8).stripTrailing();
+      headerPending = false;
+    }
+
+    final List<LogMessage> logMessages = new ArrayList<>();
+    if (start < end) {
+      logParser.parseChunk(decode(start, end), header, logMessages::add);
+    }
+
+    // Advance before calling the consumer, so it can take a checkpoint of the lines it received.
+    // A line feed appended to terminate the last line is not part of the file.
+    linePosition = Math.min(linePosition + end, readPosition);
+    lineNumber += countLineFeeds(0, end);
+    System.arraycopy(pending, end, pending, 0, pendingLength - end);
+    pendingLength -= end;
+
+    consumer.accept(logMessages);
+  }
+
+  // Parses a last line without line feed at the end of the file
+  private void parseLastLine(final Consumer<List<LogMessage>> consumer) {
+    if (pendingLength > 0) {
+      ensureCapacity();
+      pending[pendingLength++] = '\n';
+      parseCompleteLines(consumer);
+    }
+  }
+
+  private void ensureCapacity() {
+    if (pendingLength == pending.length) {
+      pending = Arrays.copyOf(pending, pending.length * 2);
+    }
+  }
+
+  private int indexOfLineFeed(final int start, final int end) {
+    for (int i = start; i < end; i++) {
+      if (pending[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int countLineFeeds(final int start, final int end) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (pending[i] == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private CharBuffer decode(final int start, final int end) {
+    // UTF-8 never decodes to more chars than bytes
+    if (chars.capacity() < end - start) {
+      chars = CharBuffer.allocate(end - start);
+    }
+    chars.clear();
+    decoder.reset().decode(ByteBuffer.wrap(pending, start, end - start), chars, true);
+    decoder.flush(chars);
+    return chars.flip();
+  }
+
+  private void closeChannel() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+}
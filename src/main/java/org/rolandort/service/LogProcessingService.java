@@ -4,15 +4,34 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rolandort.dedup.LogMessageDeduplicator;
 import org.rolandort.formatter.GelfFormatter;
+import org.rolandort.di.AppConfig;
 import org.rolandort.model.GelfMessage;
 import org.rolandort.model.LogMessage;
+import org.rolandort.parser.LogFileReader;
 import org.rolandort.parser.LogParser;
+import org.rolandort.parser.ParallelLogFileParser;
+import org.rolandort.rollup.RollupAggregator;
 import org.rolandort.sender.GelfSender;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Singleton
 public class LogProcessingService {
@@ -21,33 +40,63 @@ public class LogProcessingService {
   private final LogParser logParser;
   private final GelfFormatter gelfFormatter;
   private final GelfSender gelfSender;
+  private final AppConfig config;
+  private final LogMessageDeduplicator deduplicator;
+  private CheckpointStore checkpointStore;
+  private volatile LogFileFollower follower;  // file followed by followLogFile
+  private volatile boolean followingStopped;
+
+  public LogProcessingService(final LogParser logParser, final GelfFormatter gelfFormatter, final GelfSender gelfSender) {
+    this(logParser, gelfFormatter, gelfSender, new AppConfig());
+  }
 
   // Constructor-based injector
   @Inject
-  public LogProcessingService(final LogParser logParser, final GelfFormatter gelfFormatter, final GelfSender gelfSender) {
+  public LogProcessingService(final LogParser logParser, final GelfFormatter gelfFormatter, final GelfSender gelfSender,
+                              final AppConfig config) {
     this.logParser = logParser;
     this.gelfFormatter = gelfFormatter;
     this.gelfSender = gelfSender;
+    this.config = config;
+    // Shared by all files of a run, so overlapping files are deduplicated against each other
+    this.deduplicator = config.isDedup() ? new LogMessageDeduplicator(config.getDedupWindow(),
+        Duration.ofSeconds(config.getDedupWindowTime()), config.getDedupFalsePositiveRate()) : null;
   }
 
   /**
    * Processes a log file, extracts log messages, converts them to GELF format,
    * and sends them to a Graylog server.
+   * <p>
+   * If a checkpoint file is configured, the file is read incrementally from the last checkpoint instead.
    *
    * @param filePath The path to the log file to process.
    * @return The number of log messages that were successfully sent to Graylog.
    */
   public int processLogFile(final Path filePath) {
+    if (useCheckpoints(filePath)) {
+      // Every block read from the file is sent as one batch
+      return processLogFileFromCheckpoint(filePath, Integer.MAX_VALUE);
+    }
 
     // Parse log messages from file
-    final List<LogMessage> logMessages = logParser.parseLogFile(filePath);
-    if (logMessages.isEmpty()) {
+    final List<LogMessage> parsedMessages;
+    if (config.getParseThreads() > 1) {
+      try (Stream<LogMessage> stream = openLogStream(filePath)) {
+        parsedMessages = stream.toList();
+      }
+    } else {
+      parsedMessages = logParser.parseLogFile(filePath);
+    }
+    if (parsedMessages.isEmpty()) {
       logger.warn("No log messages found in file {}", filePath);
       return 0;
     } else {
-      logger.info("Found {} log messages in input file {}", logMessages.size(), filePath);
+      logger.info("Found {} log messages in input file {}", parsedMessages.size(), filePath);
     }
 
+    // Drop repeated log messages
+    final List<LogMessage> logMessages = deduplicate(parsedMessages, filePath.toString());
+
     // Convert a log message into GELF format and send to Graylog
     final List<GelfMessage> gelfMessages = new ArrayList<>();
     for (final LogMessage logMessage : logMessages) {
@@ -61,4 +110,405 @@ public class LogProcessingService {
     logger.info("Successfully sent {} of {} messages to Graylog", sentCount, logMessages.size());
     return sentCount;
   }
+
+  /**
+   * Processes a log file in a pipelined fashion: messages are parsed, converted to GELF format
+   * and sent to the Graylog server in small batches while the file is being read.
+   * <p>
+   * In contrast to {@link #processLogFile(Path)} only a single batch is held in memory at any time,
+   * so the heap usage does not depend on the size of the input file.
+   *
+   * @param filePath  The path to the log file to process.
+   * @param batchSize The number of messages handed to the sender at once.
+   * @return The number of log messages that were successfully sent to Graylog.
+   */
+  public int processLogFileStreaming(final Path filePath, final int batchSize) {
+    if (useCheckpoints(filePath)) {
+      return processLogFileFromCheckpoint(filePath, batchSize);
+    }
+
+    try (Stream<LogMessage> logMessages = openLogStream(filePath)) {
+      return sendInBatches(logMessages.iterator(), batchSize, "file " + filePath);
+    }
+  }
+
+  /**
+   * Processes log messages which do not come from a file, e.g. generated ones: they are converted to GELF format
+   * and sent to the Graylog server in batches like in {@link #processLogFileStreaming(Path, int)}.
+   *
+   * @param logMessages The log messages to process, consumed lazily and closed afterwards.
+   * @param batchSize   The number of messages handed to the sender at once.
+   * @return The number of log messages that were successfully sent to Graylog.
+   */
+  public int processLogMessages(final Stream<LogMessage> logMessages, final int batchSize) {
+    try (logMessages) {
+      return sendInBatches(logMessages.iterator(), batchSize, "input stream");
+    }
+  }
+
+  private int sendInBatches(final Iterator<LogMessage> parsedMessages, final int batchSize, final String source) {
+    if (deduplicator == null) {
+      return sendBatches(parsedMessages, batchSize, source);
+    }
+    final LogMessageDeduplicator.FilteringIterator logMessages = deduplicator.filter(parsedMessages);
+    try {
+      return sendBatches(logMessages, batchSize, source);
+    } finally {
+      logger.info("Dropped {} duplicate log messages in {}", logMessages.droppedCount(), source);
+    }
+  }
+
+  private int sendBatches(final Iterator<LogMessage> logMessages, final int batchSize, final String source) {
+    return config.isPipeline()
+        ? sendThroughPipeline(logMessages, batchSize, source)
+        : sendSequentially(logMessages, batchSize, source);
+  }
+
+  private int sendSequentially(final Iterator<LogMessage> logMessages, final int batchSize, final String source) {
+    final List<GelfMessage> batch = new ArrayList<>(batchSize);
+    int parsedCount = 0;
+    int sentCount = 0;
+
+    while (logMessages.hasNext()) {
+      batch.add(gelfFormatter.formatMessage(logMessages.next()));
+      parsedCount++;
+
+      if (batch.size() >= batchSize) {
+        sentCount += gelfSender.sendMessages(batch);
+        batch.clear();
+      }
+    }
+
+    // Send the remaining partial batch
+    if (!batch.isEmpty()) {
+      sentCount += gelfSender.sendMessages(batch);
+    }
+
+    if (parsedCount == 0) {
+      logger.warn("No log messages found in {}", source);
+    } else {
+      logger.info("Successfully sent {} of {} messages to Graylog", sentCount, parsedCount);
+    }
+    return sentCount;
+  }
+
+  // Logs the dropped messages of a file, the deduplicator is shared by concurrently processed files
+  private List<LogMessage> deduplicate(final List<LogMessage> logMessages, final String source) {
+    if (deduplicator == null) {
+      return logMessages;
+    }
+    final List<LogMessage> unique = deduplicator.filter(logMessages);
+    logger.info("Dropped {} duplicate log messages in {}", logMessages.size() - unique.size(), source);
+    return unique;
+  }
+
+  // Formats and sends on separate thread pools while the calling thread keeps reading
+  private int sendThroughPipeline(final Iterator<LogMessage> logMessages, final int batchSize, final String source) {
+    final StagedPipeline pipeline = new StagedPipeline(gelfFormatter, gelfSender, config.getFormatThreads(),
+        config.getSendThreads(), config.getQueueCapacity());
+    final StagedPipeline.Result result = pipeline.run(logMessages, batchSize);
+
+    if (result.readCount() == 0) {
+      logger.warn("No log messages found in {}", source);
+    } else {
+      logger.info("Successfully sent {} of {} messages to Graylog", result.sentCount(), result.readCount());
+    }
+    return (int) result.sentCount();
+  }
+
+  /**
+   * Follows a growing log file: the existing content is processed first, then newly appended lines are
+   * parsed, converted to GELF format and sent as soon as they are written. Rotated and truncated files
+   * are followed from their beginning. If a checkpoint file is configured, following resumes at the last checkpoint.
+   * <p>
+   * The method runs until the calling thread is interrupted.
+   *
+   * @param filePath  The path to the log file to follow.
+   * @param batchSize The maximum number of messages handed to the sender at once.
+   * @return The number of log messages that were successfully sent to Graylog.
+   * @throws IOException If the log file cannot be read.
+   */
+  public int followLogFile(final Path filePath, final int batchSize) throws IOException {
+    if (LogFileReader.isGzip(filePath)) {
+      throw new IOException("Compressed log file cannot be followed: " + filePath);
+    }
+    final CheckpointStore checkpoints = checkpointStore();
+    try (LogFileFollower follower = new LogFileFollower(filePath, logParser)) {
+      this.follower = follower;
+      if (followingStopped) {
+        follower.close();
+      }
+      if (checkpoints != null) {
+        checkpoints.get(filePath).ifPresent(follower::resumeFrom);
+      }
+      final BlockSender blockSender = new BlockSender(filePath, follower, checkpoints, batchSize);
+      follower.follow(blockSender);
+      blockSender.logResult();
+      return blockSender.sentCount;
+    } finally {
+      this.follower = null;
+      if (checkpoints != null) {
+        checkpoints.flush();
+      }
+    }
+  }
+
+  /**
+   * Stops {@link #followLogFile} once the lines read so far were sent, e.g. on shutdown. Unlike interrupting the
+   * following thread, this lets the sender finish the last batch.
+   *
+   * @throws IOException If the file watcher cannot be closed
+   */
+  public void stopFollowing() throws IOException {
+    followingStopped = true;
+    final LogFileFollower current = follower;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  /**
+   * Processes several log files concurrently on a work-stealing pool, all files share the same sender.
+   * <p>
+   * The files are submitted smallest first, so small files are not queued behind large ones.
+   *
+   * @param filePaths       The paths of the log files to process.
+   * @param fileParallelism The number of files processed at the same time.
+   * @param streaming       True to process the files in streaming mode, see {@link #processLogFileStreaming}.
+   * @param batchSize       The number of messages handed to the sender at once in streaming mode.
+   * @return The number of log messages that were successfully sent to Graylog per file, in the order of the input.
+   */
+  public Map<Path, Integer> processLogFiles(final List<Path> filePaths, final int fileParallelism, final boolean streaming,
+                                            final int batchSize) {
+    final List<Path> bySize = new ArrayList<>(filePaths);
+    bySize.sort(Comparator.comparingLong(LogProcessingService::sizeOf));
+
+    final ForkJoinPool pool = new ForkJoinPool(fileParallelism);
+    try {
+      final Map<Path, ForkJoinTask<Integer>> tasks = new HashMap<>();
+      for (final Path filePath : bySize) {
+        tasks.put(filePath, pool.submit(() -> processLogFileSafely(filePath, streaming, batchSize)));
+      }
+
+      final Map<Path, Integer> sentCounts = new LinkedHashMap<>();
+      for (final Path filePath : filePaths) {
+        sentCounts.put(filePath, tasks.get(filePath).join());
+      }
+      logger.info("Successfully sent {} messages from {} files to Graylog",
+          sentCounts.values().stream().mapToInt(Integer::intValue).sum(), filePaths.size());
+      return sentCounts;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Sends summaries instead of the log messages: the messages of all files are grouped by the configured rollup keys
+   * into tumbling windows of their timestamp and one GELF message per group and window is sent, see
+   * {@link RollupAggregator}. Summaries are sent as soon as their window is closed in all files which are not finished
+   * yet, the remaining ones at the end.
+   *
+   * @param filePaths       The paths of the log files to process.
+   * @param fileParallelism The number of files read at the same time.
+   * @param batchSize       The number of summaries handed to the sender at once.
+   * @return The number of summaries that were successfully sent to Graylog.
+   */
+  public int rollUpLogFiles(final List<Path> filePaths, final int fileParallelism, final int batchSize) {
+    final RollupAggregator aggregator = new RollupAggregator(config.getRollupKeys(),
+        Duration.ofSeconds(config.getRollupWindow()), Runtime.getRuntime().availableProcessors());
+    final AtomicInteger sentCount = new AtomicInteger();
+
+    final ForkJoinPool pool = new ForkJoinPool(fileParallelism);
+    try {
+      // Registered up front, so files waiting for a thread hold back the windows they may still add to
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (final Path filePath : filePaths) {
+        final RollupAggregator.Source source = aggregator.newSource();
+        tasks.add(pool.submit(() -> sentCount.addAndGet(rollUpLogFileSafely(filePath, aggregator, source, batchSize))));
+      }
+      tasks.forEach(ForkJoinTask::join);
+    } finally {
+      pool.shutdown();
+    }
+    sentCount.addAndGet(sendSummaries(aggregator.flush(), batchSize));
+
+    logger.info("Successfully sent {} summaries of {} log messages to Graylog ({} late, {} without timestamp)",
+        sentCount.get(), aggregator.aggregatedCount(), aggregator.lateCount(), aggregator.skippedCount());
+    return sentCount.get();
+  }
+
+  // Adds the messages of a file to the aggregator and sends the closed windows after every batch
+  private int rollUpLogFileSafely(final Path filePath, final RollupAggregator aggregator,
+                                  final RollupAggregator.Source source, final int batchSize) {
+    int sentCount = 0;
+    try (Stream<LogMessage> stream = openLogStream(filePath)) {
+      final Iterator<LogMessage> logMessages = deduplicator != null ? deduplicator.filter(stream.iterator()) : stream.iterator();
+      int batchCount = 0;
+      while (logMessages.hasNext()) {
+        aggregator.add(source, logMessages.next());
+        if (++batchCount == batchSize) {
+          sentCount += sendSummaries(aggregator.closedWindows(), batchSize);
+          batchCount = 0;
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.error("Error processing log file {}", filePath, e);
+    } finally {
+      aggregator.finish(source);
+    }
+    return sentCount;
+  }
+
+  private int sendSummaries(final List<GelfMessage> summaries, final int batchSize) {
+    int sentCount = 0;
+    for (int from = 0; from < summaries.size(); from += batchSize) {
+      sentCount += gelfSender.sendMessages(summaries.subList(from, Math.min(from + batchSize, summaries.size())));
+    }
+    return sentCount;
+  }
+
+  // An error in one file must not stop the other files
+  private int processLogFileSafely(final Path filePath, final boolean streaming, final int batchSize) {
+    try {
+      return streaming ? processLogFileStreaming(filePath, batchSize) : processLogFile(filePath);
+    } catch (RuntimeException e) {
+      logger.error("Error processing log file {}", filePath, e);
+      return 0;
+    }
+  }
+
+  private static long sizeOf(final Path filePath) {
+    try {
+      return Files.size(filePath);
+    } catch (IOException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  // Reads the file incrementally from its checkpoint and advances the checkpoint after every fully sent block
+  private int processLogFileFromCheckpoint(final Path filePath, final int batchSize) {
+    final CheckpointStore checkpoints = checkpointStore();
+    try (LogFileFollower reader = new LogFileFollower(filePath, logParser)) {
+      checkpoints.get(filePath).ifPresent(reader::resumeFrom);
+      final BlockSender blockSender = new BlockSender(filePath, reader, checkpoints, batchSize);
+      try {
+        reader.readToEnd(blockSender);
+      } catch (IOException e) {
+        logger.error("Error processing log file {}", filePath, e);
+      }
+      if (blockSender.parsedCount == 0) {
+        logger.warn("No new log messages found in file {}", filePath);
+      } else {
+        blockSender.logResult();
+      }
+      return blockSender.sentCount;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error closing log file " + filePath, e);
+    } finally {
+      checkpoints.flush();
+    }
+  }
+
+  // Checkpoints are byte offsets in the file, which cannot be used to seek in a compressed file
+  private boolean useCheckpoints(final Path filePath) {
+    if (config.getCheckpointFile() == null) {
+      return false;
+    }
+    if (isGzip(filePath)) {
+      logger.warn("Checkpoints are not supported for compressed log file {}, processing the whole file", filePath);
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean isGzip(final Path filePath) {
+    try {
+      return LogFileReader.isGzip(filePath);
+    } catch (IOException e) {
+      // Reported when the file is parsed
+      return false;
+    }
+  }
+
+  // The checkpoint store is opened once and shared by all files processed concurrently
+  private synchronized CheckpointStore checkpointStore() {
+    if (config.getCheckpointFile() == null) {
+      return null;
+    }
+    if (checkpointStore == null) {
+      try {
+        checkpointStore = new CheckpointStore(config.getCheckpointFile(), Duration.ofSeconds(config.getCheckpointInterval()));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return checkpointStore;
+  }
+
+  /**
+   * Formats and sends the blocks of log messages read by a {@link LogFileFollower} in batches.
+   * The checkpoint is advanced as long as all messages were sent, so it always marks the end of the last contiguous
+   * run of sent messages.
+   */
+  private class BlockSender implements Consumer<List<LogMessage>> {
+    private final Path filePath;
+    private final LogFileFollower reader;
+    private final CheckpointStore checkpoints;
+    private final int batchSize;
+    private boolean contiguous = true;
+    private int parsedCount;
+    private int sentCount;
+
+    private BlockSender(final Path filePath, final LogFileFollower reader, final CheckpointStore checkpoints, final int batchSize) {
+      this.filePath = filePath;
+      this.reader = reader;
+      this.checkpoints = checkpoints;
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    public void accept(final List<LogMessage> parsedMessages) {
+      final List<LogMessage> logMessages = deduplicator != null ? deduplicator.filter(parsedMessages) : parsedMessages;
+      int blockSentCount = 0;
+      final List<GelfMessage> batch = new ArrayList<>(Math.min(batchSize, logMessages.size()));
+      for (final LogMessage logMessage : logMessages) {
+        batch.add(gelfFormatter.formatMessage(logMessage));
+        if (batch.size() >= batchSize) {
+          blockSentCount += gelfSender.sendMessages(batch);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        blockSentCount += gelfSender.sendMessages(batch);
+      }
+      parsedCount += parsedMessages.size();
+      sentCount += blockSentCount;
+
+      if (checkpoints != null && contiguous) {
+        if (blockSentCount == logMessages.size()) {
+          checkpoints.update(filePath, reader.checkpoint());
+        } else {
+          contiguous = false;
+          logger.warn("Sent only {} of {} messages, checkpoint of log file {} stays at offset {}",
+              blockSentCount, logMessages.size(), filePath, checkpoints.get(filePath).map(Checkpoint::getOffset).orElse(0L));
+        }
+      }
+    }
+
+    private void logResult() {
+      logger.info("Successfully sent {} of {} messages to Graylog", sentCount, parsedCount);
+      if (deduplicator != null) {
+        logger.info("Dropped {} duplicate log messages in total", deduplicator.duplicateCount());
+      }
+    }
+  }
+
+  // Parses memory-mapped chunks of the file in parallel if configured, sequentially otherwise
+  private Stream<LogMessage> openLogStream(final Path filePath) {
+    if (config.getParseThreads() > 1 && !isGzip(filePath)) {
+      return new ParallelLogFileParser(logParser, config.getParseThreads(), config.isPreserveOrder())
+          .streamLogFile(filePath);
+    }
+    return logParser.streamLogFile(filePath);
+  }
 }
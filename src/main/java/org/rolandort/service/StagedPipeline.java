@@ -0,0 +1,274 @@
+package org.rolandort.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rolandort.formatter.GelfFormatter;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.model.LogMessage;
+import org.rolandort.sender.GelfSender;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs parse, format and send as concurrent stages connected by bounded queues of batches.
+ * <p>
+ * The calling thread reads (and parses) log messages and puts batches into the format queue. A pool of format threads
+ * converts them into GELF messages for the send queue, which a pool of send threads hands to the sender. Formatting
+ * is CPU-bound and sending waits for the network, so both pools are sized independently. The queues are bounded, so a
+ * slow Graylog server blocks the send threads, then the format threads and finally the reader instead of filling the
+ * heap. The end of the input is passed through the stages as poison pills.
+ * <p>
+ * The depths of both queues are published as gauges of the {@link PipelineMetrics}, summed over all pipelines running
+ * at the same time, e.g. one per file, and the maximum of a run is logged at its end. Messages are sent out of order when several threads run a stage.
+ */
+public class StagedPipeline {
+  private static final Logger logger = LogManager.getLogger(StagedPipeline.class);
+
+  private static final long POLL_MILLIS = 100;
+  private static final String FORMAT_QUEUE_GAUGE = "pipeline_format_queue_batches";
+  private static final String SEND_QUEUE_GAUGE = "pipeline_send_queue_batches";
+
+  // Runs of all pipelines, their queue depths are summed up by the gauges
+  private static final Set<StagedPipeline.Run> RUNNING = ConcurrentHashMap.newKeySet();
+  private static final LongSupplier FORMAT_QUEUE_DEPTH = () -> RUNNING.stream().mapToLong(run -> run.formatQueue.size()).sum();
+  private static final LongSupplier SEND_QUEUE_DEPTH = () -> RUNNING.stream().mapToLong(run -> run.sendQueue.size()).sum();
+
+  // Poison pills, compared by identity
+  private static final List<LogMessage> END_OF_LOG_MESSAGES = new ArrayList<>(0);
+  private static final List<GelfMessage> END_OF_GELF_MESSAGES = new ArrayList<>(0);
+
+  private final GelfFormatter gelfFormatter;
+  private final GelfSender gelfSender;
+  private final int formatThreads;
+  private final int sendThreads;
+  private final int queueCapacity;
+
+  /**
+   * @param gelfFormatter The formatter, called concurrently by the format threads
+   * @param gelfSender    The sender, called concurrently by the send threads
+   * @param formatThreads Number of threads formatting GELF messages
+   * @param sendThreads   Number of threads sending GELF messages
+   * @param queueCapacity Maximum number of batches waiting in front of each stage
+   */
+  public StagedPipeline(final GelfFormatter gelfFormatter, final GelfSender gelfSender, final int formatThreads,
+                        final int sendThreads, final int queueCapacity) {
+    this.gelfFormatter = gelfFormatter;
+    this.gelfSender = gelfSender;
+    this.formatThreads = formatThreads;
+    this.sendThreads = sendThreads;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Processes log messages and returns once all of them were sent or the pipeline failed.
+   *
+   * @param logMessages The log messages, read on the calling thread
+   * @param batchSize   Number of messages per batch passed between the stages and handed to the sender
+   * @return The number of messages read and sent
+   * @throws IllegalStateException If a stage failed, after all stages were stopped
+   */
+  public Result run(final Iterator<LogMessage> logMessages, final int batchSize) {
+    final Run run = new Run();
+    final PipelineMetrics metrics = PipelineMetrics.global();
+    RUNNING.add(run);
+    metrics.registerGauge(FORMAT_QUEUE_GAUGE, FORMAT_QUEUE_DEPTH);
+    metrics.registerGauge(SEND_QUEUE_GAUGE, SEND_QUEUE_DEPTH);
+
+    final ExecutorService formatPool = Executors.newFixedThreadPool(formatThreads, namedThreads("pipeline-format"));
+    final ExecutorService sendPool = Executors.newFixedThreadPool(sendThreads, namedThreads("pipeline-send"));
+    final List<Future<?>> workers = new ArrayList<>(formatThreads + sendThreads);
+    try {
+      for (int i = 0; i < formatThreads; i++) {
+        workers.add(formatPool.submit(() -> {
+          run.format();
+          return null;
+        }));
+      }
+      for (int i = 0; i < sendThreads; i++) {
+        workers.add(sendPool.submit(() -> {
+          run.send();
+          return null;
+        }));
+      }
+
+      run.read(logMessages, batchSize);
+
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted, stopping the pipeline");
+      run.fail(e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // The other stages stopped after the first failure
+      throw new IllegalStateException("Error in processing pipeline", run.failure.get());
+    } catch (RuntimeException e) {
+      run.fail(e);
+      throw e;
+    } finally {
+      formatPool.shutdownNow();
+      sendPool.shutdownNow();
+      // The gauges stay registered, other pipelines may still be running
+      RUNNING.remove(run);
+      logger.info("Pipeline queue occupancy: format {} of {} batches at most, send {} of {} batches at most",
+          run.formatQueueMax.get(), queueCapacity, run.sendQueueMax.get(), queueCapacity);
+    }
+    return new Result(run.readCount.get(), run.sentCount.get());
+  }
+
+  /**
+   * Number of messages read and sent by a run of the pipeline.
+   */
+  public static final class Result {
+    private final long readCount;
+    private final long sentCount;
+
+    Result(final long readCount, final long sentCount) {
+      this.readCount = readCount;
+      this.sentCount = sentCount;
+    }
+
+    public long readCount() {
+      return readCount;
+    }
+
+    public long sentCount() {
+      return sentCount;
+    }
+  }
+
+  // State of one run, shared by the stages
+  private final class Run {
+    final BlockingQueue<List<LogMessage>> formatQueue = new ArrayBlockingQueue<>(queueCapacity);
+    final BlockingQueue<List<GelfMessage>> sendQueue = new ArrayBlockingQueue<>(queueCapacity);
+    final LongAccumulator formatQueueMax = new LongAccumulator(Math::max, 0);
+    final LongAccumulator sendQueueMax = new LongAccumulator(Math::max, 0);
+    final AtomicInteger runningFormatters = new AtomicInteger(formatThreads);
+    final AtomicLong readCount = new AtomicLong();
+    final AtomicLong sentCount = new AtomicLong();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    volatile boolean aborted;
+
+    // Reader stage on the calling thread
+    void read(final Iterator<LogMessage> logMessages, final int batchSize) throws InterruptedException {
+      List<LogMessage> batch = new ArrayList<>(batchSize);
+      while (logMessages.hasNext()) {
+        batch.add(logMessages.next());
+        if (batch.size() >= batchSize) {
+          if (!put(formatQueue, batch, formatQueueMax)) {
+            return;
+          }
+          readCount.addAndGet(batch.size());
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        if (!put(formatQueue, batch, formatQueueMax)) {
+          return;
+        }
+        readCount.addAndGet(batch.size());
+      }
+      for (int i = 0; i < formatThreads; i++) {
+        put(formatQueue, END_OF_LOG_MESSAGES, formatQueueMax);
+      }
+    }
+
+    void format() throws InterruptedException {
+      try {
+        List<LogMessage> batch;
+        while ((batch = take(formatQueue)) != END_OF_LOG_MESSAGES) {
+          if (batch == null) {
+            return;
+          }
+          final List<GelfMessage> gelfMessages = new ArrayList<>(batch.size());
+          for (LogMessage logMessage : batch) {
+            gelfMessages.add(gelfFormatter.formatMessage(logMessage));
+          }
+          if (!put(sendQueue, gelfMessages, sendQueueMax)) {
+            return;
+          }
+        }
+        // The last formatter passes the end on to every sender
+        if (runningFormatters.decrementAndGet() == 0) {
+          for (int i = 0; i < sendThreads; i++) {
+            put(sendQueue, END_OF_GELF_MESSAGES, sendQueueMax);
+          }
+        }
+      } catch (RuntimeException | InterruptedException e) {
+        fail(e);
+        throw e;
+      }
+    }
+
+    void send() throws InterruptedException {
+      try {
+        List<GelfMessage> batch;
+        while ((batch = take(sendQueue)) != END_OF_GELF_MESSAGES) {
+          if (batch == null) {
+            return;
+          }
+          sentCount.addAndGet(gelfSender.sendMessages(batch));
+        }
+      } catch (RuntimeException | InterruptedException e) {
+        fail(e);
+        throw e;
+      }
+    }
+
+    // Stops all stages, the first failure is reported
+    void fail(final Throwable cause) {
+      failure.compareAndSet(null, cause);
+      aborted = true;
+    }
+
+    // Blocks while the queue is full, returns false once another stage failed
+    <T> boolean put(final BlockingQueue<T> queue, final T item, final LongAccumulator max) throws InterruptedException {
+      while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (aborted) {
+          return false;
+        }
+      }
+      max.accumulate(queue.size());
+      return !aborted;
+    }
+
+    // Blocks while the queue is empty, returns null once another stage failed
+    <T> T take(final BlockingQueue<T> queue) throws InterruptedException {
+      T item;
+      while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+        if (aborted) {
+          return null;
+        }
+      }
+      return aborted ? null : item;
+    }
+  }
+
+  private static ThreadFactory namedThreads(final String prefix) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, prefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,39 @@
+package org.rolandort.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resolveFilesDirectoriesAndGlobsTest() throws IOException {
+        final Path a = Files.writeString(tempDir.resolve("a.json"), "");
+        final Path b = Files.writeString(tempDir.resolve("b.csv"), "");
+        final Path c = Files.writeString(Files.createDirectories(tempDir.resolve("2019-12-21")).resolve("c.json"), "");
+        final Path d = Files.writeString(Files.createDirectories(tempDir.resolve("2019-12-22")).resolve("d.json"), "");
+
+        assertEquals(List.of(b), LogFileResolver.resolve(List.of(b.toString())));
+        assertEquals(List.of(c), LogFileResolver.resolve(List.of(tempDir.resolve("2019-12-21").toString())));
+        assertEquals(List.of(c, d), LogFileResolver.resolve(List.of(tempDir + "/2019-12-*/*.json")));
+        assertEquals(List.of(c, d, a), LogFileResolver.resolve(List.of(tempDir + "/**.json")));
+
+        // Duplicates are removed, the argument order is kept
+        assertEquals(List.of(b, c, d, a), LogFileResolver.resolve(List.of(b.toString(), tempDir.toString())));
+    }
+
+    @Test
+    void missingInputIsRejectedTest() {
+        assertThrows(IllegalArgumentException.class, () -> LogFileResolver.resolve(List.of(tempDir.resolve("missing.json").toString())));
+        assertThrows(IllegalArgumentException.class, () -> LogFileResolver.resolve(List.of(tempDir + "/*.txt")));
+    }
+}
@@ -0,0 +1,123 @@
+package org.rolandort.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.LogMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogMessageDeduplicatorTest {
+
+    @Test
+    void dropRepeatedMessagesTest() {
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(1000, Duration.ZERO, 0.001);
+
+        final List<LogMessage> logMessages = new ArrayList<>();
+        logMessages.add(logMessage(1, "/a"));
+        logMessages.add(logMessage(2, "/a"));
+        logMessages.add(logMessage(1, "/a"));      // repeat
+        logMessages.add(logMessage(1, "/b"));
+        logMessages.add(logMessage(1, null));
+        logMessages.add(logMessage(1, null));      // repeat with a missing field
+
+        final List<LogMessage> unique = deduplicator.filter(logMessages);
+
+        assertEquals(List.of(logMessages.get(0), logMessages.get(1), logMessages.get(3), logMessages.get(4)), unique);
+        assertEquals(2, deduplicator.duplicateCount());
+    }
+
+    @Test
+    void fieldBoundariesTest() {
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(1000, Duration.ZERO, 0.001);
+        final LogMessage first = new LogMessage();
+        first.setClientIp("10.0.0.1");
+        first.setClientIpClass("x");
+        final LogMessage second = new LogMessage();
+        second.setClientIp("10.0.0.1x");
+        second.setClientIpClass("");
+
+        assertFalse(deduplicator.isDuplicate(first));
+        assertFalse(deduplicator.isDuplicate(second));
+    }
+
+    @Test
+    void filterIteratorCountsDroppedMessagesTest() {
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(1000, Duration.ZERO, 0.001);
+        final List<LogMessage> logMessages = List.of(logMessage(1, "/a"), logMessage(1, "/a"), logMessage(1, "/a"),
+                logMessage(2, "/a"));
+
+        final LogMessageDeduplicator.FilteringIterator unique = deduplicator.filter(logMessages.iterator());
+
+        final List<LogMessage> result = new ArrayList<>();
+        unique.forEachRemaining(result::add);
+        assertEquals(List.of(logMessages.get(0), logMessages.get(3)), result);
+        assertEquals(2, unique.droppedCount());
+    }
+
+    @Test
+    void countWindowTest() {
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(100, Duration.ZERO, 0.001);
+        assertFalse(deduplicator.isDuplicate(logMessage(0, "/a")));
+
+        // Still remembered after one window, forgotten after two
+        addDistinctMessages(deduplicator, 1, 150);
+        assertTrue(deduplicator.isDuplicate(logMessage(0, "/a")));
+        addDistinctMessages(deduplicator, 1000, 250);
+        assertFalse(deduplicator.isDuplicate(logMessage(0, "/a")));
+    }
+
+    @Test
+    void timeWindowTest() {
+        final AtomicLong clock = new AtomicLong();
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(1000, Duration.ofSeconds(10), 0.001, clock::get);
+        assertFalse(deduplicator.isDuplicate(logMessage(0, "/a")));
+
+        clock.set(Duration.ofSeconds(15).toNanos());
+        assertTrue(deduplicator.isDuplicate(logMessage(0, "/a")));
+        clock.set(Duration.ofSeconds(26).toNanos());
+        deduplicator.isDuplicate(logMessage(1, "/a"));
+        clock.set(Duration.ofSeconds(37).toNanos());
+        assertFalse(deduplicator.isDuplicate(logMessage(0, "/a")));
+    }
+
+    @Test
+    void falsePositiveRateTest() {
+        final LogMessageDeduplicator deduplicator = new LogMessageDeduplicator(50_000, Duration.ZERO, 0.01);
+
+        // Both generations are full most of the time, distinct messages must rarely be dropped
+        addDistinctMessages(deduplicator, 0, 200_000);
+
+        assertTrue(deduplicator.duplicateCount() < 200_000 * 0.01, "False positives: " + deduplicator.duplicateCount());
+    }
+
+    private static void addDistinctMessages(final LogMessageDeduplicator deduplicator, final int first, final int count) {
+        final Iterator<LogMessage> logMessages = new Iterator<>() {
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < first + count;
+            }
+
+            @Override
+            public LogMessage next() {
+                return logMessage(next++, "/distinct");
+            }
+        };
+        deduplicator.filter(logMessages).forEachRemaining(logMessage -> { });
+    }
+
+    private static LogMessage logMessage(final int id, final String uri) {
+        final LogMessage logMessage = new LogMessage();
+        logMessage.setClientIp("10." + (id >> 16 & 255) + "." + (id >> 8 & 255) + "." + (id & 255));
+        logMessage.setClientRequestUri(uri);
+        logMessage.setClientStatus(200);
+        logMessage.setEdgeStartTimestamp(1576929197.0);
+        return logMessage;
+    }
+}
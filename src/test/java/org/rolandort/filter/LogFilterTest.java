@@ -0,0 +1,118 @@
+package org.rolandort.filter;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+import org.rolandort.parser.CsvLogParser;
+import org.rolandort.parser.JsonLogParser;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFilterTest {
+
+    @Test
+    void compareFieldsTest() {
+        final LogMessage logMessage = logMessage("10.0.0.1", "/api/search", 404);
+
+        assertTrue(LogFilter.compile("ClientStatus >= 400").test(logMessage));
+        assertFalse(LogFilter.compile("clientStatus < 400").test(logMessage));
+        assertTrue(LogFilter.compile("ClientStatus = 404 and ClientIP == '10.0.0.1'").test(logMessage));
+        assertTrue(LogFilter.compile("ClientStatus in (200, 404) && ClientRequestURI ~ \"^/api/\"").test(logMessage));
+        assertFalse(LogFilter.compile("ClientStatus not in (200, 404) || ClientRequestURI !~ 'search'").test(logMessage));
+        assertTrue(LogFilter.compile("not (ClientStatus == 200 or false) and true").test(logMessage));
+        assertTrue(LogFilter.compile("OriginResponseTime is null and ClientIP is not null").test(logMessage));
+    }
+
+    @Test
+    void comparisonWithMissingValueIsFalseTest() {
+        final LogMessage logMessage = logMessage(null, null, 200);
+
+        assertFalse(LogFilter.compile("ClientIP == '10.0.0.1'").test(logMessage));
+        assertFalse(LogFilter.compile("ClientIP != '10.0.0.1'").test(logMessage));
+        assertFalse(LogFilter.compile("OriginResponseTime < 100").test(logMessage));
+        assertTrue(LogFilter.compile("not OriginResponseTime < 100").test(logMessage));
+    }
+
+    @Test
+    void referencedFieldsTest() {
+        final LogFilter filter = LogFilter.compile("ClientStatus >= 400 or sample(1%, ClientIP)");
+
+        assertEquals(Set.of(LogMessageField.CLIENT_STATUS, LogMessageField.CLIENT_IP), filter.fields());
+        assertTrue(filter.references(LogMessageField.CLIENT_IP));
+        assertFalse(filter.references(LogMessageField.CLIENT_REQUEST_URI));
+        assertEquals(Set.of(LogMessageField.values()), LogFilter.compile("sample(0.5)").fields());
+        assertEquals("ClientStatus >= 400 or sample(1%, ClientIP)", filter.toString());
+    }
+
+    @Test
+    void invalidExpressionTest() {
+        final IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+                () -> LogFilter.compile("ClientStatus >= 400 and Unknown == 'x'"));
+        assertTrue(unknown.getMessage().startsWith("Unknown field 'Unknown' at position 25"), unknown.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientStatus >= 'x'"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientIP > '10.0.0.1'"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientStatus ~ '4..'"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientIP ~ '['"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("(ClientStatus == 200"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientStatus == 200 200"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("sample(150%)"));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("ClientIP == 'unterminated"));
+    }
+
+    @Test
+    void sampleIsDeterministicTest() {
+        final LogFilter filter = LogFilter.compile("sample(10%, ClientIP)");
+        final LogFilter same = LogFilter.compile("sample(0.1, ClientIP)");
+
+        int kept = 0;
+        for (int i = 0; i < 100_000; i++) {
+            final String clientIp = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+            final boolean accepted = filter.test(logMessage(clientIp, "/a", 200));
+            assertEquals(accepted, same.test(logMessage(clientIp, "/a", 200)));
+            // Only the sampled field decides
+            assertEquals(accepted, filter.test(logMessage(clientIp, "/b", 500)));
+            if (accepted) {
+                kept++;
+            }
+        }
+        assertTrue(kept > 9_000 && kept < 11_000, "Kept: " + kept);
+        assertFalse(LogFilter.compile("sample(0)").test(logMessage("10.0.0.1", "/a", 200)));
+        assertTrue(LogFilter.compile("sample(100%)").test(logMessage("10.0.0.1", "/a", 200)));
+    }
+
+    @Test
+    void filterWhileParsingTest() {
+        final LogFilter filter = LogFilter.compile("ClientStatus >= 400 and ClientRequestURI !~ 'login' or sample(5%)");
+        final List<LogMessage> jsonMessages = new JsonLogParser().parseLogFile(Path.of("sample-messages.txt"));
+        final List<LogMessage> expected = jsonMessages.stream().filter(filter).toList();
+        assertFalse(expected.isEmpty());
+        assertTrue(expected.size() < jsonMessages.size());
+
+        assertEquals(expected, new JsonLogParser(filter).parseLogFile(Path.of("sample-messages.txt")));
+        assertEquals(expected, new CsvLogParser(filter).parseLogFile(Path.of("sample-messages.csv")));
+    }
+
+    @Test
+    void rejectLineWhileParsingTest() {
+        final JsonLogParser parser = new JsonLogParser(LogFilter.compile("ClientStatus == 200"));
+
+        assertTrue(parser.parseLine("{\"ClientIP\": \"10.0.0.1\", \"ClientStatus\": 404, \"ClientRequestURI\": \"/\"}").isEmpty());
+        final LogMessage logMessage = parser.parseLine("{\"ClientIP\": \"10.0.0.1\", \"ClientStatus\": 200, \"ClientRequestURI\": \"/\"}").orElseThrow();
+        assertEquals("10.0.0.1", logMessage.getClientIp());
+        assertEquals("/", logMessage.getClientRequestUri());
+    }
+
+    private static LogMessage logMessage(final String clientIp, final String uri, final int status) {
+        final LogMessage logMessage = new LogMessage();
+        logMessage.setClientIp(clientIp);
+        logMessage.setClientRequestUri(uri);
+        logMessage.setClientStatus(status);
+        return logMessage;
+    }
+}
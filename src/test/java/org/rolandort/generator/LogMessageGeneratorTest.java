@@ -0,0 +1,90 @@
+package org.rolandort.generator;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.LogMessage;
+import org.rolandort.parser.JsonLogParser;
+import org.rolandort.parser.ParserType;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogMessageGeneratorTest {
+
+    private static LogMessage seedMessage(final String deviceType, final String clientIp, final int status, final int bytes) {
+        final LogMessage logMessage = new LogMessage();
+        logMessage.setClientDeviceType(deviceType);
+        logMessage.setClientIp(clientIp);
+        logMessage.setClientStatus(status);
+        logMessage.setClientRequestBytes(bytes);
+        logMessage.setEdgeStartTimestamp(1576929197.0);
+        return logMessage;
+    }
+
+    private static final List<LogMessage> SEED = List.of(
+        seedMessage("desktop", "192.168.1.10", 200, 100),
+        seedMessage("desktop", "192.168.7.20", 200, 200),
+        seedMessage("desktop", "10.1.2.3", 404, 300),
+        seedMessage("mobile", "192.168.3.4", 200, 400));
+
+    @Test
+    void generatesValuesOfTheSeedTest() {
+        final LogMessageModel model = LogMessageModel.learn(SEED);
+        final SplittableRandom random = new SplittableRandom(42);
+
+        int desktopCount = 0;
+        for (int i = 0; i < 10_000; i++) {
+            final LogMessage logMessage = model.generate(i, random);
+            assertTrue(Set.of("desktop", "mobile").contains(logMessage.getClientDeviceType()));
+            assertTrue(Set.of(200, 404).contains(logMessage.getClientStatus()));
+            assertTrue(logMessage.getClientIp().startsWith("192.168.") || logMessage.getClientIp().startsWith("10.1."),
+                logMessage.getClientIp());
+            assertTrue(logMessage.getClientRequestBytes() >= 100 && logMessage.getClientRequestBytes() <= 400);
+            assertNull(logMessage.getClientRequestUri(), "Fields missing in the seed stay missing");
+            if ("desktop".equals(logMessage.getClientDeviceType())) {
+                desktopCount++;
+            }
+        }
+        assertEquals(7500, desktopCount, 300, "Values should keep their seed frequency");
+
+        // Four seed messages within one second: four messages per second
+        assertEquals(1576929197.0, model.generate(3, random).getEdgeStartTimestamp());
+        assertEquals(1576929198.0, model.generate(4, random).getEdgeStartTimestamp());
+    }
+
+    @Test
+    void sameSeedGeneratesSameMessagesTest() {
+        final LogMessageModel model = LogMessageModel.learn(SEED);
+        final List<LogMessage> oneThread;
+        try (Stream<LogMessage> stream = new LogMessageGenerator(model, 1, 7).stream(25_000)) {
+            oneThread = stream.toList();
+        }
+        final List<LogMessage> fourThreads;
+        try (Stream<LogMessage> stream = new LogMessageGenerator(model, 4, 7).stream(25_000)) {
+            fourThreads = stream.toList();
+        }
+
+        assertEquals(25_000, oneThread.size());
+        assertEquals(oneThread, fourThreads);
+    }
+
+    @Test
+    void writtenMessagesCanBeParsedTest() {
+        final LogMessageModel model = LogMessageModel.learn(SEED);
+        final List<LogMessage> logMessages;
+        try (Stream<LogMessage> stream = new LogMessageGenerator(model, 2, 1).stream(100)) {
+            logMessages = stream.toList();
+        }
+
+        final String text = new LogMessageWriter(ParserType.JSON).format(logMessages);
+        final JsonLogParser parser = new JsonLogParser();
+        final List<LogMessage> parsed = text.lines().map(parser::parseLine).flatMap(Optional::stream)
+            .collect(Collectors.toList());
+        assertEquals(logMessages, parsed);
+    }
+}
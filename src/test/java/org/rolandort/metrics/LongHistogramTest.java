@@ -0,0 +1,34 @@
+package org.rolandort.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHistogramTest {
+
+    @Test
+    void bucketsCoverValuesWithBoundedErrorTest() {
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            final long upperBound = LongHistogram.upperBound(LongHistogram.bucket(value));
+            assertTrue(upperBound >= value, "Upper bound below " + value);
+            assertTrue(upperBound - value <= value / 8, "Upper bound too far above " + value);
+        }
+    }
+
+    @Test
+    void percentilesTest() {
+        final LongHistogram histogram = new LongHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(500_500_000L, histogram.sum());
+        assertEquals(1_000_000L, histogram.max());
+        assertEquals(500_000, histogram.percentile(0.5), 500_000 / 8.0);
+        assertEquals(990_000, histogram.percentile(0.99), 990_000 / 8.0);
+        assertEquals(1_000_000L, histogram.percentile(1.0));
+    }
+}
@@ -0,0 +1,47 @@
+package org.rolandort.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTraceTest {
+
+    @AfterEach
+    void tearDown() {
+        MessageTrace.configure(false, MessageTrace.DEFAULT_EVERY, MessageTrace.DEFAULT_PER_SECOND);
+    }
+
+    private static int countSampled(final MessageTrace trace, final int messages) {
+        int sampled = 0;
+        for (int i = 0; i < messages; i++) {
+            if (trace.sample()) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    void samplesEveryNthMessageTest() {
+        MessageTrace.configure(false, 100, 0);
+        assertEquals(10, countSampled(MessageTrace.forStage("test"), 1000));
+    }
+
+    @Test
+    void limitsSamplesPerSecondTest() {
+        MessageTrace.configure(false, 1, 5);
+        // May span two seconds on a slow machine
+        final int sampled = countSampled(MessageTrace.forStage("test"), 1000);
+        assertTrue(sampled >= 5 && sampled <= 10, "Sampled " + sampled);
+    }
+
+    @Test
+    void fullTraceAndOffTest() {
+        MessageTrace.configure(true, 0, 1);
+        assertEquals(1000, countSampled(MessageTrace.forStage("test"), 1000));
+
+        MessageTrace.configure(false, 0, 0);
+        assertEquals(0, countSampled(MessageTrace.forStage("test"), 1000));
+    }
+}
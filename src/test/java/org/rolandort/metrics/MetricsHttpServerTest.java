@@ -0,0 +1,38 @@
+package org.rolandort.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsHttpServerTest {
+
+    @Test
+    void servesPrometheusTextTest() throws Exception {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordsRead.add(42);
+        metrics.sendNanos.record(2_000_000);
+        metrics.recordHttpResponse(202);
+        metrics.recordHttpResponse(503);
+        metrics.registerGauge("queue_depth", () -> 7);
+
+        try (MetricsHttpServer server = new MetricsHttpServer(metrics, 0)) {
+            final HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            final String body = response.body();
+            assertTrue(body.contains("# TYPE log2graylog_records_read_total counter\nlog2graylog_records_read_total 42\n"));
+            assertTrue(body.contains("log2graylog_send_seconds_count 1\n"));
+            assertTrue(body.contains("log2graylog_send_seconds_max 0.002\n"));
+            assertTrue(body.contains("log2graylog_http_responses_total{code=\"202\"} 1\n"));
+            assertTrue(body.contains("log2graylog_http_responses_total{code=\"503\"} 1\n"));
+            assertTrue(body.contains("log2graylog_queue_depth 7\n"));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.rolandort.model;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GelfSerializerTest {
+
+    private GelfMessage gelfMessage;
+
+    @BeforeEach
+    void setUp() {
+        gelfMessage = new GelfMessage();
+        gelfMessage.setHost("192.168.87.52");
+        gelfMessage.setShortMessage("Request from 192.168.87.52 -> 172.16.153.30: /search (403)");
+        gelfMessage.setFullMessage("Request from desktop from 192.168.87.52:122 -> 172.16.153.30: /search (403)");
+        gelfMessage.setTimestamp(1576929197.0);
+
+        final Map<String, Object> additionalFields = new HashMap<>();
+        additionalFields.put("clientDeviceType", "desktop");
+        additionalFields.put("clientStatus", 403);
+        additionalFields.put("originResponseTime", -337000000);
+        additionalFields.put("edgeStartTimestamp", 1576929197.5);
+        additionalFields.put("clientRequestUserAgent", "Mozilla/5.0 (compatible, MSIE 11, Windows NT 6.3; Trident/7.0; rv:11.0) like Gecko");
+        additionalFields.put("cached", true);
+        gelfMessage.setAdditionalFields(additionalFields);
+    }
+
+    @Test
+    void serializeLikeGsonTest() {
+        assertEquals(toGsonJson(gelfMessage), new String(GelfSerializer.serialize(gelfMessage), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void serializeEscapedAndUnicodeStringsTest() {
+        gelfMessage.setShortMessage("quote \" backslash \\ tab \t newline \n control \u0001 separator \u2028 html <&>");
+        gelfMessage.setFullMessage("umlaut \u00e4 euro \u20ac emoji \ud83d\ude00 lone \ud83d");
+        gelfMessage.getAdditionalFields().put("clientRequestUri", "/search?q=\"caf\u00e9\"");
+
+        // Compare the bytes as sent, a lone surrogate is encoded as '?'
+        assertArrayEquals(toGsonJson(gelfMessage).getBytes(StandardCharsets.UTF_8), GelfSerializer.serialize(gelfMessage));
+    }
+
+    @Test
+    void serializeNullValuesTest() {
+        final GelfMessage emptyMessage = new GelfMessage();
+        emptyMessage.getAdditionalFields().put("clientIp", null);
+
+        assertEquals("{\"version\":\"1.1\",\"host\":null,\"short_message\":null,\"full_message\":null,"
+                + "\"timestamp\":null,\"level\":1,\"_clientIp\":null}", emptyMessage.toString());
+    }
+
+    @Test
+    void cachedSerializationTest() {
+        final byte[] json = gelfMessage.toJsonBytes();
+        assertSame(json, gelfMessage.toJsonBytes(), "Serialized form should be cached");
+        assertEquals(new String(json, StandardCharsets.UTF_8), gelfMessage.toString());
+    }
+
+    @Test
+    void settersInvalidateCachedSerializationTest() {
+        final byte[] json = gelfMessage.toJsonBytes();
+        gelfMessage.setShortMessage("changed");
+        assertTrue(gelfMessage.toString().contains("\"short_message\":\"changed\""));
+
+        // Logging the message must not make it read-only, a change of the map invalidates the cache
+        gelfMessage.getAdditionalFields().put("clientStatus", 200);
+        assertTrue(gelfMessage.toString().contains("\"_clientStatus\":200"));
+        final Map<String, Object> additionalFields = new HashMap<>(gelfMessage.getAdditionalFields());
+        additionalFields.put("clientStatus", 404);
+        gelfMessage.setAdditionalFields(additionalFields);
+        assertTrue(gelfMessage.toString().contains("\"_clientStatus\":404"));
+        assertNotEquals(new String(json, StandardCharsets.UTF_8), gelfMessage.toString());
+    }
+
+    @Test
+    void fromJsonBytesTest() {
+        final GelfMessage restored = GelfMessage.fromJsonBytes(gelfMessage.toJsonBytes());
+
+        assertEquals(gelfMessage, restored);
+        assertEquals(gelfMessage.hashCode(), restored.hashCode());
+        assertEquals(gelfMessage.getShortMessage(), restored.getShortMessage());
+        assertEquals(403, restored.getAdditionalFields().get("clientStatus"));
+        assertEquals(1576929197.5, restored.getAdditionalFields().get("edgeStartTimestamp"));
+        assertArrayEquals(gelfMessage.toJsonBytes(), restored.toJsonBytes());
+
+        // Restored messages with different content are not equal
+        gelfMessage.setHost("10.0.0.1");
+        assertNotEquals(restored, GelfMessage.fromJsonBytes(gelfMessage.toJsonBytes()));
+        assertEquals(GelfMessage.fromJsonBytes("{\"version\":\"1.1\",\"level\":1,\"_big\":5000000000}".getBytes(StandardCharsets.UTF_8))
+                .getAdditionalFields().get("big"), 5_000_000_000L);
+    }
+
+    // Reference implementation using a Gson JSON tree
+    private static String toGsonJson(final GelfMessage message) {
+        final JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("version", message.getVersion());
+        jsonObject.addProperty("host", message.getHost());
+        jsonObject.addProperty("short_message", message.getShortMessage());
+        jsonObject.addProperty("full_message", message.getFullMessage());
+        jsonObject.addProperty("timestamp", message.getTimestamp());
+        jsonObject.addProperty("level", message.getLevel());
+
+        for (Map.Entry<String, Object> entry : message.getAdditionalFields().entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof Number) {
+                jsonObject.addProperty("_" + entry.getKey(), (Number) value);
+            } else if (value instanceof Boolean) {
+                jsonObject.addProperty("_" + entry.getKey(), (Boolean) value);
+            } else {
+                jsonObject.addProperty("_" + entry.getKey(), value.toString());
+            }
+        }
+        return jsonObject.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package org.rolandort.parser;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rolandort.model.LogMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLogParserTest {
+
+    private CsvLogParser parser;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        parser = new CsvLogParser();
+    }
+
+    @Test
+    void parseLineInDefaultColumnOrderTest() {
+        final Optional<LogMessage> result = parser.parseLine("desktop,192.168.87.52,noRecord,403,889,graylog.org,/search,"
+                + "\"Mozilla/5.0 (compatible, MSIE 11, Windows NT 6.3; Trident/7.0; rv:11.0) like Gecko\",122,10.0.151.71,1576929197,172.16.153.30,821,337000000");
+
+        assertTrue(result.isPresent(), "Log message should be parsed");
+        final LogMessage logMessage = result.get();
+        assertEquals("desktop", logMessage.getClientDeviceType());
+        assertEquals(403, logMessage.getClientStatus());
+        assertEquals("Mozilla/5.0 (compatible, MSIE 11, Windows NT 6.3; Trident/7.0; rv:11.0) like Gecko", logMessage.getClientRequestUserAgent());
+        assertEquals(1576929197.0, logMessage.getEdgeStartTimestamp());
+        assertEquals(337000000, logMessage.getOriginResponseTime());
+    }
+
+    @Test
+    void parseLineWithInsufficientColumnsTest() {
+        assertTrue(parser.parseLine("desktop,192.168.87.52,noRecord").isEmpty(), "Short line should be rejected");
+        assertTrue(parser.parseLine("").isEmpty(), "Empty line should be rejected");
+    }
+
+    @Test
+    void parseFileWithReorderedHeaderTest() throws IOException {
+        final Path file = tempDir.resolve("reordered.csv");
+        Files.writeString(file, String.join("\r\n",
+                "ClientStatus,Extra,ClientIP,ClientRequestUserAgent,EdgeStartTimestamp,ClientRequestURI,OriginResponseTime,ClientSrcPort,ClientDeviceType,DestinationIP",
+                "200,ignored,10.0.0.1,\"Agent \"\"quoted\"\", with comma\",1576929197.5,/search,,x,mobile,172.16.0.1",
+                "404,ignored,10.0.0.2,  \"multi",
+                "line\",1576929198,/,42,7,desktop,172.16.0.2",
+                ""));
+
+        final List<LogMessage> logMessages = parser.parseLogFile(file);
+        assertEquals(2, logMessages.size());
+
+        final LogMessage first = logMessages.get(0);
+        assertEquals(200, first.getClientStatus());
+        assertEquals("10.0.0.1", first.getClientIp());
+        assertEquals("Agent \"quoted\", with comma", first.getClientRequestUserAgent());
+        assertEquals(1576929197.5, first.getEdgeStartTimestamp());
+        assertEquals("/search", first.getClientRequestUri());
+        assertNull(first.getOriginResponseTime(), "Empty number should be null");
+        assertNull(first.getClientSrcPort(), "Invalid number should be null");
+        assertEquals("mobile", first.getClientDeviceType());
+        assertNull(first.getEdgeServerIp(), "Field without column should be null");
+
+        final LogMessage second = logMessages.get(1);
+        assertEquals("multi\r\nline", second.getClientRequestUserAgent());
+        assertEquals(42, second.getOriginResponseTime());
+        assertEquals("172.16.0.2", second.getDestinationIp());
+    }
+
+    @Test
+    void parseSampleFileLikeJsonTest() {
+        final List<LogMessage> csvMessages = parser.parseLogFile(Path.of("sample-messages.csv"));
+        final List<LogMessage> jsonMessages = new JsonLogParser().parseLogFile(Path.of("sample-messages.txt"));
+
+        assertEquals(100, csvMessages.size());
+        assertEquals(jsonMessages, csvMessages, "CSV and JSON sample files contain the same messages");
+    }
+}
@@ -0,0 +1,119 @@
+package org.rolandort.parser;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rolandort.model.LogMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLogParserTest {
+
+    private static final Path SAMPLE_FILE = Path.of("sample-messages.txt");
+
+    private JsonLogParser parser;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        parser = new JsonLogParser();
+    }
+
+    @Test
+    void parseValidLineTest() {
+        final Optional<LogMessage> result = parser.parseLine("{\"ClientDeviceType\": \"desktop\",\"ClientIP\": \"192.168.87.52\","
+                + "\"ClientStatus\": 403, \"ClientSrcPort\":122,\"EdgeStartTimestamp\": 1576929197,\"OriginResponseTime\": 337000000}");
+
+        assertTrue(result.isPresent(), "Log message should be parsed");
+        final LogMessage logMessage = result.get();
+        assertEquals("desktop", logMessage.getClientDeviceType());
+        assertEquals("192.168.87.52", logMessage.getClientIp());
+        assertEquals(403, logMessage.getClientStatus());
+        assertEquals(122, logMessage.getClientSrcPort());
+        assertEquals(1576929197.0, logMessage.getEdgeStartTimestamp());
+        assertEquals(337000000, logMessage.getOriginResponseTime());
+        assertNull(logMessage.getClientRequestUri(), "Missing fields should be null");
+    }
+
+    @Test
+    void parseLikeGsonTest() {
+        final Gson gson = new Gson();
+        final List<String> lines = List.of(
+                "{\"ClientRequestURI\": \"/search?q=\\\"caf\\u00e9\\\"\\n\", \"ClientStatus\": null, \"EdgeStartTimestamp\": -1576929197.125}",
+                "{\"Unknown\": {\"nested\": [1, \"}\", {\"a\": null}]}, \"ClientIP\": \"10.0.0.1\", \"Other\": true, \"Number\": 1.5e3}",
+                "{\"ClientStatus\": 200.0, \"EdgeStartTimestamp\": 1.5e9, \"ClientIP\": \"10.0.0.1\"}",
+                "{\"ClientSrcPort\": \"122\", \"ClientIP\": \"10.0.0.1\"}",
+                "  {}  ");
+
+        for (String line : lines) {
+            assertEquals(gson.fromJson(line, LogMessage.class), parser.parseLine(line).orElse(null), line);
+        }
+    }
+
+    @Test
+    void parseMalformedLineTest() {
+        assertTrue(parser.parseLine("{\"ClientIP\": \"10.0.0.1\", \"ClientStatus\": 2000000000000}").isEmpty(), "Integer overflow should be rejected");
+        assertTrue(parser.parseLine("{\"ClientIP\": \"10.0.0.1\"} trailing").isEmpty(), "Trailing data should be rejected");
+        assertTrue(parser.parseLine("{\"ClientIP\": ").isEmpty(), "Truncated line should be rejected");
+        assertTrue(parser.parseLine("").isEmpty(), "Empty line should be rejected");
+    }
+
+    @Test
+    void streamSampleFileLikeGsonTest() throws IOException {
+        final Gson gson = new Gson();
+        final List<LogMessage> expected = Files.readAllLines(SAMPLE_FILE).stream()
+                .map(line -> gson.fromJson(line, LogMessage.class))
+                .toList();
+
+        try (Stream<LogMessage> logMessages = parser.streamLogFile(SAMPLE_FILE)) {
+            assertEquals(expected, logMessages.toList());
+        }
+    }
+
+    @Test
+    void parseMultiMemberGzipFileTest() throws IOException {
+        // Two gzip members, split in the middle of a line, as produced by appending compressed files
+        final byte[] content = Files.readAllBytes(SAMPLE_FILE);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (final int[] range : new int[][] {{0, content.length / 2}, {content.length / 2, content.length}}) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes) {
+                @Override
+                public void close() throws IOException {
+                    finish();
+                }
+            }) {
+                gzip.write(content, range[0], range[1] - range[0]);
+            }
+        }
+        final Path file = tempDir.resolve("sample-messages.log");
+        Files.write(file, bytes.toByteArray());
+
+        assertEquals(parser.parseLogFile(SAMPLE_FILE), parser.parseLogFile(file));
+    }
+
+    @Test
+    void parseShortAndCorruptGzipFilesTest() throws IOException {
+        // Files shorter than the gzip magic bytes are read as text
+        final Path empty = Files.write(tempDir.resolve("empty.log"), new byte[0]);
+        final Path single = Files.write(tempDir.resolve("single.log"), new byte[] {0x1f});
+        assertTrue(parser.parseLogFile(empty).isEmpty());
+        assertTrue(parser.parseLogFile(single).isEmpty());
+
+        // A file with the magic bytes but an invalid gzip header fails to open
+        final Path corrupt = Files.write(tempDir.resolve("corrupt.log"), new byte[] {0x1f, (byte) 0x8b, 0x00, 0x00});
+        assertThrows(IOException.class, () -> LogFileReader.open(corrupt));
+        assertTrue(parser.parseLogFile(corrupt).isEmpty());
+    }
+}
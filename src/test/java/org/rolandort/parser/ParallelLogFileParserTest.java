@@ -0,0 +1,50 @@
+package org.rolandort.parser;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.LogMessage;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelLogFileParserTest {
+
+    // Small chunks, so the sample files are split into many chunks
+    private static final int CHUNK_SIZE = 1024;
+
+    @Test
+    void parseJsonFileInOrderTest() {
+        final LogParser logParser = new JsonLogParser();
+        final Path file = Path.of("sample-messages.txt");
+
+        assertEquals(logParser.parseLogFile(file), parse(logParser, file, true));
+    }
+
+    @Test
+    void parseCsvFileInOrderTest() {
+        final LogParser logParser = new CsvLogParser();
+        final Path file = Path.of("sample-messages.csv");
+
+        assertEquals(logParser.parseLogFile(file), parse(logParser, file, true));
+    }
+
+    @Test
+    void parseJsonFileUnorderedTest() {
+        final LogParser logParser = new JsonLogParser();
+        final Path file = Path.of("sample-messages.txt");
+        final Comparator<LogMessage> byContent = Comparator.comparing(LogMessage::toString);
+
+        final List<LogMessage> expected = logParser.parseLogFile(file).stream().sorted(byContent).toList();
+        final List<LogMessage> actual = parse(logParser, file, false).stream().sorted(byContent).toList();
+        assertEquals(expected, actual);
+    }
+
+    private static List<LogMessage> parse(final LogParser logParser, final Path file, final boolean preserveOrder) {
+        try (Stream<LogMessage> logMessages = new ParallelLogFileParser(logParser, 4, preserveOrder, CHUNK_SIZE).streamLogFile(file)) {
+            return logMessages.toList();
+        }
+    }
+}
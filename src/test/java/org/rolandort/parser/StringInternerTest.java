@@ -0,0 +1,109 @@
+package org.rolandort.parser;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringInternerTest {
+
+    @Test
+    void internFromBufferTest() {
+        final StringInterner interner = StringInterner.defaults();
+        final char[] buffer = "xx desktop mobile desktop".toCharArray();
+
+        final String first = interner.intern(LogMessageField.CLIENT_DEVICE_TYPE, buffer, 3, 10);
+        final String second = interner.intern(LogMessageField.CLIENT_DEVICE_TYPE, buffer, 18, 25);
+
+        assertEquals("desktop", first);
+        assertSame(first, second);
+        assertEquals("mobile", interner.intern(LogMessageField.CLIENT_DEVICE_TYPE, buffer, 11, 17));
+        assertEquals(1, interner.hitCount(LogMessageField.CLIENT_DEVICE_TYPE));
+        assertEquals(2, interner.missCount(LogMessageField.CLIENT_DEVICE_TYPE));
+        assertEquals(1.0 / 3, interner.hitRate(LogMessageField.CLIENT_DEVICE_TYPE), 1e-9);
+        assertEquals("clientDeviceType 33.3%", interner.hitRates());
+    }
+
+    @Test
+    void uncachedValuesTest() {
+        final StringInterner interner = StringInterner.defaults();
+        final char[] ip = "10.0.0.1".toCharArray();
+        final char[] longValue = "x".repeat(StringInterner.MAX_LENGTH + 1).toCharArray();
+
+        assertFalse(interner.caches(LogMessageField.CLIENT_IP));
+        assertNotSame(interner.intern(LogMessageField.CLIENT_IP, ip, 0, ip.length), interner.intern(LogMessageField.CLIENT_IP, ip, 0, ip.length));
+        assertNotSame(interner.intern(LogMessageField.CLIENT_REQUEST_USER_AGENT, longValue, 0, longValue.length),
+                interner.intern(LogMessageField.CLIENT_REQUEST_USER_AGENT, longValue, 0, longValue.length));
+        assertFalse(StringInterner.disabled().caches(LogMessageField.CLIENT_DEVICE_TYPE));
+        assertEquals("", StringInterner.disabled().hitRates());
+    }
+
+    @Test
+    void boundedCapacityTest() {
+        final StringInterner interner = new StringInterner(Set.of(LogMessageField.CLIENT_REQUEST_URI), 64);
+
+        // Many distinct values evict each other but the recently used hot value stays in its set
+        final char[] hot = "/index.html".toCharArray();
+        final String cached = interner.intern(LogMessageField.CLIENT_REQUEST_URI, hot, 0, hot.length);
+        final IdentityHashMap<String, Boolean> instances = new IdentityHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            final char[] uri = ("/page/" + i).toCharArray();
+            interner.intern(LogMessageField.CLIENT_REQUEST_URI, uri, 0, uri.length);
+            instances.put(interner.intern(LogMessageField.CLIENT_REQUEST_URI, hot, 0, hot.length), true);
+        }
+
+        assertEquals(1, instances.size());
+        assertSame(cached, instances.keySet().iterator().next());
+        assertTrue(interner.hitRate(LogMessageField.CLIENT_REQUEST_URI) > 0.49);
+    }
+
+    @Test
+    void concurrentInternTest() throws Exception {
+        final StringInterner interner = StringInterner.defaults();
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        final char[] value = ("agent-" + i % 100).toCharArray();
+                        assertEquals(new String(value), interner.intern(LogMessageField.CLIENT_REQUEST_USER_AGENT, value, 0, value.length));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(400_000, interner.hitCount(LogMessageField.CLIENT_REQUEST_USER_AGENT)
+                + interner.missCount(LogMessageField.CLIENT_REQUEST_USER_AGENT));
+        assertTrue(interner.hitRate(LogMessageField.CLIENT_REQUEST_USER_AGENT) > 0.99);
+    }
+
+    @Test
+    void parsersShareRepeatedValuesTest() {
+        final StringInterner interner = StringInterner.defaults();
+        final List<LogMessage> jsonMessages = new JsonLogParser(null, interner).parseLogFile(Path.of("sample-messages.txt"));
+        final List<LogMessage> csvMessages = new CsvLogParser(null, interner).parseLogFile(Path.of("sample-messages.csv"));
+
+        assertEquals(jsonMessages, csvMessages);
+        for (int i = 0; i < jsonMessages.size(); i++) {
+            assertSame(jsonMessages.get(i).getClientDeviceType(), csvMessages.get(i).getClientDeviceType());
+            assertSame(jsonMessages.get(i).getClientRequestUserAgent(), csvMessages.get(i).getClientRequestUserAgent());
+        }
+        assertTrue(interner.hitRate(LogMessageField.CLIENT_DEVICE_TYPE) > 0.9);
+    }
+}
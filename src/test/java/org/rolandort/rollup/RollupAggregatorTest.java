@@ -0,0 +1,154 @@
+package org.rolandort.rollup;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.model.LogMessage;
+import org.rolandort.model.LogMessageField;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupAggregatorTest {
+
+    private static final List<LogMessageField> KEYS = List.of(LogMessageField.CLIENT_IP, LogMessageField.CLIENT_STATUS);
+
+    @Test
+    void summarizeGroupsPerWindowTest() {
+        final RollupAggregator aggregator = new RollupAggregator(KEYS, Duration.ofSeconds(60), 4);
+        for (int i = 1; i <= 100; i++) {
+            aggregator.add(logMessage("10.0.0.1", 200, 1200 + i % 60, i));
+        }
+        aggregator.add(logMessage("10.0.0.1", 404, 1210, 7));
+        aggregator.add(logMessage("10.0.0.2", 200, 1270, 9));
+
+        final List<GelfMessage> summaries = aggregator.flush();
+
+        assertEquals(3, summaries.size());
+        final Map<String, Object> first = fieldsOf(summaries, "10.0.0.1", 200);
+        assertEquals(100L, first.get("rollupCount"));
+        assertEquals(1000L, first.get("clientRequestBytesSum"));
+        assertEquals(5050L, first.get("originResponseBytesSum"));
+        assertEquals(1L, first.get("originResponseTimeMin"));
+        assertEquals(100L, first.get("originResponseTimeMax"));
+        assertEquals(50L, first.get("originResponseTimeP50"));
+        assertEquals(90L, first.get("originResponseTimeP90"));
+        assertEquals(99L, first.get("originResponseTimeP99"));
+        assertEquals("1970-01-01T00:20:00Z", first.get("rollupWindowStart"));
+        assertEquals(1L, fieldsOf(summaries, "10.0.0.1", 404).get("rollupCount"));
+        assertEquals(1L, fieldsOf(summaries, "10.0.0.2", 200).get("rollupCount"));
+
+        // Ordered by window
+        assertEquals(1200.0, summaries.get(0).getTimestamp());
+        assertEquals(1260.0, summaries.get(2).getTimestamp());
+        assertEquals("10.0.0.2", summaries.get(2).getHost());
+        assertTrue(aggregator.flush().isEmpty());
+    }
+
+    @Test
+    void closeWindowsTest() {
+        final RollupAggregator aggregator = new RollupAggregator(KEYS, Duration.ofSeconds(10), 1);
+        aggregator.add(logMessage("10.0.0.1", 200, 100, 1));
+        aggregator.add(logMessage("10.0.0.1", 200, 115, 1));
+        assertTrue(aggregator.closedWindows().isEmpty());
+
+        // A message two windows later closes the first window
+        aggregator.add(logMessage("10.0.0.1", 200, 121, 1));
+        final List<GelfMessage> closed = aggregator.closedWindows();
+        assertEquals(1, closed.size());
+        assertEquals(100.0, closed.get(0).getTimestamp());
+        assertTrue(aggregator.closedWindows().isEmpty());
+
+        // A late message is summarized again
+        aggregator.add(logMessage("10.0.0.1", 200, 105, 1));
+        assertEquals(1, aggregator.lateCount());
+        aggregator.add(logMessage("10.0.0.1", 200, 135, 1));
+        assertEquals(List.of(100.0, 110.0), aggregator.closedWindows().stream().map(GelfMessage::getTimestamp).toList());
+        assertEquals(2, aggregator.flush().size());
+    }
+
+    @Test
+    void slowestSourceClosesWindowsTest() {
+        final RollupAggregator aggregator = new RollupAggregator(KEYS, Duration.ofSeconds(10), 1);
+        final RollupAggregator.Source older = aggregator.newSource();
+        final RollupAggregator.Source newer = aggregator.newSource();
+
+        // A file with newer data does not close the windows of a file which did not start yet
+        aggregator.add(newer, logMessage("10.0.0.2", 200, 500, 1));
+        assertTrue(aggregator.closedWindows().isEmpty());
+
+        aggregator.add(older, logMessage("10.0.0.1", 200, 100, 1));
+        aggregator.add(older, logMessage("10.0.0.1", 200, 115, 1));
+        assertTrue(aggregator.closedWindows().isEmpty());
+        aggregator.add(older, logMessage("10.0.0.1", 200, 121, 1));
+        assertEquals(List.of(100.0), aggregator.closedWindows().stream().map(GelfMessage::getTimestamp).toList());
+
+        // Once the older file is finished the newer one decides
+        aggregator.finish(older);
+        assertEquals(List.of(110.0, 120.0), aggregator.closedWindows().stream().map(GelfMessage::getTimestamp).toList());
+        assertEquals(0, aggregator.lateCount());
+        assertEquals(List.of(500.0), aggregator.flush().stream().map(GelfMessage::getTimestamp).toList());
+    }
+
+    @Test
+    void concurrentAddTest() throws Exception {
+        final RollupAggregator aggregator = new RollupAggregator(KEYS, Duration.ofSeconds(60), 4);
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        aggregator.add(logMessage("10.0." + (i % 50) + ".1", 200, 1200 + i % 60, 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        final List<GelfMessage> summaries = aggregator.flush();
+        assertEquals(50, summaries.size());
+        assertEquals(200_000L, summaries.stream().mapToLong(summary -> (Long) summary.getAdditionalFields().get("rollupCount")).sum());
+    }
+
+    @Test
+    void skipMessagesWithoutTimestampTest() {
+        final RollupAggregator aggregator = new RollupAggregator(KEYS, Duration.ofSeconds(60), 1);
+        final LogMessage logMessage = logMessage("10.0.0.1", 200, 0, 1);
+        logMessage.setEdgeStartTimestamp(null);
+
+        aggregator.add(logMessage);
+
+        assertEquals(1, aggregator.skippedCount());
+        assertTrue(aggregator.flush().isEmpty());
+    }
+
+    private static Map<String, Object> fieldsOf(final List<GelfMessage> summaries, final String clientIp, final int status) {
+        return summaries.stream()
+                .map(GelfMessage::getAdditionalFields)
+                .filter(fields -> clientIp.equals(fields.get("clientIp")) && Integer.valueOf(status).equals(fields.get("clientStatus")))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static LogMessage logMessage(final String clientIp, final int status, final double timestamp, final int responseTime) {
+        final LogMessage logMessage = new LogMessage();
+        logMessage.setClientIp(clientIp);
+        logMessage.setClientStatus(status);
+        logMessage.setEdgeStartTimestamp(timestamp);
+        logMessage.setClientRequestBytes(10);
+        logMessage.setOriginResponseBytes(responseTime);
+        logMessage.setOriginResponseTime(responseTime);
+        return logMessage;
+    }
+}
@@ -0,0 +1,53 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresTest() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 3, Duration.ofHours(1));
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.allowRequest(), "A success should reset the failure count");
+
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    void probeClosesOrReopensTest() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 1, Duration.ZERO);
+
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.allowRequest(), "The probe should be let through after the open duration");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.allowRequest(), "Only one probe should be in flight");
+
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    void disabledBreakerNeverOpensTest() {
+        final CircuitBreaker circuitBreaker = CircuitBreaker.disabled();
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertTrue(circuitBreaker.allowRequest());
+    }
+}
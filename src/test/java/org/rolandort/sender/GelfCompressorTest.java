@@ -0,0 +1,78 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GelfCompressorTest {
+
+    private static final byte[] SMALL = "{\"version\":\"1.1\",\"host\":\"127.0.0.1\",\"short_message\":\"test\"}".getBytes(StandardCharsets.UTF_8);
+    // Larger than the initial buffer even when compressed
+    private static final byte[] LARGE = IntStream.range(0, 20_000).mapToObj(Integer::toString)
+            .collect(Collectors.joining(",", "{\"short_message\":\"", "\"}")).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void gzipRoundTripTest() throws IOException {
+        final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+
+        for (byte[] input : new byte[][] {SMALL, LARGE, new byte[0]}) {
+            final int length = compressor.compress(CompressionType.GZIP, input, 0, input.length);
+            assertArrayEquals(input, gunzip(compressor.toByteArray(length)));
+        }
+    }
+
+    @Test
+    void zlibRoundTripTest() throws IOException {
+        final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+
+        for (byte[] input : new byte[][] {SMALL, LARGE, new byte[0]}) {
+            final int length = compressor.compress(CompressionType.DEFLATE, input, 0, input.length);
+            assertArrayEquals(input, inflate(compressor.toByteArray(length)));
+        }
+    }
+
+    @Test
+    void compressRangeOfInputTest() throws IOException {
+        final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+        final byte[] input = new byte[SMALL.length + 20];
+        System.arraycopy(SMALL, 0, input, 10, SMALL.length);
+
+        final int length = compressor.compress(CompressionType.GZIP, input, 10, SMALL.length);
+        assertArrayEquals(SMALL, gunzip(Arrays.copyOf(compressor.buffer(), length)));
+        assertThrows(IllegalArgumentException.class, () -> compressor.compress(CompressionType.NONE, SMALL, 0, SMALL.length));
+    }
+
+    @Test
+    void compressorPerThreadTest() throws Exception {
+        final GelfCompressor compressor = GelfCompressor.forCurrentThread();
+        final GelfCompressor[] other = new GelfCompressor[1];
+        final Thread thread = new Thread(() -> other[0] = GelfCompressor.forCurrentThread());
+        thread.start();
+        thread.join();
+
+        assertSame(compressor, GelfCompressor.forCurrentThread());
+        assertNotSame(compressor, other[0]);
+    }
+
+    static byte[] gunzip(final byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    static byte[] inflate(final byte[] compressed) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+}
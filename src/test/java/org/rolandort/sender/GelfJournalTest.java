@@ -0,0 +1,122 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GelfJournalTest {
+
+    private static final long SEGMENT_SIZE = 64;
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendReadAndAcknowledgeInOrderTest() throws IOException {
+        try (GelfJournal journal = new GelfJournal(tempDir, SEGMENT_SIZE, MAX_SIZE)) {
+            assertTrue(journal.isEmpty());
+            for (int i = 0; i < 10; i++) {
+                assertTrue(journal.append(payload(i)));
+            }
+            assertFalse(journal.isEmpty());
+            assertTrue(segmentCount() > 1, "Small segments should roll over");
+
+            // Reading without acknowledging returns the same messages again
+            assertEquals(List.of("message-0", "message-1", "message-2"), strings(journal.read(3)));
+            assertEquals(List.of("message-0", "message-1", "message-2"), strings(journal.read(3)));
+            journal.acknowledge(2);
+
+            final List<String> remaining = new ArrayList<>();
+            List<byte[]> payloads;
+            while (!(payloads = journal.read(4)).isEmpty()) {
+                remaining.addAll(strings(payloads));
+                journal.acknowledge(payloads.size());
+            }
+            assertEquals(List.of("message-2", "message-3", "message-4", "message-5", "message-6", "message-7",
+                    "message-8", "message-9"), remaining);
+            assertTrue(journal.isEmpty());
+            assertEquals(0, journal.size());
+            assertEquals(1, segmentCount(), "Acknowledged segments should be deleted");
+        }
+    }
+
+    @Test
+    void recoverAfterRestartTest() throws IOException {
+        try (GelfJournal journal = new GelfJournal(tempDir, SEGMENT_SIZE, MAX_SIZE)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(payload(i));
+            }
+            journal.read(2);
+            journal.acknowledge(2);
+        }
+
+        try (GelfJournal journal = new GelfJournal(tempDir, SEGMENT_SIZE, MAX_SIZE)) {
+            assertFalse(journal.isEmpty());
+            journal.append(payload(5));
+            assertEquals(List.of("message-2", "message-3", "message-4", "message-5"), readAll(journal));
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void tornRecordEndsSegmentTest() throws IOException {
+        try (GelfJournal journal = new GelfJournal(tempDir, MAX_SIZE, MAX_SIZE)) {
+            journal.append(payload(0));
+            journal.append(payload(1));
+        }
+        // Simulate a crash while writing a record
+        try (Stream<Path> files = Files.list(tempDir)) {
+            final Path segment = files.filter(file -> file.toString().endsWith(".journal")).findFirst().orElseThrow();
+            Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        }
+
+        try (GelfJournal journal = new GelfJournal(tempDir, MAX_SIZE, MAX_SIZE)) {
+            journal.append(payload(2));
+            assertEquals(List.of("message-0", "message-1", "message-2"), readAll(journal));
+        }
+    }
+
+    @Test
+    void appendIsRejectedWhenFullTest() throws IOException {
+        try (GelfJournal journal = new GelfJournal(tempDir, SEGMENT_SIZE, 40)) {
+            assertTrue(journal.append(payload(0)));
+            assertTrue(journal.append(payload(1)));
+            assertFalse(journal.append(payload(2)), "Append beyond the maximum size should be rejected");
+        }
+    }
+
+    private static List<String> readAll(final GelfJournal journal) throws IOException {
+        final List<String> messages = new ArrayList<>();
+        List<byte[]> payloads;
+        while (!(payloads = journal.read(10)).isEmpty()) {
+            messages.addAll(strings(payloads));
+            journal.acknowledge(payloads.size());
+        }
+        return messages;
+    }
+
+    private static byte[] payload(final int i) {
+        return ("message-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(final List<byte[]> payloads) {
+        return payloads.stream().map(payload -> new String(payload, StandardCharsets.UTF_8)).toList();
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).count();
+        }
+    }
+}
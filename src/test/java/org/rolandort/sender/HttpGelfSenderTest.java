@@ -0,0 +1,158 @@
+package org.rolandort.sender;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpGelfSenderTest {
+
+    private HttpServer server;
+    private String url;
+    private final Queue<Integer> statusCodes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Queue<List<String>> contentEncodings = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> bodies = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> requestNanos = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Responds with the queued status codes, then with 202
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gelf", exchange -> {
+            requestCount.incrementAndGet();
+            requestNanos.add(System.nanoTime());
+            contentEncodings.add(exchange.getRequestHeaders().getOrDefault("Content-Encoding", List.of()));
+            bodies.add(exchange.getRequestBody().readAllBytes());
+            final Integer statusCode = statusCodes.poll();
+            if (statusCode != null && statusCode == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+            }
+            exchange.sendResponseHeaders(statusCode == null ? 202 : statusCode, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/gelf";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void retryableStatusIsRetriedTest() {
+        statusCodes.addAll(List.of(503, 429));
+        final HttpGelfSender sender = sender(3, CircuitBreaker.disabled());
+
+        assertTrue(sender.sendMessage(message()));
+        assertEquals(3, requestCount.get());
+    }
+
+    @Test
+    void clientErrorIsNotRetriedTest() {
+        statusCodes.add(400);
+        final HttpGelfSender sender = sender(3, CircuitBreaker.disabled());
+
+        assertFalse(sender.sendMessage(message()));
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    void openCircuitBreakerRejectsRequestsTest() {
+        statusCodes.addAll(List.of(503, 503));
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(url, 2, Duration.ofHours(1));
+        final HttpGelfSender sender = sender(2, circuitBreaker);
+
+        assertFalse(sender.sendMessage(message()));
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        final long rejections = PipelineMetrics.global().getCircuitBreakerRejections();
+        assertEquals(0, sender.sendMessages(List.of(message(), message(), message())));
+        assertEquals(2, requestCount.get(), "No request should be sent while the circuit breaker is open");
+        assertEquals(rejections + 3, PipelineMetrics.global().getCircuitBreakerRejections());
+    }
+
+    @Test
+    void concurrentSendReportsFailedMessagesTest() {
+        statusCodes.addAll(List.of(400));
+        final HttpGelfSender sender = new HttpGelfSender(url, 5, 4, CompressionType.NONE, 0,
+                new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10)), CircuitBreaker.disabled());
+        final List<GelfMessage> messages = List.of(message(), message(), message(), message());
+        final Queue<GelfMessage> failed = new ConcurrentLinkedQueue<>();
+
+        assertEquals(3, sender.sendMessages(messages, failed::add));
+        assertEquals(1, failed.size());
+    }
+
+    @Test
+    void backoffDoesNotHoldConcurrencyTest() {
+        statusCodes.addAll(List.of(503, 503));
+        final HttpGelfSender sender = new HttpGelfSender(url, 5, 2, CompressionType.NONE, 0,
+                new RetryPolicy(2, Duration.ofMillis(1000), Duration.ofMillis(1000)), CircuitBreaker.disabled());
+
+        // The first two messages wait at least 500 ms for their retry, the others are sent meanwhile
+        final long start = System.nanoTime();
+        assertEquals(4, sender.sendMessages(List.of(message(), message(), message(), message())));
+        final List<Long> sorted = requestNanos.stream().map(nanos -> (nanos - start) / 1_000_000).sorted().toList();
+        assertEquals(6, sorted.size());
+        assertTrue(sorted.get(3) < 500, "Requests: " + sorted);
+    }
+
+    @Test
+    void rejectedMessagesAreReportedSeparatelyTest() {
+        statusCodes.addAll(List.of(400, 503, 413));
+        final HttpGelfSender sender = sender(1, CircuitBreaker.disabled());
+        final Queue<GelfMessage> failed = new ConcurrentLinkedQueue<>();
+        final Queue<GelfMessage> rejected = new ConcurrentLinkedQueue<>();
+
+        assertEquals(1, sender.sendMessages(List.of(message(), message(), message(), message()), failed::add, rejected::add));
+        assertEquals(1, failed.size(), "503 may succeed later");
+        assertEquals(2, rejected.size(), "400 and 413 would be rejected again");
+    }
+
+    @Test
+    void contentEncodingOnlyWhenCompressedTest() throws IOException {
+        final GelfMessage gelfMessage = message();
+
+        assertTrue(new HttpGelfSender(url, 5, 1, CompressionType.NONE, 0).sendMessage(gelfMessage));
+        assertEquals(List.of(), contentEncodings.poll());
+        assertArrayEquals(gelfMessage.toJsonBytes(), bodies.poll());
+
+        assertTrue(new HttpGelfSender(url, 5, 1, CompressionType.GZIP, 0).sendMessage(gelfMessage));
+        assertEquals(List.of("gzip"), contentEncodings.poll());
+        assertArrayEquals(gelfMessage.toJsonBytes(), GelfCompressorTest.gunzip(bodies.poll()));
+
+        assertTrue(new HttpGelfSender(url, 5, 1, CompressionType.DEFLATE, 0).sendMessage(gelfMessage));
+        assertEquals(List.of("deflate"), contentEncodings.poll());
+        assertArrayEquals(gelfMessage.toJsonBytes(), GelfCompressorTest.inflate(bodies.poll()));
+
+        // Bodies below the threshold are sent uncompressed
+        assertTrue(new HttpGelfSender(url, 5, 1, CompressionType.GZIP, 10_000).sendMessage(gelfMessage));
+        assertEquals(List.of(), contentEncodings.poll());
+        assertArrayEquals(gelfMessage.toJsonBytes(), bodies.poll());
+    }
+
+    private HttpGelfSender sender(final int maxAttempts, final CircuitBreaker circuitBreaker) {
+        return new HttpGelfSender(url, 5, 1, CompressionType.NONE, 0,
+                new RetryPolicy(maxAttempts, Duration.ofMillis(1), Duration.ofMillis(10)), circuitBreaker);
+    }
+
+    private static GelfMessage message() {
+        final GelfMessage gelfMessage = new GelfMessage();
+        gelfMessage.setHost("127.0.0.1");
+        gelfMessage.setShortMessage("test");
+        return gelfMessage;
+    }
+}
@@ -0,0 +1,174 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rolandort.model.GelfMessage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalingGelfSenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void unsentMessagesAreReplayedInOrderTest() throws IOException {
+        final ToggleSender server = new ToggleSender();
+        final JournalingGelfSender sender = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ofSeconds(10));
+
+        // Server is down: messages are journaled and count as sent
+        server.available = false;
+        assertEquals(3, sender.sendMessages(List.of(message("a"), message("b"), message("c"))));
+        server.available = true;
+        // Later messages are journaled behind the older ones
+        assertEquals(1, sender.sendMessages(List.of(message("d"))));
+
+        sender.close();
+        assertEquals(List.of("a", "b", "c", "d"), server.received);
+    }
+
+    @Test
+    void journalIsReplayedByNextRunTest() throws IOException {
+        final ToggleSender server = new ToggleSender();
+        server.available = false;
+        final JournalingGelfSender sender = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ZERO);
+        assertTrue(sender.sendMessage(message("a")));
+        sender.close();
+        assertTrue(server.received.isEmpty());
+
+        server.available = true;
+        final JournalingGelfSender restarted = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ofSeconds(10));
+        restarted.close();
+        assertEquals(List.of("a"), server.received);
+    }
+
+    @Test
+    void rejectedMessagesAreNotJournaledTest() throws IOException {
+        final ScriptedSender server = new ScriptedSender();
+        server.rejected.add("bad");
+        final JournalingGelfSender sender = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ofSeconds(10));
+
+        final List<GelfMessage> failed = new ArrayList<>();
+        assertEquals(1, sender.sendMessages(List.of(message("a"), message("bad")), failed::add));
+        assertEquals(1, failed.size());
+
+        sender.close();
+        assertEquals(List.of("a"), server.received);
+    }
+
+    @Test
+    void rejectedMessagesAreDroppedOnReplayTest() throws IOException {
+        final ScriptedSender server = new ScriptedSender();
+        server.rejected.add("bad");
+        server.available = false;
+        final JournalingGelfSender sender = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ofSeconds(10));
+        assertEquals(3, sender.sendMessages(List.of(message("a"), message("bad"), message("c"))));
+
+        // The rejected message does not block the journal
+        server.available = true;
+        sender.close();
+        assertEquals(List.of("a", "c"), server.received);
+    }
+
+    @Test
+    void partiallyFailedReplaySendsNoDuplicatesTest() throws IOException {
+        final ScriptedSender server = new ScriptedSender();
+        server.available = false;
+        final JournalingGelfSender sender = new JournalingGelfSender(server,
+                new GelfJournal(tempDir, GelfJournal.DEFAULT_SEGMENT_SIZE, 1024 * 1024), Duration.ofSeconds(10));
+        assertEquals(4, sender.sendMessages(List.of(message("a"), message("b"), message("c"), message("d"))));
+
+        // The first replay fails for "b" only
+        server.failOnce.add("b");
+        server.available = true;
+        sender.close();
+        assertEquals(List.of("a", "b", "c", "d"), server.received.stream().sorted().toList());
+    }
+
+    private static GelfMessage message(final String shortMessage) {
+        final GelfMessage gelfMessage = new GelfMessage();
+        gelfMessage.setShortMessage(shortMessage);
+        return gelfMessage;
+    }
+
+    // Journaled messages are replayed from their serialized form
+    private static String shortMessage(final GelfMessage gelfMessage) {
+        return gelfMessage.toString().replaceAll(".*\"short_message\":\"([^\"]*)\".*", "$1");
+    }
+
+    // Fails while unavailable or once for selected messages, rejects selected messages
+    private static class ScriptedSender implements GelfSender {
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+        private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+        private volatile boolean available = true;
+
+        @Override
+        public boolean sendMessage(final GelfMessage gelfMessage) {
+            return sendMessages(List.of(gelfMessage)) == 1;
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages) {
+            return sendMessages(gelfMessages, gelfMessage -> { }, gelfMessage -> { });
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed) {
+            return sendMessages(gelfMessages, failed, failed);
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages, final Consumer<GelfMessage> failed,
+                                final Consumer<GelfMessage> rejectedMessages) {
+            int sentCount = 0;
+            for (GelfMessage gelfMessage : gelfMessages) {
+                final String shortMessage = shortMessage(gelfMessage);
+                if (!available || failOnce.remove(shortMessage)) {
+                    failed.accept(gelfMessage);
+                } else if (rejected.contains(shortMessage)) {
+                    rejectedMessages.accept(gelfMessage);
+                } else {
+                    received.add(shortMessage);
+                    sentCount++;
+                }
+            }
+            return sentCount;
+        }
+    }
+
+    // Records the short messages it receives while available
+    private static class ToggleSender implements GelfSender {
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean available = true;
+
+        @Override
+        public boolean sendMessage(final GelfMessage gelfMessage) {
+            if (!available) {
+                return false;
+            }
+            received.add(shortMessage(gelfMessage));
+            return true;
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages) {
+            return (int) gelfMessages.stream().filter(this::sendMessage).count();
+        }
+    }
+}
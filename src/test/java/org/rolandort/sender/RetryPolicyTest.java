@@ -0,0 +1,53 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(4, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+    @Test
+    void backoffGrowsExponentiallyWithJitterTest() {
+        for (int i = 0; i < 100; i++) {
+            assertBetween(50, 100, retryPolicy.backoffMillis(1));
+            assertBetween(100, 200, retryPolicy.backoffMillis(2));
+            assertBetween(200, 400, retryPolicy.backoffMillis(3));
+            assertBetween(500, 1000, retryPolicy.backoffMillis(10));
+        }
+    }
+
+    @Test
+    void retryAfterIsHonoredUpToMaxBackoffTest() {
+        assertEquals(1000, retryPolicy.backoffMillis(1, Optional.of(" 1 ")));
+        assertBetween(50, 100, retryPolicy.backoffMillis(1, Optional.of("invalid")));
+        assertEquals(1000, retryPolicy.backoffMillis(1, Optional.of("120")));
+        assertBetween(50, 100, retryPolicy.backoffMillis(1, Optional.of("0")));
+
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(5));
+        assertEquals(1000, retryPolicy.backoffMillis(1, Optional.of(date)));
+    }
+
+    @Test
+    void attemptsAndStatusCodesTest() {
+        assertTrue(retryPolicy.canRetry(3));
+        assertFalse(retryPolicy.canRetry(4));
+        assertFalse(RetryPolicy.none().canRetry(1));
+
+        assertTrue(RetryPolicy.isRetryable(429));
+        assertTrue(RetryPolicy.isRetryable(503));
+        assertFalse(RetryPolicy.isRetryable(400));
+        assertFalse(RetryPolicy.isRetryable(500));
+    }
+
+    private static void assertBetween(final long min, final long max, final long actual) {
+        assertTrue(actual >= min && actual <= max, actual + " should be between " + min + " and " + max);
+    }
+}
@@ -0,0 +1,172 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class TcpGelfSenderTest {
+
+    private ServerSocketChannel server;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        url = "tcp://127.0.0.1:" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void nullByteFramingTest() throws Exception {
+        final TcpGelfSender sender = new TcpGelfSender(url, 5, 1);
+        // The large message does not fit into the write buffer and is written directly
+        final List<GelfMessage> messages = List.of(message("first"), message("x".repeat(300_000)), message("last"));
+
+        final CompletableFuture<Integer> sent = CompletableFuture.supplyAsync(() -> sender.sendMessages(messages));
+        try (SocketChannel connection = server.accept()) {
+            final List<String> frames = readFrames(connection, 3);
+            assertEquals(messages.stream().map(GelfMessage::toString).toList(), frames);
+        }
+        assertEquals(3, sent.get());
+    }
+
+    @Test
+    void reconnectAfterPeerClosedTest() throws Exception {
+        final TcpGelfSender sender = new TcpGelfSender(url, 5, 1, new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10)));
+
+        assertEquals(2, sender.sendMessages(List.of(message("1"), message("2"))));
+        try (SocketChannel connection = server.accept()) {
+            assertEquals(List.of(message("1").toString(), message("2").toString()), readFrames(connection, 2));
+        }
+        // Let the sender see the end of the stream
+        Thread.sleep(100);
+
+        assertEquals(2, sender.sendMessages(List.of(message("3"), message("4"))));
+        try (SocketChannel connection = server.accept()) {
+            assertEquals(List.of(message("3").toString(), message("4").toString()), readFrames(connection, 2));
+        }
+    }
+
+    @Test
+    void resumeWithoutDuplicatesTest() throws Exception {
+        final TcpGelfSender sender = new TcpGelfSender(url, 5, 1, new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10)));
+        // Much more than the socket buffers hold, so the write fails when the server closes the connection
+        final String padding = "x".repeat(10_000);
+        final List<GelfMessage> messages = IntStream.range(0, 4000).mapToObj(i -> message("#" + i + " " + padding)).toList();
+
+        final CompletableFuture<Integer> sent = CompletableFuture.supplyAsync(() -> sender.sendMessages(messages));
+        final List<String> frames = new ArrayList<>();
+        try (SocketChannel connection = server.accept()) {
+            frames.addAll(readFrames(connection, 10));
+        }
+        try (SocketChannel connection = server.accept()) {
+            final FrameReader reader = new FrameReader(connection);
+            final String last = messages.get(messages.size() - 1).toString();
+            do {
+                frames.addAll(reader.read(1));
+            } while (!frames.get(frames.size() - 1).equals(last));
+        }
+
+        assertEquals(4000, sent.get());
+        final Set<String> distinct = new HashSet<>(frames);
+        assertEquals(frames.size(), distinct.size(), "No message should be received twice");
+    }
+
+    @Test
+    void writeTimeoutTest() throws Exception {
+        final TcpGelfSender sender = new TcpGelfSender(url, 1, 1, RetryPolicy.none());
+        final String padding = "x".repeat(100_000);
+        final List<GelfMessage> messages = IntStream.range(0, 200).mapToObj(i -> message(padding)).toList();
+
+        // The server accepts the connection but never reads
+        final CompletableFuture<Integer> sent = CompletableFuture.supplyAsync(() -> sender.sendMessages(messages));
+        try (SocketChannel connection = server.accept()) {
+            final int sentCount = sent.get();
+            assertTrue(sentCount < messages.size(), "Sent: " + sentCount);
+        }
+    }
+
+    @Test
+    void openCircuitBreakerFailsFastTest() throws Exception {
+        // Nobody listens on the port any more
+        server.close();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(url, 2, Duration.ofHours(1));
+        final TcpGelfSender sender = new TcpGelfSender(url, 5, 1, new RetryPolicy(5, Duration.ofMillis(1), Duration.ofMillis(10)),
+                circuitBreaker);
+
+        assertEquals(0, sender.sendMessages(List.of(message("1"))));
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state(), "The breaker should stop the reconnects");
+        final long rejections = PipelineMetrics.global().getCircuitBreakerRejections();
+        final List<GelfMessage> failed = new ArrayList<>();
+        assertEquals(0, sender.sendMessages(List.of(message("2"), message("3")), failed::add));
+        assertEquals(2, failed.size());
+        assertEquals(rejections + 1, PipelineMetrics.global().getCircuitBreakerRejections());
+    }
+
+    private static List<String> readFrames(final SocketChannel connection, final int count) throws IOException {
+        return new FrameReader(connection).read(count);
+    }
+
+    /**
+     * Splits the stream of a connection at the null bytes
+     */
+    private static final class FrameReader {
+        private final SocketChannel connection;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).flip();
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+        private FrameReader(final SocketChannel connection) {
+            this.connection = connection;
+        }
+
+        private List<String> read(final int count) throws IOException {
+            final List<String> frames = new ArrayList<>();
+            while (frames.size() < count) {
+                if (!buffer.hasRemaining()) {
+                    assertTrue(connection.read(buffer.clear()) > 0, "Connection closed");
+                    buffer.flip();
+                }
+                final byte b = buffer.get();
+                if (b == 0) {
+                    frames.add(frame.toString(StandardCharsets.UTF_8));
+                    frame.reset();
+                } else {
+                    frame.write(b);
+                }
+            }
+            return frames;
+        }
+    }
+
+    private static GelfMessage message(final String shortMessage) {
+        final GelfMessage gelfMessage = new GelfMessage();
+        gelfMessage.setHost("127.0.0.1");
+        gelfMessage.setShortMessage(shortMessage);
+        return gelfMessage;
+    }
+}
@@ -0,0 +1,147 @@
+package org.rolandort.sender;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.rolandort.model.GelfMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class UdpGelfSenderTest {
+
+    private static final int CHUNK_SIZE = 112;
+    private static final int CHUNK_DATA_SIZE = CHUNK_SIZE - 12;
+
+    private DatagramChannel server;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        url = "udp://127.0.0.1:" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void smallMessageIsOneDatagramTest() throws IOException {
+        final UdpGelfSender sender = new UdpGelfSender(url, CompressionType.NONE, 0, CHUNK_SIZE);
+        final GelfMessage gelfMessage = message(10);
+
+        assertTrue(sender.sendMessage(gelfMessage));
+        assertArrayEquals(gelfMessage.toJsonBytes(), receive());
+    }
+
+    @Test
+    void reassembleChunksTest() throws IOException {
+        final UdpGelfSender sender = new UdpGelfSender(url, CompressionType.NONE, 0, CHUNK_SIZE);
+        final GelfMessage first = message(1000);
+        final GelfMessage second = message(1000);
+
+        assertTrue(sender.sendMessage(first));
+        assertTrue(sender.sendMessage(second));
+        final Chunks firstChunks = receiveChunks();
+        final Chunks secondChunks = receiveChunks();
+
+        assertArrayEquals(first.toJsonBytes(), firstChunks.payload);
+        assertArrayEquals(second.toJsonBytes(), secondChunks.payload);
+        assertEquals((first.toJsonBytes().length + CHUNK_DATA_SIZE - 1) / CHUNK_DATA_SIZE, firstChunks.count);
+        assertNotEquals(firstChunks.messageId, secondChunks.messageId, "Every message needs its own id");
+    }
+
+    @Test
+    void maximumChunkCountTest() throws IOException {
+        final UdpGelfSender sender = new UdpGelfSender(url, CompressionType.NONE, 0, CHUNK_SIZE);
+        final int overhead = message(0).toJsonBytes().length;
+        final GelfMessage largest = message(128 * CHUNK_DATA_SIZE - overhead);
+        final GelfMessage oversized = message(128 * CHUNK_DATA_SIZE - overhead + 1);
+
+        assertTrue(sender.sendMessage(largest));
+        final Chunks chunks = receiveChunks();
+        assertEquals(128, chunks.count);
+        assertArrayEquals(largest.toJsonBytes(), chunks.payload);
+
+        // Nothing of the oversized message is sent, the next datagram belongs to the following message
+        assertFalse(sender.sendMessage(oversized));
+        final GelfMessage next = message(10);
+        assertTrue(sender.sendMessage(next));
+        assertArrayEquals(next.toJsonBytes(), receive());
+    }
+
+    @Test
+    void compressedChunksTest() throws IOException {
+        final UdpGelfSender sender = new UdpGelfSender(url, CompressionType.GZIP, 0, CHUNK_SIZE);
+        // Numbers do not compress into a single datagram
+        final GelfMessage gelfMessage = message(0);
+        gelfMessage.setShortMessage(IntStream.range(0, 2000).mapToObj(Integer::toString).collect(Collectors.joining(" ")));
+
+        assertTrue(sender.sendMessage(gelfMessage));
+        final Chunks chunks = receiveChunks();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(chunks.payload))) {
+            assertArrayEquals(gelfMessage.toJsonBytes(), in.readAllBytes());
+        }
+        assertTrue(chunks.payload.length < gelfMessage.toJsonBytes().length);
+    }
+
+    /**
+     * A message reassembled from its chunks
+     */
+    private record Chunks(long messageId, int count, byte[] payload) {
+    }
+
+    // Receives the chunks of one message, checking the chunk headers
+    private Chunks receiveChunks() throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        long messageId = 0;
+        int count = 0;
+        int sequence = 0;
+        do {
+            final ByteBuffer chunk = ByteBuffer.wrap(receive());
+            assertEquals(0x1e, chunk.get());
+            assertEquals(0x0f, chunk.get());
+            final long chunkMessageId = chunk.getLong();
+            final int chunkSequence = chunk.get() & 0xff;
+            final int chunkCount = chunk.get() & 0xff;
+            if (sequence == 0) {
+                messageId = chunkMessageId;
+                count = chunkCount;
+                assertTrue(count > 1 && count <= 128, "Count: " + count);
+            }
+            assertEquals(messageId, chunkMessageId);
+            assertEquals(sequence, chunkSequence);
+            assertEquals(count, chunkCount);
+            assertTrue(chunk.remaining() <= CHUNK_DATA_SIZE);
+            payload.write(chunk.array(), chunk.position(), chunk.remaining());
+        } while (++sequence < count);
+        return new Chunks(messageId, count, payload.toByteArray());
+    }
+
+    private byte[] receive() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        server.receive(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static GelfMessage message(final int length) {
+        final GelfMessage gelfMessage = new GelfMessage();
+        gelfMessage.setHost("127.0.0.1");
+        gelfMessage.setShortMessage("x".repeat(length));
+        return gelfMessage;
+    }
+}
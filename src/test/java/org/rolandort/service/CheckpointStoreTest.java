@@ -0,0 +1,55 @@
+package org.rolandort.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void updatesAreFlushedOnCloseTest() throws IOException {
+        final Path storePath = tempDir.resolve("checkpoints.json");
+        final Path logFile = tempDir.resolve("access.log");
+
+        try (CheckpointStore store = new CheckpointStore(storePath, Duration.ofHours(1))) {
+            store.update(logFile, new Checkpoint(1024, 10, "(dev=1,ino=2)"));
+            store.update(logFile, new Checkpoint(2048, 20, "(dev=1,ino=2)"));
+            assertFalse(Files.exists(storePath), "Updates within the flush interval should not be written");
+            assertEquals(2048, store.get(logFile).map(Checkpoint::getOffset).orElse(0L));
+        }
+
+        final CheckpointStore reopened = new CheckpointStore(storePath, Duration.ofHours(1));
+        assertEquals(Optional.of(new Checkpoint(2048, 20, "(dev=1,ino=2)")), reopened.get(logFile));
+        assertEquals(Optional.of(new Checkpoint(2048, 20, "(dev=1,ino=2)")), reopened.get(tempDir.resolve("./access.log")));
+        assertTrue(reopened.get(tempDir.resolve("other.log")).isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("checkpoints.json.tmp")), "Temporary file should be renamed");
+    }
+
+    @Test
+    void updatesAreFlushedAfterIntervalTest() throws IOException {
+        final Path storePath = tempDir.resolve("checkpoints.json");
+
+        final CheckpointStore store = new CheckpointStore(storePath, Duration.ZERO);
+        store.update(tempDir.resolve("access.log"), new Checkpoint(100, 1, null));
+
+        assertTrue(Files.exists(storePath), "Update after the flush interval should be written");
+    }
+
+    @Test
+    void invalidCheckpointFileIsRejectedTest() throws IOException {
+        final Path storePath = tempDir.resolve("checkpoints.json");
+        Files.writeString(storePath, "{ not json");
+
+        assertThrows(IOException.class, () -> new CheckpointStore(storePath, Duration.ofSeconds(5)));
+    }
+}
@@ -0,0 +1,208 @@
+package org.rolandort.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rolandort.model.LogMessage;
+import org.rolandort.parser.CsvLogParser;
+import org.rolandort.parser.JsonLogParser;
+import org.rolandort.parser.LogParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileFollowerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void followAppendedLinesTest() throws Exception {
+        final Path file = tempDir.resolve("follow.log");
+        Files.writeString(file, json("10.0.0.1") + "\n");
+
+        try (Following following = new Following(file, new JsonLogParser())) {
+            awaitCondition(() -> following.clientIps().equals(List.of("10.0.0.1")));
+
+            // An incomplete line is held back until its line feed is written
+            append(file, json("10.0.0.2") + "\n" + "{\"ClientIP\": \"10.0.");
+            awaitCondition(() -> following.clientIps().size() == 2);
+            append(file, "0.3\"}\n");
+            awaitCondition(() -> following.clientIps().size() == 3);
+
+            assertEquals(List.of("10.0.0.1", "10.0.0.2", "10.0.0.3"), following.clientIps());
+        }
+    }
+
+    @Test
+    void followRotatedAndTruncatedFileTest() throws Exception {
+        final Path file = tempDir.resolve("rotate.log");
+        Files.writeString(file, json("10.0.0.1") + "\n");
+
+        try (Following following = new Following(file, new JsonLogParser())) {
+            awaitCondition(() -> following.clientIps().size() == 1);
+
+            // Rotation: the old file is moved away and a new file is created
+            append(file, json("10.0.0.2") + "\n");
+            Files.move(file, tempDir.resolve("rotate.log.1"));
+            Files.writeString(file, json("10.0.0.3") + "\n");
+            awaitCondition(() -> following.clientIps().size() == 3);
+
+            // Truncation: the file is rewritten in place with less content
+            Files.writeString(file, json("10.0.4") + "\n", StandardOpenOption.TRUNCATE_EXISTING);
+            awaitCondition(() -> following.clientIps().size() == 4);
+
+            assertEquals(List.of("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.4"), following.clientIps());
+        }
+    }
+
+    @Test
+    void rotatedFileWithoutLastLineFeedTest() throws Exception {
+        final Path file = tempDir.resolve("unterminated-rotate.log");
+        Files.writeString(file, json("10.0.0.1") + "\n");
+
+        try (Following following = new Following(file, new JsonLogParser())) {
+            awaitCondition(() -> following.clientIps().size() == 1);
+
+            // The last line of the old file is never terminated
+            append(file, json("10.0.0.2"));
+            Files.move(file, tempDir.resolve("unterminated-rotate.log.1"));
+            Files.writeString(file, json("10.0.0.3") + "\n");
+            awaitCondition(() -> following.clientIps().size() == 3);
+
+            assertEquals(List.of("10.0.0.1", "10.0.0.2", "10.0.0.3"), following.clientIps());
+        }
+    }
+
+    @Test
+    void followCsvFileWithHeaderTest() throws Exception {
+        final Path file = tempDir.resolve("follow.csv");
+        Files.writeString(file, "ClientStatus,ClientIP\n");
+
+        try (Following following = new Following(file, new CsvLogParser())) {
+            append(file, "200,10.0.0.1\n404,10.0.0.2\n");
+            awaitCondition(() -> following.clientIps().size() == 2);
+
+            assertEquals(List.of("10.0.0.1", "10.0.0.2"), following.clientIps());
+            assertEquals(404, following.logMessages.get(1).getClientStatus());
+        }
+    }
+
+    @Test
+    void readToEndFromCheckpointTest() throws Exception {
+        final Path file = tempDir.resolve("resume.csv");
+        Files.writeString(file, "ClientStatus,ClientIP\n200,10.0.0.1\n201,10.0.0.2\n");
+
+        final LogFileFollower reader = new LogFileFollower(file, new CsvLogParser());
+        reader.readToEnd(logMessages -> { });
+        final Checkpoint checkpoint = reader.checkpoint();
+        assertEquals(Files.size(file), checkpoint.getOffset());
+        assertEquals(3, checkpoint.getLineNumber());
+
+        // The last line has no line feed
+        append(file, "202,10.0.0.3\n203,10.0.0.4");
+        final List<LogMessage> logMessages = new CopyOnWriteArrayList<>();
+        final LogFileFollower resumed = new LogFileFollower(file, new CsvLogParser());
+        resumed.resumeFrom(checkpoint);
+        resumed.readToEnd(logMessages::addAll);
+
+        assertEquals(List.of("10.0.0.3", "10.0.0.4"), logMessages.stream().map(LogMessage::getClientIp).toList());
+        assertEquals(203, logMessages.get(1).getClientStatus());
+        assertEquals(Files.size(file), resumed.checkpoint().getOffset());
+        assertEquals(5, resumed.checkpoint().getLineNumber());
+    }
+
+    @Test
+    void resumeAfterUnterminatedLastLineTest() throws Exception {
+        final Path file = tempDir.resolve("unterminated.log");
+        Files.writeString(file, json("10.0.0.1") + "\n" + json("10.0.0.2"));
+
+        // Checkpoints taken by the consumer, like the block sender does
+        final List<Checkpoint> checkpoints = new CopyOnWriteArrayList<>();
+        final LogFileFollower reader = new LogFileFollower(file, new JsonLogParser());
+        reader.readToEnd(logMessages -> checkpoints.add(reader.checkpoint()));
+        assertEquals(Files.size(file), checkpoints.get(checkpoints.size() - 1).getOffset());
+
+        // A restart without new lines sends nothing again
+        final List<LogMessage> logMessages = new CopyOnWriteArrayList<>();
+        final LogFileFollower resumed = new LogFileFollower(file, new JsonLogParser());
+        resumed.resumeFrom(checkpoints.get(checkpoints.size() - 1));
+        resumed.readToEnd(logMessages::addAll);
+        assertTrue(logMessages.isEmpty());
+
+        // The last line was completed meanwhile: its rest is read as a separate line
+        append(file, "\n" + json("10.0.0.3") + "\n");
+        final LogFileFollower appended = new LogFileFollower(file, new JsonLogParser());
+        appended.resumeFrom(checkpoints.get(checkpoints.size() - 1));
+        appended.readToEnd(logMessages::addAll);
+        assertEquals(List.of("10.0.0.3"), logMessages.stream().map(LogMessage::getClientIp).toList());
+    }
+
+    @Test
+    void checkpointOfReplacedFileIsIgnoredTest() throws Exception {
+        final Path file = tempDir.resolve("replaced.log");
+        Files.writeString(file, json("10.0.0.1") + "\n" + json("10.0.0.2") + "\n");
+
+        final List<LogMessage> logMessages = new CopyOnWriteArrayList<>();
+        final LogFileFollower reader = new LogFileFollower(file, new JsonLogParser());
+        reader.resumeFrom(new Checkpoint(10, 1, "(dev=0,ino=0)"));
+        reader.readToEnd(logMessages::addAll);
+
+        assertEquals(2, logMessages.size());
+    }
+
+    private static String json(final String clientIp) {
+        return "{\"ClientIP\": \"" + clientIp + "\"}";
+    }
+
+    private static void append(final Path file, final String content) throws IOException {
+        Files.writeString(file, content, StandardOpenOption.APPEND);
+    }
+
+    private static void awaitCondition(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for appended log messages");
+            Thread.sleep(20);
+        }
+    }
+
+    // Runs a follower in a background thread and collects its log messages
+    private static class Following implements AutoCloseable {
+        private final List<LogMessage> logMessages = new CopyOnWriteArrayList<>();
+        private final LogFileFollower follower;
+        private final Thread thread;
+
+        Following(final Path file, final LogParser logParser) {
+            follower = new LogFileFollower(file, logParser, Duration.ofMillis(50));
+            thread = new Thread(() -> {
+                try {
+                    follower.follow(logMessages::addAll);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+        }
+
+        List<String> clientIps() {
+            return logMessages.stream().map(LogMessage::getClientIp).toList();
+        }
+
+        @Override
+        public void close() throws Exception {
+            follower.close();
+            thread.join(TIMEOUT_MILLIS);
+            assertFalse(thread.isAlive(), "Follower should stop when closed");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.rolandort.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rolandort.formatter.DefaultGelfFormatter;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.parser.JsonLogParser;
+import org.rolandort.sender.GelfSender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogProcessingServiceTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void stopFollowingSendsLastBatchTest() throws Exception {
+        final Path file = tempDir.resolve("follow.log");
+        Files.writeString(file, json("10.0.0.1") + "\n" + json("10.0.0.2") + "\n");
+        final RecordingSender sender = new RecordingSender();
+        final LogProcessingService service = new LogProcessingService(new JsonLogParser(), new DefaultGelfFormatter(), sender);
+
+        final AtomicInteger sentCount = new AtomicInteger(-1);
+        final Thread worker = new Thread(() -> {
+            try {
+                sentCount.set(service.followLogFile(file, 100));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        worker.start();
+        awaitSent(sender, 2);
+
+        Files.writeString(file, json("10.0.0.3") + "\n", StandardOpenOption.APPEND);
+        awaitSent(sender, 3);
+        service.stopFollowing();
+        worker.join(TIMEOUT_MILLIS);
+
+        assertFalse(worker.isAlive(), "Following should stop");
+        assertEquals(3, sentCount.get());
+        assertFalse(sender.interrupted, "The sender must not run on an interrupted thread");
+    }
+
+    @Test
+    void streamingSendsSameMessagesAsBatchTest() throws IOException {
+        final Path file = largeLogFile();
+        final RecordingSender batchSender = new RecordingSender();
+        final RecordingSender streamingSender = new RecordingSender();
+
+        final int batchCount = new LogProcessingService(new JsonLogParser(), new DefaultGelfFormatter(), batchSender)
+                .processLogFile(file);
+        final int streamingCount = new LogProcessingService(new JsonLogParser(), new DefaultGelfFormatter(), streamingSender)
+                .processLogFileStreaming(file, 64);
+
+        assertEquals(5000, batchCount);
+        assertEquals(batchCount, streamingCount);
+        assertEquals(batchSender.received, streamingSender.received);
+    }
+
+    @Test
+    void streamingHoldsOneBatchTest() throws IOException {
+        final Path file = largeLogFile();
+        final AtomicInteger formattedCount = new AtomicInteger();
+        final DefaultGelfFormatter formatter = new DefaultGelfFormatter();
+        final AtomicInteger sentCount = new AtomicInteger();
+        final AtomicInteger maxPending = new AtomicInteger();
+
+        // Counts the messages which were formatted but not sent yet, without keeping any of them
+        final GelfSender sender = new GelfSender() {
+            @Override
+            public boolean sendMessage(final GelfMessage gelfMessage) {
+                return sendMessages(List.of(gelfMessage)) == 1;
+            }
+
+            @Override
+            public int sendMessages(final List<GelfMessage> gelfMessages) {
+                maxPending.accumulateAndGet(formattedCount.get() - sentCount.get(), Math::max);
+                sentCount.addAndGet(gelfMessages.size());
+                return gelfMessages.size();
+            }
+        };
+        final LogProcessingService service = new LogProcessingService(new JsonLogParser(), logMessage -> {
+            formattedCount.incrementAndGet();
+            return formatter.formatMessage(logMessage);
+        }, sender);
+
+        assertEquals(5000, service.processLogFileStreaming(file, 64));
+        assertEquals(64, maxPending.get(), "Only one batch should be held in memory");
+    }
+
+    // The sample messages repeated 50 times
+    private Path largeLogFile() throws IOException {
+        final String sample = Files.readString(Path.of("sample-messages.txt"));
+        final Path file = tempDir.resolve("large.log");
+        Files.writeString(file, sample.repeat(50));
+        return file;
+    }
+
+    private static void awaitSent(final RecordingSender sender, final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (sender.received.size() < count) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for sent messages");
+            Thread.sleep(20);
+        }
+    }
+
+    private static String json(final String clientIp) {
+        return "{\"ClientIP\": \"" + clientIp + "\", \"ClientRequestURI\": \"/\", \"EdgeStartTimestamp\": 1576929197}";
+    }
+
+    // Collects the sent messages
+    static class RecordingSender implements GelfSender {
+        final List<GelfMessage> received = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean interrupted;
+
+        @Override
+        public boolean sendMessage(final GelfMessage gelfMessage) {
+            interrupted |= Thread.currentThread().isInterrupted();
+            received.add(gelfMessage);
+            return true;
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages) {
+            gelfMessages.forEach(this::sendMessage);
+            return gelfMessages.size();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.rolandort.service;
+
+import org.junit.jupiter.api.Test;
+import org.rolandort.formatter.DefaultGelfFormatter;
+import org.rolandort.metrics.PipelineMetrics;
+import org.rolandort.model.GelfMessage;
+import org.rolandort.model.LogMessage;
+import org.rolandort.sender.GelfSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagedPipelineTest {
+
+    @Test
+    void sendAllMessagesTest() {
+        final CollectingSender sender = new CollectingSender(0);
+        final StagedPipeline pipeline = new StagedPipeline(new DefaultGelfFormatter(), sender, 3, 2, 2);
+
+        final StagedPipeline.Result result = pipeline.run(logMessages(1005).iterator(), 10);
+
+        assertEquals(1005, result.readCount());
+        assertEquals(1005, result.sentCount());
+        // Every message arrives exactly once, in any order
+        assertEquals(1005, sender.clientIps.size());
+        assertEquals(IntStream.range(0, 1005).mapToObj(StagedPipelineTest::clientIp).collect(Collectors.toSet()),
+                sender.clientIps);
+    }
+
+    @Test
+    void emptyInputTest() {
+        final StagedPipeline pipeline = new StagedPipeline(new DefaultGelfFormatter(), new CollectingSender(0), 2, 2, 1);
+
+        final StagedPipeline.Result result = pipeline.run(List.<LogMessage>of().iterator(), 10);
+
+        assertEquals(0, result.readCount());
+        assertEquals(0, result.sentCount());
+    }
+
+    @Test
+    void failingSenderStopsPipelineTest() {
+        final StagedPipeline pipeline = new StagedPipeline(new DefaultGelfFormatter(), new CollectingSender(3), 2, 2, 1);
+
+        // The reader must not block on the full queue after the senders failed
+        final IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(logMessages(100_000).iterator(), 10));
+        assertEquals("Graylog is gone", e.getCause().getMessage());
+    }
+
+    @Test
+    void concurrentPipelinesShareGaugesTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final GelfSender blockedSender = new CollectingSender(0) {
+            @Override
+            public int sendMessages(final List<GelfMessage> gelfMessages) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.sendMessages(gelfMessages);
+            }
+        };
+        final StagedPipeline blocked = new StagedPipeline(new DefaultGelfFormatter(), blockedSender, 1, 1, 2);
+        final Thread thread = new Thread(() -> blocked.run(logMessages(100).iterator(), 10));
+        thread.start();
+        try {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (sendQueueDepth() < 2) {
+                assertTrue(System.currentTimeMillis() < deadline, "The send queue of the blocked pipeline should fill up");
+                Thread.sleep(10);
+            }
+
+            // A pipeline finishing meanwhile does not remove the gauges of the blocked one
+            new StagedPipeline(new DefaultGelfFormatter(), new CollectingSender(0), 1, 1, 2).run(logMessages(100).iterator(), 10);
+            assertEquals(2, sendQueueDepth());
+        } finally {
+            release.countDown();
+            thread.join();
+        }
+        assertEquals(0, sendQueueDepth());
+    }
+
+    private static long sendQueueDepth() {
+        return PipelineMetrics.global().gauges().getOrDefault("pipeline_send_queue_batches", -1L);
+    }
+
+    private static List<LogMessage> logMessages(final int count) {
+        final List<LogMessage> logMessages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final LogMessage logMessage = new LogMessage();
+            logMessage.setClientIp(clientIp(i));
+            logMessages.add(logMessage);
+        }
+        return logMessages;
+    }
+
+    private static String clientIp(final int i) {
+        return "10.0." + (i / 256) + "." + (i % 256);
+    }
+
+    // Collects the client IPs of sent messages, fails after the given number of batches if > 0
+    private static class CollectingSender implements GelfSender {
+        final Set<String> clientIps = ConcurrentHashMap.newKeySet();
+        final AtomicInteger batches = new AtomicInteger();
+        final int failAfter;
+
+        CollectingSender(final int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public boolean sendMessage(final GelfMessage gelfMessage) {
+            return sendMessages(List.of(gelfMessage)) == 1;
+        }
+
+        @Override
+        public int sendMessages(final List<GelfMessage> gelfMessages) {
+            if (failAfter > 0 && batches.incrementAndGet() > failAfter) {
+                throw new IllegalStateException("Graylog is gone");
+            }
+            gelfMessages.forEach(gelfMessage -> clientIps.add(gelfMessage.getHost()));
+            return gelfMessages.size();
+        }
+    }
+}